@@ -0,0 +1,134 @@
+package edu.umich.srg.collect;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A series of numeric observations indexed by time, stored in primitive arrays. Observations added
+ * in time order are appended in amortized constant time. An observation at an existing time
+ * replaces the old value, and one before the last time is inserted in order.
+ *
+ * <p>
+ * A compressed series also drops appended observations that don't change the last value. This
+ * keeps everything a step function needs, which is how series are compared to the fundamental.
+ */
+public class TimeSeries implements Serializable {
+
+  private static final int initialCapacity = 16;
+
+  private final boolean compressed;
+  private long[] times;
+  private double[] values;
+  private int size;
+
+  private TimeSeries(boolean compressed, int capacity) {
+    this.compressed = compressed;
+    this.times = new long[capacity];
+    this.values = new double[capacity];
+    this.size = 0;
+  }
+
+  /** An empty series that keeps every observation. */
+  public static TimeSeries empty() {
+    return new TimeSeries(false, initialCapacity);
+  }
+
+  /** An empty series that drops observations that repeat the last value. */
+  public static TimeSeries compressed() {
+    return new TimeSeries(true, initialCapacity);
+  }
+
+  /**
+   * Merge two series into a new uncompressed series. If both have an observation at the same time,
+   * the one from `overrides` is kept. Complexity: O(n + m).
+   */
+  public static TimeSeries merge(TimeSeries base, TimeSeries overrides) {
+    TimeSeries merged = new TimeSeries(false, Math.max(base.size + overrides.size, 1));
+    int baseIndex = 0;
+    int overIndex = 0;
+    while (baseIndex < base.size || overIndex < overrides.size) {
+      if (overIndex == overrides.size || (baseIndex < base.size
+          && base.times[baseIndex] < overrides.times[overIndex])) {
+        merged.append(base.times[baseIndex], base.values[baseIndex]);
+        baseIndex++;
+      } else {
+        if (baseIndex < base.size && base.times[baseIndex] == overrides.times[overIndex]) {
+          baseIndex++;
+        }
+        merged.append(overrides.times[overIndex], overrides.values[overIndex]);
+        overIndex++;
+      }
+    }
+    return merged;
+  }
+
+  /** Add an observation. Complexity: amortized O(1) in time order, O(n) otherwise. */
+  public void add(long time, double value) {
+    if (size == 0 || times[size - 1] < time) {
+      if (!compressed || size == 0 || Double.compare(values[size - 1], value) != 0) {
+        append(time, value);
+      }
+      return;
+    }
+
+    int location = Arrays.binarySearch(times, 0, size, time);
+    if (location >= 0) {
+      values[location] = value;
+    } else {
+      int insert = -location - 1;
+      ensureCapacity(size + 1);
+      System.arraycopy(times, insert, times, insert + 1, size - insert);
+      System.arraycopy(values, insert, values, insert + 1, size - insert);
+      times[insert] = time;
+      values[insert] = value;
+      size++;
+    }
+  }
+
+  private void append(long time, double value) {
+    ensureCapacity(size + 1);
+    times[size] = time;
+    values[size] = value;
+    size++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > times.length) {
+      int newCapacity = Math.max(capacity, times.length + (times.length >> 1));
+      times = Arrays.copyOf(times, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getTime(int index) {
+    checkElementIndex(index, size);
+    return times[index];
+  }
+
+  public double getValue(int index) {
+    checkElementIndex(index, size);
+    return values[index];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("[");
+    for (int i = 0; i < size; ++i) {
+      builder.append(i == 0 ? "" : ", ").append(times[i]).append('=').append(values[i]);
+    }
+    return builder.append(']').toString();
+  }
+
+  private static final long serialVersionUID = 1;
+
+}
@@ -6,35 +6,28 @@ import edu.umich.srg.distributions.Distribution.LongDistribution;
 
 import java.io.Serializable;
 import java.util.Random;
-import java.util.stream.DoubleStream;
 
 /**
- * Generate samples from a Binomail. Method is taken from: "Computer Methods for Sampling from
- * Gamma, Beta, Poisson and Binomial Distributions" - J. H. Ahrens and U. Dieter (1973). It relies
- * on the approximate beta sampling, so is not perfect.
+ * Generate exact samples from a Binomial. When the mean is small, samples are drawn by inversion
+ * from zero. Otherwise samples are drawn with the BTPE method from: "Binomial Random Variate
+ * Generation" - V. Kachitvichyanukul and B. W. Schmeiser (1988), whose expected time doesn't depend
+ * on the number of draws. In both cases p is reflected to be at most one half.
  */
 public abstract class Binomial implements LongDistribution, Serializable {
 
-  /** Create a binomial. */
+  /** Create a binomial. All setup for sampling is done here, so reuse it for repeated samples. */
   public static Binomial with(long numDraws, double successProbability) {
     checkArgument(numDraws >= 0, "Can't sample Binomial with less than one trial %d", numDraws);
     checkArgument(0 <= successProbability && successProbability <= 1, "p (%f) must be a probility",
         successProbability);
-    return binomialSwitch(numDraws, successProbability);
-  }
-
-  /** Constructor without bounds checking. */
-  private static Binomial binomialSwitch(long numDraws, double successProbability) {
     if (successProbability == 0 || numDraws == 0) {
       return new ConstantBinomial(0);
     } else if (successProbability == 1) {
       return new ConstantBinomial(numDraws);
-    } else if (numDraws < 37) { // Guess on transition point
-      return new BernoulliBinomial(numDraws, successProbability);
-    } else if (numDraws % 2 == 0) {
-      return new EvenBinomial(numDraws, successProbability);
+    } else if (numDraws * Math.min(successProbability, 1 - successProbability) < 30) {
+      return new InversionBinomial(numDraws, successProbability);
     } else {
-      return new BetaBinomial(numDraws, successProbability);
+      return new BtpeBinomial(numDraws, successProbability);
     }
   }
 
@@ -56,26 +49,46 @@ public abstract class Binomial implements LongDistribution, Serializable {
   }
 
   /**
-   * When n is small, a Binomial is best sampled by just generating n Bernoulli trials and summing
-   * the successes.
-   * 
-   * @author erik
-   *
+   * When the mean is small, a Binomial is best sampled by walking up the pmf from zero until the
+   * uniform draw is used up. This takes time proportional to the mean, which is less than 30. The
+   * walk is restarted if it goes implausibly far into the tail, where rounding error accumulates.
    */
-  private static class BernoulliBinomial extends Binomial {
+  private static class InversionBinomial extends Binomial {
 
     private final long numDraws;
-    private final double successProbability;
+    private final double prob;
+    private final double odds;
+    private final double probZero;
+    private final double bound;
+    private final boolean reflected;
 
-    private BernoulliBinomial(long numDraws, double successProbability) {
+    private InversionBinomial(long numDraws, double successProbability) {
       this.numDraws = numDraws;
-      this.successProbability = successProbability;
+      this.reflected = successProbability > 0.5;
+      this.prob = reflected ? 1 - successProbability : successProbability;
+      this.odds = prob / (1 - prob);
+      this.probZero = Math.exp(numDraws * Math.log1p(-prob));
+      double mean = numDraws * prob;
+      this.bound = Math.min(numDraws, mean + 10 * Math.sqrt(mean * (1 - prob) + 1));
     }
 
     @Override
     public long sample(Random rand) {
-      return DoubleStream.generate(rand::nextDouble).limit(numDraws)
-          .filter(samp -> samp < successProbability).count();
+      long draw = 0;
+      double pmf = probZero;
+      double uniform = rand.nextDouble();
+      while (uniform > pmf) {
+        ++draw;
+        if (draw > bound) {
+          draw = 0;
+          pmf = probZero;
+          uniform = rand.nextDouble();
+        } else {
+          uniform -= pmf;
+          pmf *= (numDraws - draw + 1) * odds / draw;
+        }
+      }
+      return reflected ? numDraws - draw : draw;
     }
 
     private static final long serialVersionUID = 1;
@@ -83,57 +96,137 @@ public abstract class Binomial implements LongDistribution, Serializable {
   }
 
   /**
-   * Recursive binomial sampling based off of beta sampling distribution. If n is large, then we can
-   * use the Beta method for generating binomial samples. The idea of the method is simple. The jth
-   * order statistic of n Bernoulli trials is Beta(j, n - j + 1). Thus, if j = (n + 1) / 2 and Y ~
-   * Beta(j, j), then if Y < p at least j of the trials have to be larger than p (at least j
-   * successes). The conditional distribution for the trials that were less than Y but greater than
-   * p is also Binomial, and so we get a recursive definition that takes O(log n).
+   * BTPE (Binomial, Triangle, Parallelogram, Exponential) rejection sampling. The pmf is covered by
+   * a triangle around the mode, two parallelograms beside it, and exponential tails. Samples from
+   * the triangle are always accepted, and the rest are accepted by comparing to the pmf ratio with
+   * the mode, either explicitly when close to the mode, or with a squeeze and Stirling's
+   * approximation when far from it. The expected number of rejections is bounded independent of n.
    */
-  private static class BetaBinomial extends Binomial {
-
-    private final long halfDraws;
-    private final double successProbability;
-    private final Beta orderDistribution;
+  private static class BtpeBinomial extends Binomial {
 
-    private BetaBinomial(long numDraws, double successProbability) {
-      this.successProbability = successProbability;
-      this.halfDraws = (numDraws + 1) / 2;
-      this.orderDistribution = Beta.with(halfDraws, halfDraws);
+    private final long numDraws;
+    private final double prob;
+    private final boolean reflected;
+    private final double variance;
+    private final long mode;
+    private final double modeCenter;
+    private final double triangleHalfWidth;
+    private final double left;
+    private final double right;
+    private final double parallelogramHeight;
+    private final double lambdaLeft;
+    private final double lambdaRight;
+    private final double triangleArea;
+    private final double parallelogramArea;
+    private final double leftArea;
+    private final double totalArea;
+
+    private BtpeBinomial(long numDraws, double successProbability) {
+      this.numDraws = numDraws;
+      this.reflected = successProbability > 0.5;
+      this.prob = reflected ? 1 - successProbability : successProbability;
+      double failProb = 1 - prob;
+      this.variance = numDraws * prob * failProb;
+
+      double modeReal = (numDraws + 1) * prob;
+      this.mode = (long) Math.floor(modeReal);
+      this.modeCenter = mode + 0.5;
+      this.triangleHalfWidth = Math.floor(2.195 * Math.sqrt(variance) - 4.6 * failProb) + 0.5;
+      this.left = modeCenter - triangleHalfWidth;
+      this.right = modeCenter + triangleHalfWidth;
+      this.parallelogramHeight = 0.134 + 20.5 / (15.3 + mode);
+
+      double leftSlope = (modeReal - left) / (modeReal - left * prob);
+      this.lambdaLeft = leftSlope * (1 + leftSlope / 2);
+      double rightSlope = (right - modeReal) / (right * failProb);
+      this.lambdaRight = rightSlope * (1 + rightSlope / 2);
+
+      this.triangleArea = triangleHalfWidth;
+      this.parallelogramArea = triangleArea * (1 + 2 * parallelogramHeight);
+      this.leftArea = parallelogramArea + parallelogramHeight / lambdaLeft;
+      this.totalArea = leftArea + parallelogramHeight / lambdaRight;
     }
 
     @Override
     public long sample(Random rand) {
-      double order = orderDistribution.sample(rand);
-      if (order < successProbability) {
-        return halfDraws + Binomial
-            .binomialSwitch(halfDraws - 1, (successProbability - order) / (1 - order)).sample(rand);
-      } else {
-        return Binomial.binomialSwitch(halfDraws - 1, successProbability / order).sample(rand);
+      while (true) {
+        double region = rand.nextDouble() * totalArea;
+        double height = rand.nextDouble();
+        long draw;
+        if (region <= triangleArea) {
+          draw = (long) Math.floor(modeCenter - triangleHalfWidth * height + region);
+          return reflected ? numDraws - draw : draw;
+        } else if (region <= parallelogramArea) {
+          double point = left + (region - triangleArea) / parallelogramHeight;
+          height = height * parallelogramHeight + 1
+              - Math.abs(mode - point + 0.5) / triangleHalfWidth;
+          if (height > 1) {
+            continue;
+          }
+          draw = (long) Math.floor(point);
+        } else if (region <= leftArea) {
+          draw = (long) Math.floor(left + Math.log(height) / lambdaLeft);
+          if (draw < 0 || height == 0) {
+            continue;
+          }
+          height *= (region - parallelogramArea) * lambdaLeft;
+        } else {
+          draw = (long) Math.floor(right - Math.log(height) / lambdaRight);
+          if (draw > numDraws || height == 0) {
+            continue;
+          }
+          height *= (region - leftArea) * lambdaRight;
+        }
+        if (accept(draw, height)) {
+          return reflected ? numDraws - draw : draw;
+        }
       }
     }
 
-    private static final long serialVersionUID = 1;
-
-  }
-
-  /**
-   * The Beta method works best when n is odd, thus if it's even, we do one independent Bernoulli
-   * trial, and add its result to the recursive definition.
-   */
-  private static class EvenBinomial extends Binomial {
+    /** Whether `height` is under the ratio of the pmf at `draw` to the pmf at the mode. */
+    private boolean accept(long draw, double height) {
+      long distance = Math.abs(draw - mode);
+      if (distance <= 20 || distance >= variance / 2 - 1) {
+        // Evaluate the ratio explicitly with the recurrence between consecutive terms
+        double odds = prob / (1 - prob);
+        double scaled = odds * (numDraws + 1);
+        double ratio = 1;
+        for (long i = mode + 1; i <= draw; ++i) {
+          ratio *= scaled / i - odds;
+        }
+        for (long i = draw + 1; i <= mode; ++i) {
+          ratio /= scaled / i - odds;
+        }
+        return height <= ratio;
+      }
 
-    private final double successProbability;
-    private final Binomial oddBernoulli;
+      // Squeeze with bounds on the log of the ratio
+      double logHeight = Math.log(height);
+      double bound = (distance / variance)
+          * ((distance * (distance / 3.0 + 0.625) + 1.0 / 6) / variance + 0.5);
+      double normal = -(double) distance * distance / (2 * variance);
+      if (logHeight < normal - bound) {
+        return true;
+      } else if (logHeight > normal + bound) {
+        return false;
+      }
 
-    private EvenBinomial(long numDraws, double successProbability) {
-      this.successProbability = successProbability;
-      this.oddBernoulli = Binomial.binomialSwitch(numDraws - 1, successProbability);
+      // Compare to the log of the ratio with Stirling's approximation of the factorials
+      double drawNext = draw + 1;
+      double modeNext = mode + 1;
+      double modeRest = numDraws - mode + 1;
+      double drawRest = numDraws - draw + 1;
+      return logHeight <= modeCenter * Math.log(modeNext / drawNext)
+          + (numDraws - mode + 0.5) * Math.log(modeRest / drawRest)
+          + (draw - mode) * Math.log(drawRest * prob / (drawNext * (1 - prob)))
+          + stirlingCorrection(modeNext) + stirlingCorrection(modeRest)
+          - stirlingCorrection(drawNext) - stirlingCorrection(drawRest);
     }
 
-    @Override
-    public long sample(Random rand) {
-      return (rand.nextDouble() < successProbability ? 1 : 0) + oddBernoulli.sample(rand);
+    /** The series correction to Stirling's approximation of log((x - 1)!), to five terms. */
+    private static double stirlingCorrection(double x) {
+      double square = x * x;
+      return (13860 - (462 - (132 - (99 - 140 / square) / square) / square) / square) / x / 166320;
     }
 
     private static final long serialVersionUID = 1;
@@ -14,16 +14,37 @@ public interface Distribution<T> {
   /** A distribution that returns integers. */
   interface IntDistribution {
     int sample(Random rand);
+
+    /** Fill `out` from `from` until `to` with the same samples as calling `sample` in order. */
+    default void sample(Random rand, int[] out, int from, int to) {
+      for (int i = from; i < to; ++i) {
+        out[i] = sample(rand);
+      }
+    }
   }
 
   /** A distribution that returns longs. */
   interface LongDistribution {
     long sample(Random rand);
+
+    /** Fill `out` from `from` until `to` with the same samples as calling `sample` in order. */
+    default void sample(Random rand, long[] out, int from, int to) {
+      for (int i = from; i < to; ++i) {
+        out[i] = sample(rand);
+      }
+    }
   }
 
   /** A distribution that returns doubles. */
   interface DoubleDistribution {
     double sample(Random rand);
+
+    /** Fill `out` from `from` until `to` with the same samples as calling `sample` in order. */
+    default void sample(Random rand, double[] out, int from, int to) {
+      for (int i = from; i < to; ++i) {
+        out[i] = sample(rand);
+      }
+    }
   }
 
 }
@@ -4,9 +4,45 @@ import edu.umich.srg.distributions.Distribution.DoubleDistribution;
 
 import java.util.Random;
 
-/** Sample from a gaussian distribution. */
+/**
+ * Sample from a gaussian distribution. Standard normals are drawn with the ziggurat method from:
+ * "The Ziggurat Method for Generating Random Variables" - G. Marsaglia and W. W. Tsang (2000), with
+ * 128 layers and 64 bit draws. Almost all samples take a single `nextLong` and a multiply, instead
+ * of the logs, square root, and lock of `Random.nextGaussian`.
+ */
 public class Gaussian implements DoubleDistribution {
 
+  private static final int layers = 128;
+  private static final double tailStart = 3.442619855899;
+  private static final double layerArea = 9.91256303526217e-3;
+  private static final double scale = 0x1p63;
+
+  // Draws whose magnitude is below the threshold are inside the rectangle under the layer above
+  private static final long[] thresholds = new long[layers];
+  private static final double[] widths = new double[layers];
+  private static final double[] densities = new double[layers];
+
+  static {
+    double right = tailStart;
+    double density = density(right);
+    double baseWidth = layerArea / density; // Width of the base with the same area as a layer
+
+    thresholds[0] = (long) (right / baseWidth * scale);
+    widths[0] = baseWidth / scale;
+    densities[0] = 1;
+    widths[layers - 1] = right / scale;
+    densities[layers - 1] = density;
+
+    for (int i = layers - 2; i > 0; --i) {
+      double left = Math.sqrt(-2 * Math.log(layerArea / right + density));
+      density = density(left);
+      thresholds[i + 1] = (long) (left / right * scale);
+      widths[i] = left / scale;
+      densities[i] = density;
+      right = left;
+    }
+  }
+
   private final double mean;
   private final double standardDeviation;
 
@@ -23,9 +59,55 @@ public class Gaussian implements DoubleDistribution {
     return new Gaussian(mean, standardDeviation);
   }
 
+  /**
+   * The same gaussian, but with every standard normal negated, so samples are mirrored about the
+   * mean. It consumes the random generator identically, so it gives antithetic samples.
+   */
+  public Gaussian mirrored() {
+    return new Gaussian(mean, -standardDeviation);
+  }
+
   @Override
   public double sample(Random rand) {
-    return rand.nextGaussian() * standardDeviation + mean;
+    return standard(rand) * standardDeviation + mean;
+  }
+
+  @Override
+  public void sample(Random rand, double[] out, int from, int to) {
+    for (int i = from; i < to; ++i) {
+      out[i] = standard(rand) * standardDeviation + mean;
+    }
+  }
+
+  /** Sample a standard normal. */
+  public static double standard(Random rand) {
+    while (true) {
+      long draw = rand.nextLong();
+      int layer = (int) (draw & (layers - 1));
+      if (Math.abs(draw) < thresholds[layer]) {
+        return draw * widths[layer];
+      }
+
+      double point = draw * widths[layer];
+      if (layer == 0) {
+        // Sample from the tail past the base with Marsaglia's method
+        double tail;
+        double height;
+        do {
+          tail = -Math.log1p(-rand.nextDouble()) / tailStart;
+          height = -Math.log1p(-rand.nextDouble());
+        } while (2 * height < tail * tail);
+        return draw > 0 ? tailStart + tail : -tailStart - tail;
+      } else if (densities[layer] + rand.nextDouble() * (densities[layer - 1] - densities[layer])
+          < density(point)) {
+        return point; // In the wedge of the layer under the density
+      }
+    }
+  }
+
+  /** The unnormalized standard normal density. */
+  private static double density(double point) {
+    return Math.exp(-0.5 * point * point);
   }
 
   public double getMean() {
@@ -33,7 +115,7 @@ public class Gaussian implements DoubleDistribution {
   }
 
   public double getStandardDeviation() {
-    return standardDeviation;
+    return Math.abs(standardDeviation);
   }
 
   public double getVariance() {
@@ -31,6 +31,10 @@ public abstract class Hypergeometric implements IntDistribution, Serializable {
         offset, sign);
   }
 
+  /**
+   * Constructor for when the number of successes and draws are both at most half the population.
+   * Otherwise the ratio-of-uniforms sampler can be inefficient.
+   */
   private static Hypergeometric hypergeometricSwitch(int populationSize, int numSuccesses,
       int draws) {
     if (numSuccesses == 0 || draws == 0) {
@@ -39,41 +43,128 @@ public abstract class Hypergeometric implements IntDistribution, Serializable {
       return new ConstantHypergeometric(numSuccesses);
     } else if (numSuccesses == populationSize) {
       return new ConstantHypergeometric(draws);
-    } else if (populationSize > 15) {
-      return new InverseCmfHypergeometric(populationSize, numSuccesses, draws);
-    } else {
+    } else if (populationSize <= 15) {
       return new BruteHypergeometric(populationSize, numSuccesses, draws);
+    } else if ((double) numSuccesses * draws / populationSize < 10) {
+      return new InversionHypergeometric(populationSize, numSuccesses, draws);
+    } else {
+      return new RatioHypergeometric(populationSize, numSuccesses, draws);
     }
   }
 
-  private static class InverseCmfHypergeometric extends Hypergeometric {
+  /**
+   * When the mean is small, sample by walking up the pmf from zero until the uniform draw is used
+   * up. This takes time proportional to the mean and doesn't keep a table, so it's cheap to create
+   * for a single sample.
+   */
+  private static class InversionHypergeometric extends Hypergeometric {
 
-    private final InverseCmf invCmf;
+    private final int numSuccesses;
+    private final int draws;
+    private final int failuresNotDrawn;
+    private final int maxSuccesses;
+    private final double probZero;
 
     /**
-     * Sample from the hypergeometric using an inverse cmf.
+     * Sample from the hypergeometric by inversion.
      * 
      * @param populationSize N population size
-     * @param populationSuccesses K number of successes in population
-     * @param sampleSize n number of draws
+     * @param numSuccesses K number of successes in population
+     * @param draws n number of draws
      */
-    private InverseCmfHypergeometric(int populationSize, int populationSuccesses, int sampleSize) {
-      double populationNotSampled = populationSize - sampleSize;
-      double populationFailures = populationSize - populationSuccesses;
-      double nkn = populationSize - populationSuccesses - sampleSize;
-      double proability0 = Math.exp((populationFailures + 0.5) * Math.log(populationFailures)
-          + (populationNotSampled + 0.5) * Math.log(populationNotSampled)
-          - (nkn + 0.5) * Math.log(nkn) - (populationSize + 0.5) * Math.log(populationSize));
-      this.invCmf = new InverseCmf(proability0,
-          (InverseCmf.PmfFunction & Serializable) (probabilityPreviousSuccesses,
-              drawnSuccesses) -> probabilityPreviousSuccesses
-                  * (populationSuccesses - drawnSuccesses + 1) * (sampleSize - drawnSuccesses + 1)
-                  / (drawnSuccesses * (nkn + drawnSuccesses)));
+    private InversionHypergeometric(int populationSize, int numSuccesses, int draws) {
+      this.numSuccesses = numSuccesses;
+      this.draws = draws;
+      this.failuresNotDrawn = populationSize - numSuccesses - draws;
+      this.maxSuccesses = Math.min(numSuccesses, draws);
+      this.probZero = Math.exp(logFactorial(populationSize - numSuccesses)
+          + logFactorial(populationSize - draws) - logFactorial(failuresNotDrawn)
+          - logFactorial(populationSize));
     }
 
     @Override
     public int sample(Random rand) {
-      return invCmf.sample(rand);
+      int result = 0;
+      double pmf = probZero;
+      double uniform = rand.nextDouble();
+      while (uniform > pmf) {
+        ++result;
+        if (result > maxSuccesses) {
+          // Only rounding error is left, so start over
+          result = 0;
+          pmf = probZero;
+          uniform = rand.nextDouble();
+        } else {
+          uniform -= pmf;
+          pmf *= (double) (numSuccesses - result + 1) * (draws - result + 1)
+              / ((double) result * (failuresNotDrawn + result));
+        }
+      }
+      return result;
+    }
+
+    private static final long serialVersionUID = 1;
+
+  }
+
+  /**
+   * Ratio-of-uniforms sampling with a table mountain hat, from: "The ratio of uniforms approach for
+   * generating discrete random variates" - E. Stadlober (1990), algorithm HRUA. The expected number
+   * of iterations is bounded independent of the parameters, and each needs four log factorials.
+   */
+  private static class RatioHypergeometric extends Hypergeometric {
+
+    // 2 sqrt(2 / e) and 3 - 2 sqrt(3 / e), which bound the hat
+    private static final double hatScale = 1.7155277699214135;
+    private static final double hatOffset = 0.8989161620588988;
+
+    private final int numSuccesses;
+    private final int draws;
+    private final int failuresNotDrawn;
+    private final double center;
+    private final double width;
+    private final double upper;
+    private final double logModePmf;
+
+    private RatioHypergeometric(int populationSize, int numSuccesses, int draws) {
+      this.numSuccesses = numSuccesses;
+      this.draws = draws;
+      this.failuresNotDrawn = populationSize - numSuccesses - draws;
+
+      double successFraction = numSuccesses / (double) populationSize;
+      this.center = draws * successFraction + 0.5;
+      double deviation = Math.sqrt((double) (populationSize - draws) * draws * successFraction
+          * (1 - successFraction) / (populationSize - 1) + 0.5);
+      this.width = hatScale * deviation + hatOffset;
+      int mode = (int) ((draws + 1.0) * (numSuccesses + 1) / (populationSize + 2));
+      this.logModePmf = logInversePmf(mode);
+      this.upper = Math.min(Math.min(draws, numSuccesses) + 1, Math.floor(center + 16 * deviation));
+    }
+
+    /** The negative log of the pmf at `result`, without normalization. */
+    private double logInversePmf(int result) {
+      return logFactorial(result) + logFactorial(numSuccesses - result)
+          + logFactorial(draws - result) + logFactorial(failuresNotDrawn + result);
+    }
+
+    @Override
+    public int sample(Random rand) {
+      while (true) {
+        double uniform = rand.nextDouble();
+        double point = center + width * (rand.nextDouble() - 0.5) / uniform;
+        if (point < 0 || point >= upper) {
+          continue;
+        }
+        int result = (int) point;
+        double logRatio = logModePmf - logInversePmf(result);
+        if (uniform * (4 - uniform) - 3 <= logRatio) {
+          return result; // Squeeze acceptance
+        } else if (uniform * (uniform - logRatio) >= 1) {
+          continue; // Squeeze rejection
+        } else if (2 * Math.log(uniform) <= logRatio) {
+          return result;
+        }
+      }
     }
 
     private static final long serialVersionUID = 1;
@@ -151,6 +242,25 @@ public abstract class Hypergeometric implements IntDistribution, Serializable {
     private static final long serialVersionUID = 1;
   }
 
+  private static final double[] logFactorials = new double[128];
+
+  static {
+    for (int i = 1; i < logFactorials.length; ++i) {
+      logFactorials[i] = logFactorials[i - 1] + Math.log(i);
+    }
+  }
+
+  /** log(n!), from a table when small, and Stirling's series otherwise. */
+  static double logFactorial(int n) {
+    if (n < logFactorials.length) {
+      return logFactorials[n];
+    }
+    double x = n + 1.0;
+    double inverseSquare = 1 / (x * x);
+    return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+        + (1 / 12.0 - inverseSquare * (1 / 360.0 - inverseSquare / 1260.0)) / x;
+  }
+
   private static final long serialVersionUID = 1;
 
 }
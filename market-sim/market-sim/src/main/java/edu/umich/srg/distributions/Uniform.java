@@ -124,17 +124,39 @@ public abstract class Uniform<T> implements Distribution<T> {
     // FIXME this will fail if the range is larger than Integer.MAX_VALUE;
     private final int range;
     private final int offset;
+    private final int sign;
 
     private IntUniform(int min, BoundType minBound, int max, BoundType maxBound) {
-      this.range =
-          max - min - (minBound == BoundType.OPEN ? 1 : 0) + (maxBound == BoundType.CLOSED ? 1 : 0);
+      this(
+          max - min - (minBound == BoundType.OPEN ? 1 : 0) + (maxBound == BoundType.CLOSED ? 1 : 0),
+          min, 1);
+    }
+
+    private IntUniform(int range, int offset, int sign) {
       checkArgument(range > 0, "Must have a non zero range to sample from");
-      this.offset = min;
+      this.range = range;
+      this.offset = offset;
+      this.sign = sign;
+    }
+
+    /**
+     * The same uniform, but every sample is mirrored to the other end of the range. It consumes the
+     * random generator identically, so it gives antithetic samples.
+     */
+    public IntUniform mirrored() {
+      return new IntUniform(range, offset + sign * (range - 1), -sign);
     }
 
     @Override
     public int sample(Random rand) {
-      return rand.nextInt(range) + offset;
+      return sign * rand.nextInt(range) + offset;
+    }
+
+    @Override
+    public void sample(Random rand, int[] out, int from, int to) {
+      for (int i = from; i < to; ++i) {
+        out[i] = sign * rand.nextInt(range) + offset;
+      }
     }
 
   }
@@ -190,6 +212,13 @@ public abstract class Uniform<T> implements Distribution<T> {
       return rand.nextDouble() * range + offset;
     }
 
+    @Override
+    public void sample(Random rand, double[] out, int from, int to) {
+      for (int i = from; i < to; ++i) {
+        out[i] = rand.nextDouble() * range + offset;
+      }
+    }
+
   }
 
 }
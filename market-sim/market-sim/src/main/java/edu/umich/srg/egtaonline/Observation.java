@@ -1,8 +1,10 @@
 package edu.umich.srg.egtaonline;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.gson.JsonObject;
 
 import java.util.Collection;
+import java.util.Map;
 
 public interface Observation {
 
@@ -20,6 +22,16 @@ public interface Observation {
 
     JsonObject getFeatures();
 
+    /** Payoffs at earlier horizons of the same run, keyed by time. */
+    default Map<Long, Double> getCheckpointPayoffs() {
+      return ImmutableMap.of();
+    }
+
+    /** Whether this player is the deviator from the background assignment of its simulation. */
+    default boolean isDeviator() {
+      return false;
+    }
+
   }
 
 }
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.base.CaseFormat;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -31,7 +32,9 @@ import java.lang.reflect.Type;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.PriorityQueue;
@@ -41,6 +44,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class Runner {
@@ -57,24 +61,86 @@ public class Runner {
       jobs = Runtime.getRuntime().availableProcessors();
     }
 
+    BiFunction<SimSpec, Integer, Observation> sampler = (spec, simNum) -> spec.deviations.isEmpty()
+        ? sim.apply(spec, simNum) : sampleDeviations(sim, spec, simNum);
     if (jobs > 1) {
-      multiThreadRun(sim, specs, output, numSims, jobs);
+      multiThreadRun(sampler, specs, output, numSims, jobs);
     } else {
-      singleThreadRun(sim, specs, output, numSims);
+      singleThreadRun(sampler, specs, output, numSims);
     }
   }
 
+  /**
+   * Sample the payoff of every deviation in `spec` with common random numbers. Each deviation is
+   * simulated with the same observation number, and so the same fundamental and background agent
+   * random streams, so only the deviator's strategy differs between them. The observation has one
+   * player per deviation, in order, that's the deviator of that simulation, and its features hold
+   * the features of each simulation under "deviations" in the same order.
+   */
+  public static Observation sampleDeviations(BiFunction<SimSpec, Integer, Observation> sim,
+      SimSpec spec, int simNum) {
+    checkArgument(!spec.deviations.isEmpty(), "spec has no deviations");
+    ImmutableList.Builder<Observation> arms = ImmutableList.builder();
+    ImmutableList.Builder<Player> deviators = ImmutableList.builder();
+    for (RoleStrat deviation : spec.deviations) {
+      Observation obs = sim.apply(spec.withDeviator(deviation), simNum);
+      arms.add(obs);
+      deviators.add(obs.getPlayers().stream().filter(Player::isDeviator).findFirst().orElseThrow(
+          () -> new IllegalStateException("Simulation didn't report deviator " + deviation)));
+    }
+    List<Observation> observations = arms.build();
+    List<Player> players = deviators.build();
+
+    return new Observation() {
+
+      @Override
+      public Collection<? extends Player> getPlayers() {
+        return players;
+      }
+
+      @Override
+      public JsonObject getFeatures() {
+        // Features are only computed when asked for, so the arms' aren't merged until then
+        JsonArray armFeatures = new JsonArray();
+        for (Observation obs : observations) {
+          armFeatures.add(obs.getFeatures());
+        }
+        JsonObject features = new JsonObject();
+        features.add("deviations", armFeatures);
+        return features;
+      }
+
+    };
+  }
+
+  /** The paired payoffs of every deviation in `spec`, sampled with common random numbers. */
+  public static double[] deviationPayoffs(BiFunction<SimSpec, Integer, Observation> sim,
+      SimSpec spec, int simNum) {
+    return sampleDeviations(sim, spec, simNum).getPlayers().stream()
+        .mapToDouble(Player::getPayoff).toArray();
+  }
 
   /** Run an egta script with readers and writers. */
   public static void run(BiFunction<SimSpec, Integer, Observation> sim, Reader specs, Writer writer,
       int numObs, int simsPerObs, int jobs, boolean noFeatures, String classPrefix,
       CaseFormat keyCaseFormat) {
+    run(outputFeatures -> sim, specs, writer, numObs, simsPerObs, jobs, noFeatures, classPrefix,
+        keyCaseFormat);
+  }
+
+  /**
+   * Run an egta script with readers and writers. The simulation is created from whether features
+   * will be output, so that simulations that aren't can skip collecting them.
+   */
+  public static void run(Function<Boolean, BiFunction<SimSpec, Integer, Observation>> sim,
+      Reader specs, Writer writer, int numObs, int simsPerObs, int jobs, boolean noFeatures,
+      String classPrefix, CaseFormat keyCaseFormat) {
 
     boolean outputFeatures = simsPerObs == 1 && !noFeatures;
     SpecReader input = new SpecReader(specs, classPrefix, keyCaseFormat);
     Consumer<Observation> output = createObsWriter(writer, simsPerObs, outputFeatures);
 
-    run(sim, () -> input, output, numObs * simsPerObs, jobs);
+    run(sim.apply(outputFeatures), () -> input, output, numObs * simsPerObs, jobs);
 
     try {
       writer.flush();
@@ -87,6 +153,15 @@ public class Runner {
   /** Run an egta script with command line arguments. */
   public static void run(BiFunction<SimSpec, Integer, Observation> sim, String[] args,
       String classPrefix, CaseFormat keyCaseFormat) throws IOException {
+    run(outputFeatures -> sim, args, classPrefix, keyCaseFormat);
+  }
+
+  /**
+   * Run an egta script with command line arguments. The simulation is created from whether
+   * features will be output.
+   */
+  public static void run(Function<Boolean, BiFunction<SimSpec, Integer, Observation>> sim,
+      String[] args, String classPrefix, CaseFormat keyCaseFormat) throws IOException {
     SingleCommand<CommandLineOptions> parser =
         SingleCommand.singleCommand(CommandLineOptions.class);
     CommandLineOptions options = parser.parse(args);
@@ -298,6 +373,13 @@ public class Runner {
       serializedPlayer.addProperty("role", player.getRole());
       serializedPlayer.addProperty("strategy", player.getStrategy());
       serializedPlayer.addProperty("payoff", player.getPayoff());
+      if (!player.getCheckpointPayoffs().isEmpty()) {
+        JsonObject checkpoints = new JsonObject();
+        for (Entry<Long, Double> checkpoint : player.getCheckpointPayoffs().entrySet()) {
+          checkpoints.addProperty(checkpoint.getKey().toString(), checkpoint.getValue());
+        }
+        serializedPlayer.add("checkpoint_payoffs", checkpoints);
+      }
       JsonObject features;
       if (serializeFeatures && !(features = player.getFeatures()).entrySet().isEmpty()) {
         serializedPlayer.add("features", features);
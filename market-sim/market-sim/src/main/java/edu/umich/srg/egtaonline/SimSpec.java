@@ -1,13 +1,18 @@
 package edu.umich.srg.egtaonline;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.base.CaseFormat;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multiset;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import edu.umich.srg.egtaonline.spec.Spec;
 
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
 
@@ -15,10 +20,20 @@ public class SimSpec {
 
   public final Multiset<RoleStrat> assignment;
   public final Spec configuration;
-
-  private SimSpec(Multiset<RoleStrat> assignment, Spec configuration) {
+  /**
+   * Candidate strategies to deviate to from the background `assignment`. When present, each sample
+   * simulates every deviation with common random numbers instead of simulating the assignment.
+   */
+  public final List<RoleStrat> deviations;
+  /** The player deviating from the background `assignment` in this simulation, or null. */
+  public final RoleStrat deviator;
+
+  private SimSpec(Multiset<RoleStrat> assignment, Spec configuration, List<RoleStrat> deviations,
+      RoleStrat deviator) {
     this.assignment = assignment;
     this.configuration = configuration;
+    this.deviations = deviations;
+    this.deviator = deviator;
   }
 
   /** Read a SimSpec object from a reader. */
@@ -36,16 +51,46 @@ public class SimSpec {
       configuration.put(e.getKey(), e.getValue().getAsString());
     }
 
-    return new SimSpec(assignment.build(), configuration.build());
+    ImmutableList.Builder<RoleStrat> deviations = ImmutableList.builder();
+    if (obj.has("deviations")) {
+      for (Entry<String, JsonElement> role : obj.get("deviations").getAsJsonObject().entrySet()) {
+        for (JsonElement strategy : role.getValue().getAsJsonArray()) {
+          deviations.add(new RoleStrat(role.getKey(), strategy.getAsString()));
+        }
+      }
+    }
+
+    return create(assignment.build(), configuration.build(), deviations.build());
   }
 
   public static SimSpec create(Multiset<RoleStrat> assignment, Spec configuration) {
-    return new SimSpec(assignment, configuration);
+    return new SimSpec(assignment, configuration, ImmutableList.of(), null);
+  }
+
+  /** Create a spec that samples the payoffs of `deviations` from the background `assignment`. */
+  public static SimSpec create(Multiset<RoleStrat> assignment, Spec configuration,
+      List<RoleStrat> deviations) {
+    checkArgument(ImmutableSet.copyOf(deviations).size() == deviations.size(),
+        "Deviations must be distinct %s", deviations);
+    return new SimSpec(assignment, configuration, ImmutableList.copyOf(deviations), null);
+  }
+
+  /** The simulation of a single deviation by `deviator` from the background assignment. */
+  public SimSpec withDeviator(RoleStrat deviator) {
+    return new SimSpec(assignment, configuration, ImmutableList.of(), deviator);
   }
 
   @Override
   public String toString() {
-    return String.format("{assignment=%s, configuration=%s}", assignment, configuration);
+    if (deviator != null) {
+      return String.format("{assignment=%s, deviator=%s, configuration=%s}", assignment, deviator,
+          configuration);
+    } else if (!deviations.isEmpty()) {
+      return String.format("{assignment=%s, deviations=%s, configuration=%s}", assignment,
+          deviations, configuration);
+    } else {
+      return String.format("{assignment=%s, configuration=%s}", assignment, configuration);
+    }
   }
 
   public static class RoleStrat {
@@ -107,6 +107,12 @@ public abstract class ParsableValue<T> extends Value<T> {
     }
   }
 
+  public static class LongsValue extends IterableValue<Long> {
+    public LongsValue() {
+      super(Longs.stringConverter());
+    }
+  }
+
   public static class DoublesValue extends IterableValue<Double> {
     public DoublesValue() {
       super(Doubles.stringConverter());
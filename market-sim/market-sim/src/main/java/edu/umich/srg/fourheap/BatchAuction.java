@@ -0,0 +1,297 @@
+package edu.umich.srg.fourheap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static edu.umich.srg.fourheap.Order.OrderType.BUY;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+
+import edu.umich.srg.fourheap.FourHeap.Pooling;
+import edu.umich.srg.fourheap.Order.OrderType;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * An order book for call markets. Unlike the fourheap, it does no matching until it's cleared.
+ * Orders are appended to the queue of resting orders at their price, so submission is O(log L)
+ * where `L` is the number of distinct prices on that side. At clear time the buy and sell price
+ * levels are walked from the best price inward, which simultaneously builds the supply and demand
+ * curves, finds the maximal volume that can trade, and allocates fills by price then time priority.
+ * The incremental matching the fourheap does on every submission is avoided, which matters when
+ * many orders arrive between clears. Because the fourheap matches a new order against unmatched
+ * orders before displacing matched ones, it can leave crossing quantity in a crossed book, so call
+ * market clears can now trade more volume than they did with a fourheap.
+ *
+ * <p>
+ * Quotes are computed lazily from the price levels and cached until the book changes. After a
+ * clear no prices cross, so the quote is just the best price level on each side.
+ */
+public class BatchAuction<P extends Comparable<? super P>> implements OrderBook<P>, Serializable {
+
+  private final Ordering<P> pord = Ordering.natural();
+
+  private final NavigableMap<P, PriceLevel<P>> buys; // Best (highest) first
+  private final NavigableMap<P, PriceLevel<P>> sells; // Best (lowest) first
+  private final OrderPool<P> pool;
+  private int bidDepth;
+  private int askDepth;
+  private int size;
+  private long time;
+
+  private boolean quoteValid;
+  private P bidQuote;
+  private P askQuote;
+
+  /** Create an empty batch auction. */
+  public BatchAuction() {
+    this(Pooling.NONE);
+  }
+
+  /** Create an empty batch auction that allocates orders and matches according to `pooling`. */
+  public BatchAuction(Pooling pooling) {
+    this.buys = new TreeMap<>(pord.reverse());
+    this.sells = new TreeMap<>(pord);
+    this.pool = new OrderPool<>(pooling);
+    this.bidDepth = 0;
+    this.askDepth = 0;
+    this.size = 0;
+    this.time = 0;
+    this.quoteValid = true;
+  }
+
+  /** Inserts and returns an order. Complexity: O(log L). */
+  @Override
+  public Order<P> submit(OrderType orderType, P price, int quantity) {
+    checkArgument(quantity > 0, "Orders must have positive quantity");
+
+    Order<P> order = pool.order(orderType, price, quantity, time++);
+    NavigableMap<P, PriceLevel<P>> side;
+    if (orderType == BUY) {
+      bidDepth += quantity;
+      side = buys;
+    } else {
+      askDepth += quantity;
+      side = sells;
+    }
+
+    PriceLevel<P> level = side.get(price);
+    if (level == null) {
+      level = new PriceLevel<>();
+      side.put(price, level);
+    }
+    level.orders.addLast(order);
+    level.quantity += quantity;
+    size++;
+    quoteValid = false;
+    return order;
+  }
+
+  /**
+   * Withdraws a specific quantity from an order. Behavior is undefined if the order isn't already in
+   * the book. Complexity: O(log L) for partial withdrawals, and O(log L + k) to remove an order from
+   * a price level with k orders.
+   */
+  @Override
+  public void withdraw(Order<? extends P> order, int quantity) {
+    checkArgument(quantity > 0, "Quantity must be positive");
+    checkArgument(quantity <= order.getQuantity(), "Can't withdraw more than in order");
+
+    NavigableMap<P, PriceLevel<P>> side;
+    if (order.getOrderType() == BUY) {
+      bidDepth -= quantity;
+      side = buys;
+    } else {
+      askDepth -= quantity;
+      side = sells;
+    }
+
+    PriceLevel<P> level = side.get(order.price);
+    order.unmatchedQuantity -= quantity;
+    level.quantity -= quantity;
+    if (order.unmatchedQuantity == 0) {
+      level.orders.remove(order);
+      size--;
+      if (level.orders.isEmpty()) {
+        side.remove(order.price);
+      }
+    }
+    quoteValid = false;
+  }
+
+  /**
+   * Clears matching orders from the book, and returns a List of MatchedOrders, which contains the
+   * two matched orders, and the quantity matched by that order. Complexity: O(m + l log L) where m
+   * is the number of matched orders, and l is the number of price levels that are fully matched.
+   */
+  @Override
+  public Collection<MatchedOrders<P>> clear() {
+    ImmutableList.Builder<MatchedOrders<P>> transactions = ImmutableList.builder();
+    while (!buys.isEmpty() && !sells.isEmpty()) {
+      Entry<P, PriceLevel<P>> buyLevel = buys.firstEntry();
+      Entry<P, PriceLevel<P>> sellLevel = sells.firstEntry();
+      if (buyLevel.getKey().compareTo(sellLevel.getKey()) < 0) {
+        break;
+      }
+
+      Order<P> buy = buyLevel.getValue().orders.peekFirst();
+      Order<P> sell = sellLevel.getValue().orders.peekFirst();
+      int quantity = Math.min(buy.unmatchedQuantity, sell.unmatchedQuantity);
+      transactions.add(pool.match(buy, sell, quantity));
+      fill(buys, buyLevel, buy, quantity);
+      fill(sells, sellLevel, sell, quantity);
+      bidDepth -= quantity;
+      askDepth -= quantity;
+    }
+
+    // Nothing crosses, so the quote is just the best remaining levels
+    bidQuote = buys.isEmpty() ? null : buys.firstKey();
+    askQuote = sells.isEmpty() ? null : sells.firstKey();
+    quoteValid = true;
+    return transactions.build();
+  }
+
+  private void fill(NavigableMap<P, PriceLevel<P>> side, Entry<P, PriceLevel<P>> levelEntry,
+      Order<P> order, int quantity) {
+    PriceLevel<P> level = levelEntry.getValue();
+    order.unmatchedQuantity -= quantity;
+    level.quantity -= quantity;
+    if (order.unmatchedQuantity == 0) {
+      level.orders.pollFirst();
+      size--;
+      if (level.orders.isEmpty()) {
+        side.remove(levelEntry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Walks the price levels to find the quantity that would match if the book were cleared now, and
+   * from that the same quotes the fourheap would report. Complexity: O(l) where l is the number of
+   * price levels that would match.
+   */
+  private void updateQuote() {
+    Iterator<Entry<P, PriceLevel<P>>> buyIt = buys.entrySet().iterator();
+    Iterator<Entry<P, PriceLevel<P>>> sellIt = sells.entrySet().iterator();
+    Entry<P, PriceLevel<P>> buy = buyIt.hasNext() ? buyIt.next() : null;
+    Entry<P, PriceLevel<P>> sell = sellIt.hasNext() ? sellIt.next() : null;
+    int buyLeft = buy == null ? 0 : buy.getValue().quantity;
+    int sellLeft = sell == null ? 0 : sell.getValue().quantity;
+    P minMatchedBuy = null;
+    P maxMatchedSell = null;
+
+    while (buy != null && sell != null && buy.getKey().compareTo(sell.getKey()) >= 0) {
+      int quantity = Math.min(buyLeft, sellLeft);
+      buyLeft -= quantity;
+      sellLeft -= quantity;
+      minMatchedBuy = buy.getKey();
+      maxMatchedSell = sell.getKey();
+      if (buyLeft == 0) {
+        buy = buyIt.hasNext() ? buyIt.next() : null;
+        buyLeft = buy == null ? 0 : buy.getValue().quantity;
+      }
+      if (sellLeft == 0) {
+        sell = sellIt.hasNext() ? sellIt.next() : null;
+        sellLeft = sell == null ? 0 : sell.getValue().quantity;
+      }
+    }
+
+    // The current levels hold the best unmatched quantity on each side
+    bidQuote = best(pord, maxMatchedSell, buy == null ? null : buy.getKey());
+    askQuote = best(pord.reverse(), minMatchedBuy, sell == null ? null : sell.getKey());
+    quoteValid = true;
+  }
+
+  private static <P> P best(Ordering<P> ordering, P first, P second) {
+    if (first == null) {
+      return second;
+    } else if (second == null) {
+      return first;
+    } else {
+      return ordering.max(first, second);
+    }
+  }
+
+  /** Complexity: O(k) where k is the number of orders on `side` that are skipped. */
+  @Override
+  public P bestPrice(OrderType side, Predicate<? super Order<P>> include) {
+    for (Entry<P, PriceLevel<P>> level : (side == BUY ? buys : sells).entrySet()) {
+      for (Order<P> order : level.getValue().orders) {
+        if (include.test(order)) {
+          return level.getKey();
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Complexity: O(1). */
+  @Override
+  public void release(Order<P> order) {
+    pool.release(order);
+  }
+
+  /** Complexity: O(m). */
+  @Override
+  public void releaseMatches(Iterable<MatchedOrders<P>> matches) {
+    pool.releaseMatches(matches);
+  }
+
+  @Override
+  public P bidQuote() {
+    if (!quoteValid) {
+      updateQuote();
+    }
+    return bidQuote;
+  }
+
+  @Override
+  public P askQuote() {
+    if (!quoteValid) {
+      updateQuote();
+    }
+    return askQuote;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int getBidDepth() {
+    return bidDepth;
+  }
+
+  @Override
+  public int getAskDepth() {
+    return askDepth;
+  }
+
+  @Override
+  public String toString() {
+    return "<Buys: " + buys + ", Sells: " + sells + ">";
+  }
+
+  /** The orders resting at a single price, in time priority, and their total quantity. */
+  private static class PriceLevel<P extends Comparable<? super P>> implements Serializable {
+    private final ArrayDeque<Order<P>> orders = new ArrayDeque<>();
+    private int quantity = 0;
+
+    @Override
+    public String toString() {
+      return orders.toString();
+    }
+
+    private static final long serialVersionUID = 1;
+  }
+
+  private static final long serialVersionUID = 1;
+
+}
@@ -18,6 +18,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
+import java.util.function.Predicate;
 
 /**
  * This class provides an efficient order matching mechanism while also producing valid price quotes
@@ -33,7 +34,8 @@ import java.util.Queue;
  * complains about the comapareTo, and so this is cast to end the complaining.
  * 
  */
-public class FourHeap<P extends Comparable<? super P>> implements Serializable, Iterable<Order<P>> {
+public class FourHeap<P extends Comparable<? super P>>
+    implements OrderBook<P>, Serializable, Iterable<Order<P>> {
 
   private static final long serialVersionUID = 1;
   private final Ordering<P> pord = Ordering.natural();
@@ -50,8 +52,15 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
   private int askDepth;
   private long time;
 
+  private final OrderPool<P> pool;
+
   /** Create an empty fourheap. */
   public FourHeap() {
+    this(Pooling.NONE);
+  }
+
+  /** Create an empty fourheap that allocates orders and matches according to `pooling`. */
+  public FourHeap(Pooling pooling) {
     // XXX This should just be natural().onResultOf(o -> o.price), but they need to be cast
     // serializable, which breaks the eclipse compiler
     Ordering<Order<? extends P>> priceComp = new PriceOrdering();
@@ -71,13 +80,16 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
     this.bidDepth = 0;
     this.askDepth = 0;
     this.time = 0;
+
+    this.pool = new OrderPool<>(pooling);
   }
 
   /** Inserts and returns an order into the fourheap. Complexity: O(log n). */
+  @Override
   public Order<P> submit(OrderType orderType, P price, int quantity) {
     checkArgument(quantity > 0, "Orders must have positive quantity");
 
-    Order<P> order = new Order<>(orderType, price, quantity, time++);
+    Order<P> order = pool.order(orderType, price, quantity, time++);
 
     if (orderType == BUY) {
       bidDepth += order.unmatchedQuantity;
@@ -172,6 +184,7 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
    * Withdraws a specific quantity from an order in the fourheap. Behavior is undefined if the order
    * isn't already in the fourheap. Complexity: O(n).
    */
+  @Override
   public void withdraw(Order<? extends P> order, int quantity) {
     checkArgument(quantity > 0, "Quantity must be positive");
     checkArgument(quantity <= order.getQuantity(), "Can't withdraw more than in order");
@@ -262,6 +275,7 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
    * the two matched orders, and the quantity matched by that order. Complexity: O(m) where m is the
    * number of matched orders.
    */
+  @Override
   public Collection<MatchedOrders<P>> clear() {
     List<Order<P>> buys = Lists.newArrayList(buyMatched);
     Collections.sort(buys, buyUnmatchedOrdering);
@@ -288,7 +302,7 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
       int quantity = Math.min(buy.matchedQuantity, sell.matchedQuantity);
       buy.matchedQuantity -= quantity;
       sell.matchedQuantity -= quantity;
-      transactions.add(new MatchedOrders<P>(buy, sell, quantity));
+      transactions.add(pool.match(buy, sell, quantity));
       bidDepth -= quantity;
       askDepth -= quantity;
     }
@@ -296,10 +310,30 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
     return transactions.build();
   }
 
+  /**
+   * Release an order that has no quantity left, and so is no longer in the fourheap. The caller
+   * must not hold any other references to the order. If the fourheap is pooled, the order will be
+   * reused by a later submission. Complexity: O(1).
+   */
+  @Override
+  public void release(Order<P> order) {
+    pool.release(order);
+  }
+
+  /**
+   * Release matches returned by clear once they are no longer needed. If the fourheap is pooled,
+   * they will be reused by a later clear. Complexity: O(m).
+   */
+  @Override
+  public void releaseMatches(Iterable<MatchedOrders<P>> matches) {
+    pool.releaseMatches(matches);
+  }
+
   /**
    * Returns the bid quote for the fourheap. A sell order with a price below this is guaranteed to
    * get matched.
    */
+  @Override
   public P bidQuote() {
     Order<P> sin = sellMatched.peek();
     Order<P> bout = buyUnmatched.peek();
@@ -319,6 +353,7 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
    * Returns the ask quote for the fourheap. A buy order with a price above this is guaranteed to
    * get matched.
    */
+  @Override
   public P askQuote() {
     Order<P> sout = sellUnmatched.peek();
     Order<P> bin = buyMatched.peek();
@@ -334,7 +369,31 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
     }
   }
 
+  /**
+   * Complexity: O(k + m) where k is the number of unmatched orders on `side` that are skipped, and m
+   * is the number of matched orders on `side`.
+   */
+  @Override
+  public P bestPrice(OrderType side, Predicate<? super Order<P>> include) {
+    Ordering<P> priority = side == BUY ? pord : pord.reverse();
+    P best = null;
+    // Unmatched orders are iterated best first, but matched orders are iterated worst first
+    for (Order<P> order : side == BUY ? buyUnmatched : sellUnmatched) {
+      if (include.test(order)) {
+        best = order.price;
+        break;
+      }
+    }
+    for (Order<P> order : side == BUY ? buyMatched : sellMatched) {
+      if (include.test(order) && (best == null || priority.compare(order.price, best) > 0)) {
+        best = order.price;
+      }
+    }
+    return best;
+  }
+
   /** The number of orders (ignoring quantity) in the fourheap. */
+  @Override
   public int size() {
     return sellUnmatched.size() + sellMatched.size() + buyUnmatched.size() + buyMatched.size();
   }
@@ -344,10 +403,12 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
     return bidDepth + askDepth;
   }
 
+  @Override
   public int getBidDepth() {
     return bidDepth;
   }
 
+  @Override
   public int getAskDepth() {
     return askDepth;
   }
@@ -368,6 +429,19 @@ public class FourHeap<P extends Comparable<? super P>> implements Serializable,
         + sellMatched + ">";
   }
 
+  /** How a fourheap allocates its orders and matches. */
+  public enum Pooling {
+    /** Allocate new objects, releasing objects does nothing. */
+    NONE,
+    /** Reuse released objects for later orders and matches. */
+    POOLED,
+    /**
+     * Released objects are never reused, and any access to them throws an exception. This is for
+     * finding use after release bugs that pooling would otherwise silently hide.
+     */
+    DEBUG
+  }
+
   // These had to be declared separately so they could implements serializable
   /** Sorts an Order by its price. */
   protected class PriceOrdering extends Ordering<Order<? extends P>> implements Serializable {
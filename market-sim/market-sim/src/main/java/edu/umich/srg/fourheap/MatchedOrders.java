@@ -1,33 +1,54 @@
 package edu.umich.srg.fourheap;
 
+import static com.google.common.base.Preconditions.checkState;
+
 import java.io.Serializable;
 
 public class MatchedOrders<P extends Comparable<? super P>> implements Serializable {
 
   private static final long serialVersionUID = -6073835626927361670L;
 
-  protected final Order<P> buy;
-  protected final Order<P> sell;
-  protected final int quantity;
+  // Not final so that pooled matches can be reused
+  protected Order<P> buy;
+  protected Order<P> sell;
+  protected int quantity;
+  boolean released;
 
   protected MatchedOrders(Order<P> buy, Order<P> sell, int quantity) {
+    reset(buy, sell, quantity);
+  }
+
+  /** Reinitialize this match, possibly after it was released to a pool. */
+  void reset(Order<P> buy, Order<P> sell, int quantity) {
     this.buy = buy;
     this.sell = sell;
     this.quantity = quantity;
+    this.released = false;
   }
 
   public Order<P> getBuy() {
+    checkLive();
     return buy;
   }
 
   public Order<P> getSell() {
+    checkLive();
     return sell;
   }
 
   public int getQuantity() {
+    checkLive();
     return quantity;
   }
 
+  /**
+   * Objects are only marked released when they're pooled, so without pooling this is a single
+   * branch that never fails.
+   */
+  private void checkLive() {
+    checkState(!released, "Match was used after it was released");
+  }
+
   @Override
   public final int hashCode() {
     return super.hashCode();
@@ -2,38 +2,50 @@ package edu.umich.srg.fourheap;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 import java.io.Serializable;
 
 /** An order meant for use in a fourheap. */
 public class Order<P extends Comparable<? super P>> implements Serializable {
 
-  protected final OrderType type;
-  protected final P price;
+  // Not final so that pooled orders can be reused
+  protected OrderType type;
+  protected P price;
   protected int unmatchedQuantity; // Always positive
   protected int matchedQuantity; // Always positive
-  protected final long submitTime;
+  protected long submitTime;
+  boolean released;
 
   protected Order(OrderType type, P price, int initialQuantity, long submitTime) {
+    reset(type, price, initialQuantity, submitTime);
+  }
+
+  /** Reinitialize this order, possibly after it was released to a pool. */
+  void reset(OrderType type, P price, int initialQuantity, long submitTime) {
     checkArgument(initialQuantity > 0, "Initial quantity must be positive");
     this.price = checkNotNull(price, "Price");
     this.unmatchedQuantity = initialQuantity;
     this.matchedQuantity = 0;
     this.type = checkNotNull(type);
     this.submitTime = checkNotNull(submitTime, "Submit Time");
+    this.released = false;
   }
 
   public OrderType getOrderType() {
+    checkLive();
     return type;
   }
 
   /** Get the Price. */
   public P getPrice() {
+    checkLive();
     return price;
   }
 
   /** Get the quantity. Always positive. */
   public int getQuantity() {
+    checkLive();
     return unmatchedQuantity + matchedQuantity;
   }
 
@@ -47,9 +59,18 @@ public class Order<P extends Comparable<? super P>> implements Serializable {
 
   /** Returns the time this order was submitted to the fourheap, in fourheap time. */
   public long getSubmitTime() {
+    checkLive();
     return submitTime;
   }
 
+  /**
+   * Objects are only marked released when they're pooled, so without pooling this is a single
+   * branch that never fails.
+   */
+  private void checkLive() {
+    checkState(!released, "Order was used after it was released");
+  }
+
   @Override
   public final int hashCode() {
     return super.hashCode();
@@ -0,0 +1,53 @@
+package edu.umich.srg.fourheap;
+
+import edu.umich.srg.fourheap.Order.OrderType;
+
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * The operations a market needs from its order book. Implementations differ in when they do the work
+ * of matching, and the batch auction always clears the maximal volume, which the fourheap can fall
+ * short of when the book is crossed.
+ */
+public interface OrderBook<P extends Comparable<? super P>> {
+
+  /** Inserts and returns a new order. */
+  Order<P> submit(OrderType orderType, P price, int quantity);
+
+  /** Withdraws a specific quantity from an order that is in the book. */
+  void withdraw(Order<? extends P> order, int quantity);
+
+  /**
+   * Clears matching orders from the book, and returns the matches in price-time priority. Each
+   * match contains the two matched orders and the quantity matched between them.
+   */
+  Collection<MatchedOrders<P>> clear();
+
+  /** A sell order with a price below this is guaranteed to get matched. */
+  P bidQuote();
+
+  /** A buy order with a price above this is guaranteed to get matched. */
+  P askQuote();
+
+  /**
+   * The highest buy price or lowest sell price of the orders on `side` that `include` accepts, or
+   * null if it accepts none. Once the book is cleared, this is the quote the book would have if it
+   * only held those orders.
+   */
+  P bestPrice(OrderType side, Predicate<? super Order<P>> include);
+
+  int getBidDepth();
+
+  int getAskDepth();
+
+  /** The number of orders (ignoring quantity) in the book. */
+  int size();
+
+  /** Release an order that has no quantity left, and so is no longer in the book. */
+  void release(Order<P> order);
+
+  /** Release matches returned by clear once they are no longer needed. */
+  void releaseMatches(Iterable<MatchedOrders<P>> matches);
+
+}
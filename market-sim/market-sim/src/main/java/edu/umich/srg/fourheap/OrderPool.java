@@ -0,0 +1,68 @@
+package edu.umich.srg.fourheap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import edu.umich.srg.fourheap.FourHeap.Pooling;
+import edu.umich.srg.fourheap.Order.OrderType;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/** Allocates orders and matches for an order book according to its pooling. */
+class OrderPool<P extends Comparable<? super P>> implements Serializable {
+
+  private final Pooling pooling;
+  private final Deque<Order<P>> orderPool;
+  private final Deque<MatchedOrders<P>> matchPool;
+
+  OrderPool(Pooling pooling) {
+    this.pooling = pooling;
+    this.orderPool = new ArrayDeque<>();
+    this.matchPool = new ArrayDeque<>();
+  }
+
+  Order<P> order(OrderType type, P price, int quantity, long submitTime) {
+    if (orderPool.isEmpty()) {
+      return new Order<>(type, price, quantity, submitTime);
+    } else {
+      Order<P> order = orderPool.pop();
+      order.reset(type, price, quantity, submitTime);
+      return order;
+    }
+  }
+
+  MatchedOrders<P> match(Order<P> buy, Order<P> sell, int quantity) {
+    if (matchPool.isEmpty()) {
+      return new MatchedOrders<>(buy, sell, quantity);
+    } else {
+      MatchedOrders<P> match = matchPool.pop();
+      match.reset(buy, sell, quantity);
+      return match;
+    }
+  }
+
+  void release(Order<P> order) {
+    checkArgument(order.getQuantity() == 0, "Can't release an order with remaining quantity");
+    if (pooling != Pooling.NONE) {
+      order.released = true;
+      if (pooling == Pooling.POOLED) {
+        orderPool.push(order);
+      }
+    }
+  }
+
+  void releaseMatches(Iterable<MatchedOrders<P>> matches) {
+    if (pooling != Pooling.NONE) {
+      for (MatchedOrders<P> match : matches) {
+        match.released = true;
+        if (pooling == Pooling.POOLED) {
+          matchPool.push(match);
+        }
+      }
+    }
+  }
+
+  private static final long serialVersionUID = 1;
+
+}
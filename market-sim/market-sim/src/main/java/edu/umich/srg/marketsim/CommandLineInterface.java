@@ -1,10 +1,16 @@
 package edu.umich.srg.marketsim;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.base.CaseFormat;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Multiset.Entry;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import edu.umich.srg.distributions.Uniform;
@@ -16,35 +22,63 @@ import edu.umich.srg.egtaonline.SimSpec.RoleStrat;
 import edu.umich.srg.egtaonline.spec.Spec;
 import edu.umich.srg.marketsim.EntityBuilder.AgentCreator;
 import edu.umich.srg.marketsim.EntityBuilder.MarketCreator;
+import edu.umich.srg.marketsim.Keys.Antithetic;
+import edu.umich.srg.marketsim.Keys.AntitheticPairs;
+import edu.umich.srg.marketsim.Keys.Checkpoints;
+import edu.umich.srg.marketsim.Keys.ClearInterval;
+import edu.umich.srg.marketsim.Keys.DenseFundamental;
+import edu.umich.srg.marketsim.Keys.FeatureCollection;
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
 import edu.umich.srg.marketsim.Keys.FundamentalMean;
 import edu.umich.srg.marketsim.Keys.FundamentalMeanReversion;
+import edu.umich.srg.marketsim.Keys.FundamentalPaths;
 import edu.umich.srg.marketsim.Keys.FundamentalShockProb;
 import edu.umich.srg.marketsim.Keys.FundamentalShockVar;
 import edu.umich.srg.marketsim.Keys.Markets;
+import edu.umich.srg.marketsim.Keys.NbboLatency;
+import edu.umich.srg.marketsim.Keys.PayoffStrategies;
+import edu.umich.srg.marketsim.Keys.Pricing;
 import edu.umich.srg.marketsim.Keys.RandomSeed;
 import edu.umich.srg.marketsim.Keys.SimLength;
+import edu.umich.srg.marketsim.Keys.Sweep;
+import edu.umich.srg.marketsim.Keys.SweepClearIntervals;
+import edu.umich.srg.marketsim.Keys.SweepMode;
+import edu.umich.srg.marketsim.Keys.SweepPricings;
+import edu.umich.srg.marketsim.MarketSimulator.Checkpoint;
 import edu.umich.srg.marketsim.agent.Agent;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
+import edu.umich.srg.marketsim.fundamental.FundamentalLibrary;
 import edu.umich.srg.marketsim.fundamental.GaussianMeanReverting;
 import edu.umich.srg.marketsim.market.Market;
 import edu.umich.srg.marketsim.market.Market.AgentInfo;
 import edu.umich.srg.util.PositionalSeed;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class CommandLineInterface {
 
   private static final String keyPrefix = "edu.umich.srg.marketsim.Keys$";
   private static final CaseFormat keyCaseFormat = CaseFormat.LOWER_CAMEL;
   private static final Splitter specSplitter = Splitter.on('_').omitEmptyStrings();
+  // Libraries are opened once and shared by every simulation in the process
+  private static final Map<String, FundamentalLibrary> libraries = new ConcurrentHashMap<>();
 
   public static void main(String[] args) throws IOException {
-    Runner.run(CommandLineInterface::simulate, args, keyPrefix, keyCaseFormat);
+    Runner.run(outputFeatures -> (spec, simNum) -> simulate(spec, simNum, outputFeatures), args,
+        keyPrefix, keyCaseFormat);
   }
 
   /**
@@ -55,51 +89,224 @@ public class CommandLineInterface {
    *        observations to produce. This method returns a single observation.
    */
   public static Observation simulate(SimSpec spec, int simNum) {
+    return simulate(spec, simNum, true);
+  }
+
+  /**
+   * Run the market-sim simulation, and if `outputFeatures` is false, don't collect any features or
+   * run any sweep. The observation's features are then meaningless.
+   */
+  public static Observation simulate(SimSpec spec, int simNum, boolean outputFeatures) {
+    if (!outputFeatures) {
+      SimRun run = observe(spec, simNum,
+          Spec.builder().put(FeatureCollection.class, FeatureLevel.NONE).build());
+      return new Observation() {
+
+        @Override
+        public Collection<? extends Player> getPlayers() {
+          return run.players;
+        }
+
+        @Override
+        public JsonObject getFeatures() {
+          return new JsonObject();
+        }
+
+      };
+    }
+
     Spec configuration = spec.configuration.withDefault(Keys.DEFAULT_KEYS);
+    SimRun run = observe(spec, simNum, Spec.empty());
+
+    // Rerun the simulation for every feedback sweep setting, with the same seeds
+    Map<String, SimRun> sweep = configuration.get(Sweep.class) == SweepMode.FEEDBACK
+        ? sweepSettings(configuration).entrySet().parallelStream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> observe(spec, simNum, e.getValue()),
+                (first, second) -> first, LinkedHashMap::new))
+        : ImmutableMap.of();
+
+    return new Observation() {
+
+      @Override
+      public Collection<? extends Player> getPlayers() {
+        return run.players;
+      }
+
+      @Override
+      public JsonObject getFeatures() {
+        JsonObject features = run.sim.computeFeatures();
+        if (!sweep.isEmpty()) {
+          JsonObject sweepFeatures = new JsonObject();
+          for (Map.Entry<String, SimRun> setting : sweep.entrySet()) {
+            sweepFeatures.add(setting.getKey(), setting.getValue().toJson());
+          }
+          features.add("sweep", sweepFeatures);
+        }
+        JsonObject checkpointFeatures = new JsonObject();
+        for (Checkpoint checkpoint : run.sim.getCheckpoints()) {
+          if (!checkpoint.getFeatures().entrySet().isEmpty()) {
+            checkpointFeatures.add(Long.toString(checkpoint.getTime().get()),
+                checkpoint.getFeatures());
+          }
+        }
+        if (!checkpointFeatures.entrySet().isEmpty()) {
+          features.add("checkpoints", checkpointFeatures);
+        }
+        if (run.antithetic != null) {
+          features.add("antithetic", run.antithetic.sim.computeFeatures());
+        }
+        return features;
+      }
+
+    };
+  }
+
+  /**
+   * Run the simulations for one observation. With AntitheticPairs this also runs the antithetic
+   * simulation with the same seed, and each player's payoffs become the average of the pair.
+   */
+  private static SimRun observe(SimSpec spec, int simNum, Spec override) {
+    SimRun run = run(spec, simNum, override);
+    Spec configuration = override.withDefault(spec.configuration.withDefault(Keys.DEFAULT_KEYS));
+    if (!configuration.get(AntitheticPairs.class)) {
+      return run;
+    }
+
+    SimRun antithetic = run(spec, simNum,
+        Spec.builder().putAll(override).put(Antithetic.class, true).build());
+    Iterator<PlayerInfo> mirrors = antithetic.players.iterator();
+    for (PlayerInfo player : run.players) {
+      player.averageWith(mirrors.next());
+    }
+    return new SimRun(run.sim, run.players, antithetic);
+  }
+
+  /**
+   * Run a single simulation. Keys in `override` take precedence over any in the spec, including
+   * those specified for individual markets.
+   */
+  private static SimRun run(SimSpec spec, int simNum, Spec override) {
+    Spec configuration = override.withDefault(spec.configuration.withDefault(Keys.DEFAULT_KEYS));
     long seed = PositionalSeed.with(configuration.get(RandomSeed.class)).getSeed(simNum);
     Random rand = new Random(seed);
 
-    Fundamental fundamental = GaussianMeanReverting.create(new Random(rand.nextLong()),
-        configuration.get(FundamentalMean.class), configuration.get(FundamentalMeanReversion.class),
-        configuration.get(FundamentalShockVar.class),
-        configuration.get(FundamentalShockProb.class));
-    MarketSimulator sim = MarketSimulator.create(fundamental, new Random(rand.nextLong()));
+    Fundamental fundamental = createFundamental(configuration, simNum, rand.nextLong());
+    MarketSimulator sim = MarketSimulator.create(fundamental, new Random(rand.nextLong()),
+        configuration.get(FeatureCollection.class), configuration.get(NbboLatency.class));
 
-    List<Market> markets = addMarkets(sim, spec.configuration.get(Markets.class), configuration);
+    List<Market> markets =
+        addMarkets(sim, spec.configuration.get(Markets.class), configuration, override);
     List<PlayerInfo> playerInfo =
         addPlayers(sim, fundamental, spec.assignment, markets, configuration, rand.nextLong());
+    if (spec.deviator != null) {
+      // The deviator is added last with its own stream, so the background agents are unchanged
+      playerInfo = ImmutableList.<PlayerInfo>builder().addAll(playerInfo).add(addDeviator(sim,
+          fundamental, spec.deviator, markets, configuration, rand.nextLong())).build();
+    }
+
+    // Only report the players asked for
+    Set<RoleStrat> reported = parseRoleStrats(configuration.get(PayoffStrategies.class));
+    if (!reported.isEmpty()) {
+      playerInfo = playerInfo.stream()
+          .filter(
+              info -> info.deviator || reported.contains(RoleStrat.of(info.role, info.strategy)))
+          .collect(Collectors.toList());
+    }
+    Set<Agent> reportedAgents =
+        playerInfo.stream().map(info -> info.agent).collect(Collectors.toSet());
 
     sim.initialize();
-    sim.executeUntil(TimeStamp.of(configuration.get(SimLength.class)));
+    List<TimeStamp> checkpoints = ImmutableList.copyOf(
+        Iterables.transform(configuration.get(Checkpoints.class), TimeStamp::of));
+    sim.executeUntil(TimeStamp.of(configuration.get(SimLength.class)), checkpoints, reportedAgents);
+
+    Map<Agent, ? extends AgentInfo> payoffs =
+        reported.isEmpty() ? sim.getAgentPayoffs() : sim.getAgentPayoffs(reportedAgents);
 
     // Update player observations
-    Map<Agent, ? extends AgentInfo> payoffs = sim.getAgentPayoffs();
     for (PlayerInfo info : playerInfo) {
       info.payoff = payoffs.get(info.agent).getProfit();
       info.features = info.agent.getFeatures();
+      for (Checkpoint checkpoint : sim.getCheckpoints()) {
+        info.checkpointPayoffs.put(checkpoint.getTime().get(),
+            checkpoint.getPayoffs().get(info.agent).getProfit());
+      }
     }
+    return new SimRun(sim, playerInfo, null);
+  }
 
-    return new Observation() {
+  private static Fundamental createFundamental(Spec configuration, int simNum, long seed) {
+    boolean antithetic = configuration.get(Antithetic.class);
+    double mean = configuration.get(FundamentalMean.class);
+    double meanReversion = configuration.get(FundamentalMeanReversion.class);
+    double shockVar = configuration.get(FundamentalShockVar.class);
+    double shockProb = configuration.get(FundamentalShockProb.class);
+    long simLength = configuration.get(SimLength.class);
+    String paths = configuration.get(FundamentalPaths.class);
+
+    if (!paths.isEmpty()) {
+      FundamentalLibrary library = libraries.computeIfAbsent(paths, file -> {
+        try {
+          return FundamentalLibrary.open(Paths.get(file));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      checkArgument(library.matches(mean, meanReversion, shockVar, shockProb),
+          "Fundamental paths in %s were sampled with different parameters", paths);
+      checkArgument(library.getLength() >= simLength, "Fundamental paths in %s are too short",
+          paths);
+      checkArgument(simNum < library.getNumPaths(),
+          "Fundamental paths in %s only have %s paths, not enough for simulation %s", paths,
+          library.getNumPaths(), simNum);
+      return library.getFundamental(simNum, antithetic);
+    } else if (configuration.get(DenseFundamental.class)) {
+      return GaussianMeanReverting.createDense(new Random(seed), mean, meanReversion, shockVar,
+          shockProb, simLength, antithetic);
+    } else {
+      return GaussianMeanReverting.create(new Random(seed), mean, meanReversion, shockVar,
+          shockProb, antithetic);
+    }
+  }
 
-      @Override
-      public Collection<? extends Player> getPlayers() {
-        return playerInfo;
-      }
+  /** Parse `role:strategy` items. The strategy may contain colons, but the role can't. */
+  private static Set<RoleStrat> parseRoleStrats(Iterable<String> roleStrats) {
+    ImmutableSet.Builder<RoleStrat> parsed = ImmutableSet.builder();
+    for (String roleStrat : roleStrats) {
+      int index = roleStrat.indexOf(':');
+      checkArgument(index > 0, "Payoff strategies must be role:strategy, not %s", roleStrat);
+      parsed.add(RoleStrat.of(roleStrat.substring(0, index), roleStrat.substring(index + 1)));
+    }
+    return parsed.build();
+  }
 
-      @Override
-      public JsonObject getFeatures() {
-        return sim.computeFeatures();
-      }
+  /** The overrides for each clear interval and pricing setting in a sweep, by name. */
+  private static Map<String, Spec> sweepSettings(Spec configuration) {
+    Iterable<Double> pricings = configuration.get(SweepPricings.class);
+    boolean sweepPricing = !Iterables.isEmpty(pricings);
+    if (!sweepPricing) {
+      pricings = ImmutableList.of(configuration.get(Pricing.class));
+    }
 
-    };
+    ImmutableMap.Builder<String, Spec> settings = ImmutableMap.builder();
+    for (long clearInterval : configuration.get(SweepClearIntervals.class)) {
+      for (double pricing : pricings) {
+        Spec.Builder setting = Spec.builder().put(ClearInterval.class, clearInterval);
+        if (sweepPricing) {
+          setting.put(Pricing.class, pricing);
+        }
+        settings.put("clear_interval_" + clearInterval + "_pricing_" + pricing, setting.build());
+      }
+    }
+    return settings.build();
   }
 
   private static List<Market> addMarkets(MarketSimulator sim, Iterable<String> marketSpecs,
-      Spec configuration) {
+      Spec configuration, Spec override) {
     ImmutableList.Builder<Market> marketBuilder = ImmutableList.builder();
     for (String stringSpec : marketSpecs) {
       MarketCreator creator = EntityBuilder.getMarketCreator(getType(stringSpec));
-      Spec marketSpec = getSpec(stringSpec).withDefault(configuration);
+      Spec marketSpec = override.withDefault(getSpec(stringSpec).withDefault(configuration));
 
       Market market = creator.createMarket(sim, marketSpec);
       sim.addMarket(market);
@@ -140,13 +347,30 @@ public class CommandLineInterface {
         Agent agent = creator.createAgent(sim, fundamental, markets, marketSelection.sample(rand),
             agentSpec, new Random(rand.nextLong()));
         sim.addAgent(agent);
-        playerInfoBuilder.add(new PlayerInfo(roleStratCounts.getElement(), agent));
+        playerInfoBuilder.add(new PlayerInfo(roleStratCounts.getElement(), agent, false));
       }
     }
 
     return playerInfoBuilder.build();
   }
 
+  /**
+   * The deviator's random seed doesn't depend on its strategy, so deviations to different
+   * strategies also share the deviator's random stream.
+   */
+  private static PlayerInfo addDeviator(MarketSimulator sim, Fundamental fundamental,
+      RoleStrat deviator, Collection<Market> markets, Spec configuration, long seed) {
+    String strategy = deviator.getStrategy();
+    AgentCreator creator = EntityBuilder.getAgentCreator(getType(strategy));
+    Spec agentSpec = getSpec(strategy).withDefault(configuration);
+    Random rand = new Random(seed);
+
+    Agent agent = creator.createAgent(sim, fundamental, markets,
+        Uniform.over(markets).sample(rand), agentSpec, new Random(rand.nextLong()));
+    sim.addAgent(agent);
+    return new PlayerInfo(deviator, agent, true);
+  }
+
   private static String getType(String strategy) {
     int index = strategy.indexOf(':');
     return (index < 0 ? strategy : strategy.substring(0, index)).toLowerCase();
@@ -162,20 +386,63 @@ public class CommandLineInterface {
     }
   }
 
+  private static class SimRun {
+
+    private final MarketSimulator sim;
+    private final List<PlayerInfo> players;
+    private final SimRun antithetic; // The other member of an antithetic pair, or null
+
+    private SimRun(MarketSimulator sim, List<PlayerInfo> players, SimRun antithetic) {
+      this.sim = sim;
+      this.players = players;
+      this.antithetic = antithetic;
+    }
+
+    private JsonObject toJson() {
+      JsonArray payoffs = new JsonArray();
+      for (PlayerInfo player : players) {
+        JsonObject payoff = new JsonObject();
+        payoff.addProperty("role", player.role);
+        payoff.addProperty("strategy", player.strategy);
+        payoff.addProperty("payoff", player.payoff);
+        payoffs.add(payoff);
+      }
+
+      JsonObject json = new JsonObject();
+      json.add("players", payoffs);
+      json.add("features", sim.computeFeatures());
+      return json;
+    }
+
+  }
+
   private static class PlayerInfo implements Player {
 
     private final String role;
     private final String strategy;
     private final Agent agent;
+    private final boolean deviator;
     private double payoff;
     private JsonObject features;
+    private final Map<Long, Double> checkpointPayoffs;
 
-    private PlayerInfo(RoleStrat roleAndStrategy, Agent agent) {
+    private PlayerInfo(RoleStrat roleAndStrategy, Agent agent, boolean deviator) {
       this.role = roleAndStrategy.getRole();
       this.strategy = roleAndStrategy.getStrategy();
       this.agent = agent;
+      this.deviator = deviator;
       this.payoff = 0;
       this.features = null;
+      this.checkpointPayoffs = new LinkedHashMap<>();
+    }
+
+    /** Average payoffs with the same player in the antithetic simulation. */
+    private void averageWith(PlayerInfo mirror) {
+      checkArgument(role.equals(mirror.role) && strategy.equals(mirror.strategy),
+          "Antithetic players don't match");
+      payoff = (payoff + mirror.payoff) / 2;
+      checkpointPayoffs
+          .replaceAll((time, value) -> (value + mirror.checkpointPayoffs.get(time)) / 2);
     }
 
     @Override
@@ -198,6 +465,16 @@ public class CommandLineInterface {
       return features;
     }
 
+    @Override
+    public boolean isDeviator() {
+      return deviator;
+    }
+
+    @Override
+    public Map<Long, Double> getCheckpointPayoffs() {
+      return Collections.unmodifiableMap(checkpointPayoffs);
+    }
+
     @Override
     public String toString() {
       return role + ": " + strategy + " (" + payoff + ") " + features;
@@ -1,29 +1,23 @@
 package edu.umich.srg.marketsim;
 
-import static edu.umich.srg.fourheap.Order.OrderType.BUY;
-import static edu.umich.srg.fourheap.Order.OrderType.SELL;
-
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 
 import edu.umich.srg.collect.Sparse;
-import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
 import edu.umich.srg.marketsim.agent.Agent;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
 import edu.umich.srg.marketsim.market.Market.AgentInfo;
 import edu.umich.srg.util.SummStats;
 
-import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.PriorityQueue;
 import java.util.function.ToIntFunction;
-import java.util.stream.Collectors;
 
 class Features {
   private final Map<String, SummStats> summaryFeatures;
@@ -45,29 +39,48 @@ class Features {
     JsonObject features = new JsonObject();
 
     // Summary features
-    for (Entry<String, SummStats> entry : summaryFeatures.entrySet()) {
-      String key = entry.getKey().toLowerCase().replace(' ', '_');
-      features.addProperty(key + "_c", entry.getValue().getCount());
-      features.addProperty(key + "_a", entry.getValue().getAverage());
-    }
+    addSummaryFeatures(features);
 
     // Fundamental features
     Fundamental fundamental = simulator.getFundamental();
-    features.add("fundamental",
-        convertSparseData(fundamental.getFundamentalValues(simulator.getCurrentTime())));
+    boolean full = simulator.getFeatureLevel() == FeatureLevel.FULL;
+    if (full) {
+      features.add("fundamental",
+          convertSparseData(fundamental.getFundamentalValues(simulator.getCurrentTime())));
+    }
 
     // Market features
     for (Market market : simulator.getMarkets()) {
-      features.add("cda", market.getFeatures(fundamental));
+      features.add("cda", market.getFeatures());
     }
 
     // Surplus Features
     surplusFeatures(simulator.getAgentPayoffs(), features);
 
-    calcBiasResults(simulator.getAgents(), features);
+    // Agents only record their estimates when collecting everything
+    if (full) {
+      calcBiasResults(simulator.getAgents(), features);
+    }
     return features;
   }
 
+  /** The cheap features at a checkpoint, the summary features so far and the total surplus. */
+  JsonObject computeCheckpointFeatures(Map<Agent, ? extends AgentInfo> payoffs) {
+    JsonObject features = new JsonObject();
+    addSummaryFeatures(features);
+    features.addProperty("total_surplus",
+        payoffs.values().stream().mapToDouble(AgentInfo::getProfit).sum());
+    return features;
+  }
+
+  private void addSummaryFeatures(JsonObject features) {
+    for (Entry<String, SummStats> entry : summaryFeatures.entrySet()) {
+      String key = entry.getKey().toLowerCase().replace(' ', '_');
+      features.addProperty(key + "_c", entry.getValue().getCount());
+      features.addProperty(key + "_a", entry.getValue().getAverage());
+    }
+  }
+
   private static JsonArray convertSparseData(
       Iterable<? extends Sparse.Entry<? extends Number>> data) {
     JsonArray json = new JsonArray();
@@ -83,11 +96,13 @@ class Features {
   private static void surplusFeatures(Map<Agent, ? extends AgentInfo> results,
       JsonObject features) {
     double surplus = results.values().stream().mapToDouble(AgentInfo::getProfit).sum();
+    // Both equilibria share the agents' payoffs, so each payoff is only computed once
+    AgentPayoffs[] agents = results.entrySet().stream()
+        .map(e -> new AgentPayoffs(e.getKey(), e.getValue())).toArray(AgentPayoffs[]::new);
     // By default, competitive equilibrium is assuming infinite opportunities to trade.
-    CompEqResults compEq = calcCompetitiveEquilibrium(results, a -> Integer.MAX_VALUE);
+    CompEqResults compEq = calcCompetitiveEquilibrium(agents, a -> Integer.MAX_VALUE);
     // For completeness, we also compute it with submission limits
-    CompEqResults compEqSub =
-        calcCompetitiveEquilibrium(results, a -> results.get(a).getSubmissions());
+    CompEqResults compEqSub = calcCompetitiveEquilibrium(agents, a -> a.info.getSubmissions());
 
     // Assert results are consistent
     assert Math.abs(compEq.maxSurplus - compEq.imSurplusLoss - compEq.emSurplusLoss
@@ -115,106 +130,70 @@ class Features {
     features.addProperty("em_surplus_loss_sublim", compEqSub.emSurplusLoss);
   }
 
-  private static double calcDesiredBenefit(OrderType type, Agent agent,
-      Map<Agent, Integer> positionMap) {
-    int position = positionMap.get(agent);
-    return agent.payoffForPosition(position + type.sign()) - agent.payoffForPosition(position);
-  }
+  // This will utterly fail if private valuations aren't diminishing marginal. Each agent's
+  // marginal values for buying more, and for selling more, are then decreasing, so the equilibrium
+  // merges them in order until the best remaining buy and sell no longer gain anything. An agent's
+  // own buys and sells never gain together, so it only ever trades on one side.
+  private static CompEqResults calcCompetitiveEquilibrium(AgentPayoffs[] agents,
+      ToIntFunction<AgentPayoffs> getMaxPosition) {
+    int[] maxPositions = new int[agents.length];
+    int[] cePositions = new int[agents.length];
 
-  // This will utterly fail if private valuations aren't diminishing marginal
-  // This uses payoffForPosition which scales linearly. The linear number should be small
-  // enough that it doesn't really matter, but it is a source of inefficiency / slowness.
-  private static CompEqResults calcCompetitiveEquilibrium(Map<Agent, ? extends AgentInfo> results,
-      ToIntFunction<Agent> getMaxPosition) {
-    // Editable Map holding positions in ce
-    Map<Agent, Integer> cePositions =
-        results.keySet().stream().collect(Collectors.toMap(e -> e, e -> 0));
-
-    // Priority queues of buyers and sellers, ordered by the highest gain from a marginal trade
-    Comparator<Entry<Agent, Double>> comp =
-        Comparator.<Entry<Agent, Double>, Double>comparing(Entry::getValue).reversed();
-    PriorityQueue<Entry<Agent, Double>> buyers = new PriorityQueue<>(comp);
-    PriorityQueue<Entry<Agent, Double>> sellers = new PriorityQueue<>(comp);
+    // Heaps of buyers and sellers, ordered by the highest gain from a marginal trade
+    TradeHeap buyers = new TradeHeap(agents.length);
+    TradeHeap sellers = new TradeHeap(agents.length);
 
     // These are necessary to get a clearing price when no agent transacts
-    for (Entry<Agent, Integer> entry : cePositions.entrySet()) {
-      Agent agent = entry.getKey();
+    for (int i = 0; i < agents.length; ++i) {
+      maxPositions[i] = getMaxPosition.applyAsInt(agents[i]);
       // Only include agents that can trade
-      if (getMaxPosition.applyAsInt(agent) > 0) {
-        buyers.add(new AbstractMap.SimpleEntry<>(agent,
-            agent.payoffForPosition(1) - agent.payoffForPosition(0)));
-        sellers.add(new AbstractMap.SimpleEntry<>(agent,
-            agent.payoffForPosition(-1) - agent.payoffForPosition(0)));
+      if (maxPositions[i] > 0) {
+        buyers.add(i, agents[i].buyValue(0));
+        sellers.add(i, agents[i].sellValue(0));
       }
     }
 
     double cePrice = 0; // Any price is valid if no one trades
     double maxSurplus = 0;
-    while (!buyers.isEmpty() && !sellers.isEmpty()
-        && buyers.peek().getValue() + sellers.peek().getValue() > 0) {
-
-      // Extract agents
-      Entry<Agent, Double> buyerEnt = buyers.poll();
-      Agent buyer = buyerEnt.getKey();
-      double buyerVal = buyerEnt.getValue();
-
-      Entry<Agent, Double> sellerEnt = sellers.poll();
-      Agent seller = sellerEnt.getKey();
-      double sellerVal = sellerEnt.getValue();
+    while (!buyers.isEmpty() && !sellers.isEmpty() && buyers.topValue() + sellers.topValue() > 0) {
+      int buyer = buyers.topAgent();
+      double buyerVal = buyers.topValue();
+      int seller = sellers.topAgent();
+      double sellerVal = sellers.topValue();
 
       // Update values
       cePrice = (buyerVal - sellerVal) / 2;
       maxSurplus += buyerVal + sellerVal;
 
-      // Update positions
-      int buyerPos = cePositions.compute(buyer, (key, val) -> val + 1);
-      int sellerPos = cePositions.compute(seller, (key, val) -> val - 1);
-
-      // Put back in priority queue with updated values if they can still trade
-      if (buyerPos < getMaxPosition.applyAsInt(buyer)) {
-        buyerEnt
-            .setValue(buyer.payoffForPosition(buyerPos + 1) - buyer.payoffForPosition(buyerPos));
-        buyers.add(buyerEnt);
+      // Update positions, and the values of their next trades if they can still trade
+      ++cePositions[buyer];
+      --cePositions[seller];
+      if (cePositions[buyer] < maxPositions[buyer]) {
+        buyers.replaceTop(agents[buyer].buyValue(cePositions[buyer]));
+      } else {
+        buyers.removeTop();
       }
-      if (-sellerPos < getMaxPosition.applyAsInt(seller)) {
-        sellerEnt.setValue(
-            seller.payoffForPosition(sellerPos - 1) - seller.payoffForPosition(sellerPos));
-        sellers.add(sellerEnt);
-      }
-
-      // Make sure queues are up to date
-      double desiredBenefit;
-      while ((desiredBenefit =
-          calcDesiredBenefit(BUY, buyers.peek().getKey(), cePositions)) != buyers.peek()
-              .getValue()) {
-        buyerEnt = buyers.poll();
-        buyerEnt.setValue(desiredBenefit);
-        buyers.add(buyerEnt);
-      }
-      while ((desiredBenefit =
-          calcDesiredBenefit(SELL, sellers.peek().getKey(), cePositions)) != sellers.peek()
-              .getValue()) {
-        sellerEnt = sellers.poll();
-        sellerEnt.setValue(desiredBenefit);
-        sellers.add(sellerEnt);
+      if (-cePositions[seller] < maxPositions[seller]) {
+        sellers.replaceTop(agents[seller].sellValue(cePositions[seller]));
+      } else {
+        sellers.removeTop();
       }
     }
 
     // Calculate surplus loss based off of trade differences
     double imSurplusLoss = 0;
     double emSurplusLoss = 0;
-    for (Entry<Agent, ? extends AgentInfo> result : results.entrySet()) {
-      Agent agent = result.getKey();
-      int cePosition = cePositions.get(agent);
-      int actualPosition = result.getValue().getHoldings();
+    for (int i = 0; i < agents.length; ++i) {
+      int cePosition = cePositions[i];
+      int actualPosition = agents[i].info.getHoldings();
 
       if (cePosition == actualPosition) { // No loss
         continue;
       }
 
       int posDiff = actualPosition - cePosition;
-      double surplusLoss = agent.payoffForPosition(cePosition)
-          - agent.payoffForPosition(actualPosition) + posDiff * cePrice;
+      double surplusLoss = agents[i].payoffForPosition(cePosition)
+          - agents[i].agent.payoffForPosition(actualPosition) + posDiff * cePrice;
       if (cePosition * posDiff >= 0) { // EM Trader
         emSurplusLoss += surplusLoss;
       } else { // IM Trader
@@ -243,6 +222,127 @@ class Features {
     features.addProperty("submissionVar", submissionStats.getVariance());
   }
 
+  /** An agent's payoffs for the positions it may hold in equilibrium, computed as needed. */
+  private static final class AgentPayoffs {
+    private final Agent agent;
+    private final AgentInfo info;
+    private double[] longPayoffs; // Payoff for holding the index
+    private int numLong;
+    private double[] shortPayoffs; // Payoff for holding the negative index
+    private int numShort;
+
+    private AgentPayoffs(Agent agent, AgentInfo info) {
+      this.agent = agent;
+      this.info = info;
+      this.longPayoffs = new double[4];
+      this.shortPayoffs = new double[4];
+      longPayoffs[0] = shortPayoffs[0] = agent.payoffForPosition(0);
+      this.numLong = 1;
+      this.numShort = 1;
+    }
+
+    private double payoffForPosition(int position) {
+      if (position >= 0) {
+        for (; numLong <= position; ++numLong) {
+          if (numLong == longPayoffs.length) {
+            longPayoffs = Arrays.copyOf(longPayoffs, 2 * numLong);
+          }
+          longPayoffs[numLong] = agent.payoffForPosition(numLong);
+        }
+        return longPayoffs[position];
+      } else {
+        for (; numShort <= -position; ++numShort) {
+          if (numShort == shortPayoffs.length) {
+            shortPayoffs = Arrays.copyOf(shortPayoffs, 2 * numShort);
+          }
+          shortPayoffs[numShort] = agent.payoffForPosition(-numShort);
+        }
+        return shortPayoffs[-position];
+      }
+    }
+
+    private double buyValue(int position) {
+      return payoffForPosition(position + 1) - payoffForPosition(position);
+    }
+
+    private double sellValue(int position) {
+      return payoffForPosition(position - 1) - payoffForPosition(position);
+    }
+
+  }
+
+  /** A max heap of agent indices keyed by the value of their next trade. */
+  private static final class TradeHeap {
+    private final int[] agents;
+    private final double[] values;
+    private int size;
+
+    private TradeHeap(int capacity) {
+      this.agents = new int[capacity];
+      this.values = new double[capacity];
+      this.size = 0;
+    }
+
+    private boolean isEmpty() {
+      return size == 0;
+    }
+
+    private int topAgent() {
+      return agents[0];
+    }
+
+    private double topValue() {
+      return values[0];
+    }
+
+    private void add(int agent, double value) {
+      int index = size++;
+      while (index > 0) {
+        int parent = (index - 1) / 2;
+        if (values[parent] >= value) {
+          break;
+        }
+        agents[index] = agents[parent];
+        values[index] = values[parent];
+        index = parent;
+      }
+      agents[index] = agent;
+      values[index] = value;
+    }
+
+    /** Change the value of the top agent. */
+    private void replaceTop(double value) {
+      siftDown(agents[0], value);
+    }
+
+    private void removeTop() {
+      --size;
+      if (size > 0) {
+        siftDown(agents[size], values[size]);
+      }
+    }
+
+    /** Place an agent with a value at the top, and move it down until it's in order. */
+    private void siftDown(int agent, double value) {
+      int index = 0;
+      int child;
+      while ((child = 2 * index + 1) < size) {
+        if (child + 1 < size && values[child + 1] > values[child]) {
+          ++child;
+        }
+        if (value >= values[child]) {
+          break;
+        }
+        agents[index] = agents[child];
+        values[index] = values[child];
+        index = child;
+      }
+      agents[index] = agent;
+      values[index] = value;
+    }
+
+  }
+
   private static final class CompEqResults {
     private final double cePrice;
     private final double maxSurplus;
@@ -1,15 +1,20 @@
 package edu.umich.srg.marketsim;
 
 import com.google.common.base.Converter;
+import com.google.common.collect.ImmutableList;
 
 import edu.umich.srg.egtaonline.spec.ParsableValue;
 import edu.umich.srg.egtaonline.spec.ParsableValue.BoolValue;
 import edu.umich.srg.egtaonline.spec.ParsableValue.DoubleValue;
+import edu.umich.srg.egtaonline.spec.ParsableValue.DoublesValue;
 import edu.umich.srg.egtaonline.spec.ParsableValue.EnumValue;
 import edu.umich.srg.egtaonline.spec.ParsableValue.IntValue;
 import edu.umich.srg.egtaonline.spec.ParsableValue.LongValue;
+import edu.umich.srg.egtaonline.spec.ParsableValue.LongsValue;
+import edu.umich.srg.egtaonline.spec.ParsableValue.StringValue;
 import edu.umich.srg.egtaonline.spec.ParsableValue.StringsValue;
 import edu.umich.srg.egtaonline.spec.Spec;
+import edu.umich.srg.fourheap.FourHeap.Pooling;
 import edu.umich.srg.fourheap.Order.OrderType;
 import edu.umich.srg.marketsim.agent.StandardMarketAgent.OrderStyle;
 
@@ -34,10 +39,44 @@ public interface Keys {
   class SimLength extends LongValue {
   }
 
+  /**
+   * Times before SimLength when every player's payoff is also recorded, as if the simulation ended
+   * there. This gets payoffs for several horizons out of one run.
+   */
+  class Checkpoints extends LongsValue {
+  }
+
   /** The markets that are constructed in the simulator. */
   class Markets extends StringsValue {
   }
 
+  /**
+   * The players whose payoffs are reported, as `role:strategy` items. When empty, every player is
+   * reported. Payoffs, agent features, and output are only computed for these players.
+   */
+  class PayoffStrategies extends StringsValue {
+  }
+
+  /**
+   * Run every observation as a pair of simulations with the same seed, where the second is
+   * Antithetic, and report the average of their payoffs. The average usually has much lower
+   * variance than the average of two independent simulations.
+   */
+  class AntitheticPairs extends BoolValue {
+  }
+
+  /**
+   * Mirror the symmetric draws of a simulation: the gaussian shocks of the fundamental are negated,
+   * and private values and surplus shading are mirrored. Shock times, arrivals, and everything else
+   * use the same draws as the simulation with the same seed.
+   */
+  class Antithetic extends BoolValue {
+  }
+
+  /** How long it takes market quotes to reach the SIP, and so the NBBO agents see. */
+  class NbboLatency extends TimeValue {
+  }
+
   /** The mean of the gaussain fundamental. */
   class FundamentalMean extends DoubleValue {
   }
@@ -54,6 +93,20 @@ public interface Keys {
   class FundamentalShockProb extends DoubleValue {
   }
 
+  /**
+   * Sample the whole fundamental up to SimLength into an array before the simulation starts. Every
+   * query is then a lookup, but the path differs from the lazily sampled one with the same seed.
+   */
+  class DenseFundamental extends BoolValue {
+  }
+
+  /**
+   * A file written by FundamentalLibrary. When set, simulation k reads path k from it instead of
+   * sampling a fundamental. The library must match the fundamental keys and cover SimLength.
+   */
+  class FundamentalPaths extends StringValue {
+  }
+
   // -------
   // Markets
   // -------
@@ -66,6 +119,72 @@ public interface Keys {
   class ClearInterval extends LongValue {
   }
 
+  /**
+   * Whether markets reuse order book objects, and whether to check they aren't used after they're
+   * released.
+   */
+  class OrderPooling extends EnumValue<Pooling> {
+    public OrderPooling() {
+      super(Pooling.class);
+    }
+  }
+
+  /**
+   * Overrides for the class a market records trades between two trade roles under, each as
+   * "BUYER:SELLER:CLASS", e.g. "ZI:SPOOFER:ZI.HBL". Pairs that aren't overridden keep the default
+   * classes, so when empty spoofer trades are spoofing, same-role trades are that role, and any
+   * other trade is zi_hbl.
+   */
+  class TradeClasses extends StringsValue {
+  }
+
+  /**
+   * Clear intervals of call markets to compare within one run. Each setting is paired with every
+   * value of SweepPricings, and no sweep is run when this is empty.
+   */
+  class SweepClearIntervals extends LongsValue {
+  }
+
+  /** Call market pricings to compare within one run. When empty, each market's Pricing is used. */
+  class SweepPricings extends DoublesValue {
+  }
+
+  /** How the settings in SweepClearIntervals and SweepPricings are compared. */
+  class Sweep extends EnumValue<SweepMode> {
+    public Sweep() {
+      super(SweepMode.class);
+    }
+  }
+
+  enum SweepMode {
+    /**
+     * Every market passes its order flow to shadow call markets with each setting. Shadow
+     * transactions are never reported to agents, so they show what the same orders would have done.
+     */
+    COUNTERFACTUAL,
+    /**
+     * The whole simulation is rerun for each setting with the same random seeds, so agents react to
+     * the market they are actually in.
+     */
+    FEEDBACK
+  }
+
+  /** How much a simulation records for its features. */
+  class FeatureCollection extends EnumValue<FeatureLevel> {
+    public FeatureCollection() {
+      super(FeatureLevel.class);
+    }
+  }
+
+  enum FeatureLevel {
+    /** Nothing is recorded beyond what's needed for payoffs. */
+    NONE,
+    /** Only streaming statistics are kept, so memory doesn't grow with the length of the run. */
+    SUMMARY,
+    /** Every price and quote series is recorded. */
+    FULL
+  }
+
   // ------
   // Agents
   // ------
@@ -229,7 +348,6 @@ public interface Keys {
   // public static class NumMarkets extends IntValue {};
 
   // Latency
-  // public static class NbboLatency extends TimeValue {};
   // public static class MarketLatency extends TimeValue {};
   // public static class LaLatency extends TimeValue {};
   // public static class FundamentalLatency extends TimeValue {};
@@ -328,8 +446,21 @@ public interface Keys {
       .put(RandomSeed.class, System.nanoTime()) // Set seed from clock
       .put(FundamentalMean.class, 1e9) // Approximately half of Integer.MAX_VALUE
       .put(FundamentalShockProb.class, 1d) // Shocks disabled
+      .put(DenseFundamental.class, false) // Sample the fundamental lazily
+      .put(FundamentalPaths.class, "") // Sample a new fundamental every simulation
+      .put(NbboLatency.class, TimeStamp.ZERO) // Agents see the current NBBO
+      .put(PayoffStrategies.class, ImmutableList.of()) // Report every player
+      .put(Checkpoints.class, ImmutableList.of()) // Only the final payoffs
+      .put(AntitheticPairs.class, false) // Independent observations
+      .put(Antithetic.class, false) // Don't mirror anything
 
       .put(Pricing.class, 0.5) // Even call market
+      .put(OrderPooling.class, Pooling.NONE) // Allocate order book objects normally
+      .put(TradeClasses.class, ImmutableList.of()) // Default trade classification
+      .put(SweepClearIntervals.class, ImmutableList.of()) // No sweep
+      .put(SweepPricings.class, ImmutableList.of()) // Use the market's pricing
+      .put(Sweep.class, SweepMode.COUNTERFACTUAL) // Sweep with shadow markets
+      .put(FeatureCollection.class, FeatureLevel.FULL) // Record everything
 
       .put(Sides.class, OrderStyle.RANDOM) // Submit orders randomly (legacy)
       .put(SubmitDepth.class, 1) // Submit one order per arrival (legacy)
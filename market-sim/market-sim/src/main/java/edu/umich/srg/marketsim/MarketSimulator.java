@@ -1,20 +1,29 @@
 package edu.umich.srg.marketsim;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Maps;
 import com.google.gson.JsonObject;
 
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
 import edu.umich.srg.marketsim.agent.Agent;
 import edu.umich.srg.marketsim.event.EventQueue;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
 import edu.umich.srg.marketsim.market.Market.AgentInfo;
+import edu.umich.srg.marketsim.market.Sip;
+import edu.umich.srg.marketsim.market.Sip.NbboView;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class MarketSimulator implements Sim {
 
@@ -23,23 +32,37 @@ public class MarketSimulator implements Sim {
   private final Fundamental fundamental;
   private final Features features;
   private final EventQueue eventQueue;
+  private final FeatureLevel featureLevel;
+  private final Sip sip;
 
+  private final List<Checkpoint> checkpoints;
   private Map<Agent, ? extends AgentInfo> agentPayoffs;
 
-  // FIXME Still need SIP
-
-  private MarketSimulator(Fundamental fundamental, Random rand) {
+  private MarketSimulator(Fundamental fundamental, Random rand, FeatureLevel featureLevel,
+      TimeStamp nbboLatency) {
     this.fundamental = fundamental;
+    this.featureLevel = featureLevel;
+    this.sip = Sip.create(nbboLatency);
     this.features = new Features();
     this.markets = new ArrayList<>();
     this.agents = new ArrayList<>();
     this.eventQueue = new EventQueue(rand);
+    this.checkpoints = new ArrayList<>();
 
     this.agentPayoffs = null;
   }
 
   public static MarketSimulator create(Fundamental fundamental, Random rand) {
-    return new MarketSimulator(fundamental, rand);
+    return create(fundamental, rand, FeatureLevel.FULL, TimeStamp.ZERO);
+  }
+
+  /**
+   * Create a simulator where markets and agents only record what `featureLevel` needs, and quotes
+   * reach the SIP after `nbboLatency`.
+   */
+  public static MarketSimulator create(Fundamental fundamental, Random rand,
+      FeatureLevel featureLevel, TimeStamp nbboLatency) {
+    return new MarketSimulator(fundamental, rand, featureLevel, nbboLatency);
   }
 
   /**
@@ -56,8 +79,42 @@ public class MarketSimulator implements Sim {
     eventQueue.executeUntil(finalTime);
   }
 
+  /**
+   * Execute until `finalTime`, stopping at every time in `checkpointTimes` before it to record what
+   * the `reported` agents' payoffs would be if the simulation ended there. Stopping doesn't change
+   * the order or outcome of any events. Summary features are recorded too unless features are off,
+   * and since they include the total surplus, every agent's payoff is computed for them.
+   */
+  public void executeUntil(TimeStamp finalTime, Iterable<TimeStamp> checkpointTimes,
+      Set<Agent> reported) {
+    for (TimeStamp time : ImmutableSortedSet.copyOf(checkpointTimes)) {
+      if (time.compareTo(finalTime) >= 0) {
+        break;
+      }
+      eventQueue.executeUntil(time);
+      Map<Agent, SimAgentInfo> payoffs;
+      JsonObject summary;
+      if (featureLevel == FeatureLevel.NONE) {
+        payoffs = computePayoffs(reported, market -> market.getAgentInfo(reported));
+        summary = new JsonObject();
+      } else {
+        payoffs = computePayoffs(ImmutableSet.copyOf(agents), Market::getAgentInfo);
+        summary = features.computeCheckpointFeatures(payoffs);
+        payoffs = Maps.filterKeys(payoffs, reported::contains);
+      }
+      checkpoints.add(new Checkpoint(time, payoffs, summary));
+    }
+    eventQueue.executeUntil(finalTime);
+  }
+
+  /** The checkpoints recorded so far, in time order. */
+  public List<Checkpoint> getCheckpoints() {
+    return Collections.unmodifiableList(checkpoints);
+  }
+
   public Market addMarket(Market market) {
     markets.add(market);
+    sip.addMarket(market);
     return market;
   }
 
@@ -77,6 +134,7 @@ public class MarketSimulator implements Sim {
     return Collections.unmodifiableCollection(agents);
   }
 
+  @Override
   public Fundamental getFundamental() {
     return fundamental;
   }
@@ -84,27 +142,43 @@ public class MarketSimulator implements Sim {
   /** Get the payoffs of every agent in the simuation. */
   public Map<Agent, ? extends AgentInfo> getAgentPayoffs() {
     if (agentPayoffs == null) {
-      // Get total agent holdings and profit according to all markets
-      Map<Agent, SimAgentInfo> payoffs = Maps.toMap(agents, a -> new SimAgentInfo());
-      agentPayoffs = payoffs;
-
-      for (Market market : markets) {
-        for (Entry<Agent, AgentInfo> e : market.getAgentInfo()) {
-          SimAgentInfo info = payoffs.get(e.getKey());
-          info.holdings += e.getValue().getHoldings();
-          info.profit += e.getValue().getProfit();
-          info.submissions += e.getValue().getSubmissions();
-        }
-      }
+      agentPayoffs = computePayoffs(ImmutableSet.copyOf(agents), Market::getAgentInfo);
+    }
+    return agentPayoffs;
+  }
+
+  /**
+   * Get the payoffs of only `subset` of the agents. Markets skip every other agent, so this is
+   * cheaper than getting every payoff when only a few are needed.
+   */
+  public Map<Agent, ? extends AgentInfo> getAgentPayoffs(Set<Agent> subset) {
+    if (agentPayoffs != null) {
+      return Maps.filterKeys(agentPayoffs, subset::contains);
+    }
+    return computePayoffs(subset, market -> market.getAgentInfo(subset));
+  }
 
-      // Get current fundamental price
-      double fundamentalValue = fundamental.getValueAt(getCurrentTime()).doubleValue();
-      for (Entry<Agent, SimAgentInfo> e : payoffs.entrySet()) {
-        e.getValue().profit += e.getValue().holdings * fundamentalValue
-            + e.getKey().payoffForPosition(e.getValue().holdings);
+  private Map<Agent, SimAgentInfo> computePayoffs(Set<Agent> subset,
+      Function<Market, Iterable<Entry<Agent, AgentInfo>>> marketInfo) {
+    // Get total agent holdings and profit according to all markets
+    Map<Agent, SimAgentInfo> payoffs = Maps.toMap(subset, a -> new SimAgentInfo());
+
+    for (Market market : markets) {
+      for (Entry<Agent, AgentInfo> e : marketInfo.apply(market)) {
+        SimAgentInfo info = payoffs.get(e.getKey());
+        info.holdings += e.getValue().getHoldings();
+        info.profit += e.getValue().getProfit();
+        info.submissions += e.getValue().getSubmissions();
       }
     }
-    return agentPayoffs;
+
+    // Get current fundamental price
+    double fundamentalValue = fundamental.getValueAt(getCurrentTime()).doubleValue();
+    for (Entry<Agent, SimAgentInfo> e : payoffs.entrySet()) {
+      e.getValue().profit += e.getValue().holdings * fundamentalValue
+          + e.getKey().payoffForPosition(e.getValue().holdings);
+    }
+    return payoffs;
   }
 
   @Override
@@ -112,6 +186,11 @@ public class MarketSimulator implements Sim {
     eventQueue.scheduleActivityIn(delay, activity);
   }
 
+  @Override
+  public <T> void scheduleEachIn(TimeStamp delay, List<T> targets, Consumer<? super T> activity) {
+    eventQueue.scheduleEachIn(delay, targets, activity);
+  }
+
   @Override
   public TimeStamp getCurrentTime() {
     return eventQueue.getCurrentTime();
@@ -119,7 +198,47 @@ public class MarketSimulator implements Sim {
 
   @Override
   public void addFeature(String name, double value) {
-    features.accept(name, value);
+    if (featureLevel != FeatureLevel.NONE) {
+      features.accept(name, value);
+    }
+  }
+
+  @Override
+  public NbboView getNbbo() {
+    return sip.getView();
+  }
+
+  @Override
+  public FeatureLevel getFeatureLevel() {
+    return featureLevel;
+  }
+
+  /** Agent payoffs and summary features from part way through a simulation. */
+  public static final class Checkpoint {
+    private final TimeStamp time;
+    private final Map<Agent, ? extends AgentInfo> payoffs;
+    private final JsonObject features;
+
+    private Checkpoint(TimeStamp time, Map<Agent, ? extends AgentInfo> payoffs,
+        JsonObject features) {
+      this.time = time;
+      this.payoffs = payoffs;
+      this.features = features;
+    }
+
+    public TimeStamp getTime() {
+      return time;
+    }
+
+    /** Payoffs with holdings valued at the fundamental at this time. */
+    public Map<Agent, ? extends AgentInfo> getPayoffs() {
+      return payoffs;
+    }
+
+    public JsonObject getFeatures() {
+      return features;
+    }
+
   }
 
   private static class SimAgentInfo implements AgentInfo {
@@ -1,11 +1,39 @@
 package edu.umich.srg.marketsim;
 
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
+import edu.umich.srg.marketsim.fundamental.Fundamental;
+import edu.umich.srg.marketsim.market.Sip.NbboView;
+
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface Sim {
 
   void scheduleIn(TimeStamp delay, Runnable activity);
 
+  /**
+   * Schedule `activity` to run on every target after `delay`. This is the same as scheduling each
+   * target separately in order, but implementations may batch them.
+   */
+  default <T> void scheduleEachIn(TimeStamp delay, List<T> targets, Consumer<? super T> activity) {
+    for (T target : targets) {
+      scheduleIn(delay, () -> activity.accept(target));
+    }
+  }
+
   TimeStamp getCurrentTime();
 
   void addFeature(String name, double value);
 
+  /** The NBBO across every market in the simulation, as the SIP sees it. */
+  NbboView getNbbo();
+
+  /** The fundamental the simulation is valued with. */
+  Fundamental getFundamental();
+
+  /** How much markets and agents should record for features. Nothing below this is kept. */
+  default FeatureLevel getFeatureLevel() {
+    return FeatureLevel.FULL;
+  }
+
 }
@@ -19,6 +19,11 @@ public interface Agent {
 
   ArrayList<Double> getSubmissionDist();
 
+  /** How markets classify this agent's trades in their features. */
+  default TradeRole getTradeRole() {
+    return TradeRole.OTHER;
+  }
+
   /** A json object of any miscellaneous features an agent wishes to compute. */
   default JsonObject getFeatures() {
     return new JsonObject();
@@ -55,4 +60,15 @@ public interface Agent {
    */
   default void notifyTransaction(MarketView market, OrderNotification notification) {}
 
+  enum TradeRole {
+    /** Zero intelligence background traders. */
+    ZI,
+    /** Heuristic belief learning background traders. */
+    HBL,
+    /** Agents that spoof the market. */
+    SPOOFER,
+    /** Everyone else. */
+    OTHER
+  }
+
 }
@@ -1,6 +1,7 @@
 package edu.umich.srg.marketsim.agent;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
 
 import edu.umich.srg.distributions.Distribution.LongDistribution;
 import edu.umich.srg.distributions.Geometric;
@@ -23,14 +24,20 @@ import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.fundamental.FundamentalView;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
+import edu.umich.srg.marketsim.market.Market.OrderBatch;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
+import edu.umich.srg.marketsim.market.Quote;
 import edu.umich.srg.marketsim.strategy.MarketMakerLadder;
+import edu.umich.srg.marketsim.strategy.MarketMakerLadder.LadderDiff;
 import edu.umich.srg.marketsim.strategy.NoisyFundamentalEstimator;
+import edu.umich.srg.marketsim.strategy.OrderDesc;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class FundamentalMarketMaker implements Agent {
@@ -52,7 +59,7 @@ public class FundamentalMarketMaker implements Agent {
   public FundamentalMarketMaker(Sim sim, Market market, Fundamental fundamental, Spec spec,
       Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.noneOf(MarketData.class));
     this.arrivalDistribution = Geometric.withSuccessProbability(spec.get(ArrivalRate.class));
 
     this.fundamental = FundamentalView.create(sim, fundamental, TimeStamp.ZERO,
@@ -79,29 +86,50 @@ public class FundamentalMarketMaker implements Agent {
   }
 
   private void strategy() {
-    for (OrderRecord o : ImmutableList.copyOf(market.getActiveOrders())) {
-      market.withdrawOrder(o);
-    }
-
     estimator.addFundamentalObservation(sim.getCurrentTime(), fundamental.getFundamental());
     double fundamentalPrice = estimator.estimate();
 
-    strategy.createLadder(Price.of(fundamentalPrice - halfSpread),
-        Price.of(fundamentalPrice + halfSpread)).forEach(order -> {
-          if (market.getQuote().getBidPrice().isPresent() && order.getType() == OrderType.SELL
-              && order.getPrice().compareTo(market.getQuote().getBidPrice().get()) < 1) {
-            // truncate
-          } else if (market.getQuote().getAskPrice().isPresent() && order.getType() == OrderType.BUY
-              && order.getPrice().compareTo(market.getQuote().getAskPrice().get()) > -1) {
-            // truncate
-          } else {
-            market.submitOrder(order.getType(), order.getPrice(), rungThickness);
-          }
-        });
+    LadderDiff diff = MarketMakerLadder.diff(market.getActiveOrders(),
+        strategy.createLadder(Price.of(fundamentalPrice - halfSpread),
+            Price.of(fundamentalPrice + halfSpread)),
+        rungThickness);
+
+    // Truncation is against the quote without our old rungs, so they go in their own batch. The
+    // rungs we keep are part of the new ladder, and so can't truncate it.
+    OrderBatch withdrawals = market.createBatch();
+    diff.getWithdrawals().forEach(withdrawals::withdrawOrder);
+    withdrawals.execute();
+
+    Quote quote = market.getQuote();
+    OrderBatch batch = market.createBatch();
+    for (OrderRecord kept : ImmutableList.copyOf(market.getActiveOrders())) {
+      if (truncated(quote, kept.getOrderType(), kept.getPrice())) {
+        batch.withdrawOrder(kept);
+      }
+    }
+    for (Multiset.Entry<OrderDesc> order : diff.getSubmissions().entrySet()) {
+      if (!truncated(quote, order.getElement().getType(), order.getElement().getPrice())) {
+        batch.submitOrder(order.getElement().getType(), order.getElement().getPrice(),
+            order.getCount());
+      }
+    }
+    batch.execute();
 
     scheduleNextArrival();
   }
 
+  private static boolean truncated(Quote quote, OrderType type, Price price) {
+    if (quote.getBidPrice().isPresent() && type == OrderType.SELL
+        && price.compareTo(quote.getBidPrice().get()) < 1) {
+      return true;
+    } else if (quote.getAskPrice().isPresent() && type == OrderType.BUY
+        && price.compareTo(quote.getAskPrice().get()) > -1) {
+      return true;
+    } else {
+      return false;
+    }
+  }
+
 
   @Override
   public void initialize() {
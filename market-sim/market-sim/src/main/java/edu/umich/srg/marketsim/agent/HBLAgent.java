@@ -12,7 +12,9 @@ import edu.umich.srg.distributions.Uniform;
 import edu.umich.srg.distributions.Uniform.IntUniform;
 import edu.umich.srg.egtaonline.spec.Spec;
 import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.marketsim.Keys.Antithetic;
 import edu.umich.srg.marketsim.Keys.ArrivalRate;
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
 import edu.umich.srg.marketsim.Keys.FundamentalMean;
 import edu.umich.srg.marketsim.Keys.FundamentalMeanReversion;
 import edu.umich.srg.marketsim.Keys.FundamentalObservationVariance;
@@ -30,6 +32,7 @@ import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.fundamental.FundamentalView;
 import edu.umich.srg.marketsim.fundamental.GaussianMeanReverting;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
@@ -41,6 +44,7 @@ import edu.umich.srg.marketsim.strategy.SurplusThreshold;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class HBLAgent implements Agent {
@@ -64,18 +68,21 @@ public class HBLAgent implements Agent {
   private final BeliefFunctionEstimator bfEstimator;
   private ArrayList<Double> beliefBias;
   private ArrayList<Double> submissionDist;
+  private final boolean recordEstimates;
 
   public HBLAgent(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO,
+        EnumSet.of(MarketData.SUBMISSIONS, MarketData.WITHDRAWALS, MarketData.TRANSACTIONS));
     // true fundamental without noise
     this.trueFundamental = fundamental;
     this.maxPosition = spec.get(MaxPosition.class);
     this.threshold = SurplusThreshold.create(spec.get(Thresh.class));
     this.privateValue = PrivateValues.gaussianPrivateValue(rand, spec.get(MaxPosition.class),
-        spec.get(PrivateValueVar.class));
+        spec.get(PrivateValueVar.class), spec.get(Antithetic.class));
     this.arrivalDistribution = Geometric.withSuccessProbability(spec.get(ArrivalRate.class));
-    this.shadingDistribution = Uniform.closed(250, 500);
+    IntUniform shading = Uniform.closed(250, 500);
+    this.shadingDistribution = spec.get(Antithetic.class) ? shading.mirrored() : shading;
     this.arrivalRand = new Random(rand.nextLong());
     this.shadingRand = new Random(rand.nextLong());
     this.typeRand = new Random(rand.nextLong());
@@ -91,6 +98,7 @@ public class HBLAgent implements Agent {
         (long) (1 / spec.get(ArrivalRate.class)));
     this.beliefBias = new ArrayList<>();
     this.submissionDist = new ArrayList<>();
+    this.recordEstimates = sim.getFeatureLevel() == FeatureLevel.FULL;
   }
 
   public static HBLAgent createFromSpec(Sim sim, Fundamental fundamental,
@@ -122,8 +130,10 @@ public class HBLAgent implements Agent {
     }
 
     estimator.addFundamentalObservation(sim.getCurrentTime(), fundamental.getFundamental());
-    beliefBias.add(estimator.getCurrentEstimate()
-        - trueFundamental.getValueAt(sim.getCurrentTime()).doubleValue());
+    if (recordEstimates) {
+      beliefBias.add(estimator.getCurrentEstimate()
+          - trueFundamental.getValueAt(sim.getCurrentTime()).doubleValue());
+    }
     OrderType type = orderTypeDistribution.sample(typeRand);
 
     if (Math.abs(market.getHoldings() + type.sign()) <= maxPosition) {
@@ -155,7 +165,7 @@ public class HBLAgent implements Agent {
               }
               if (toSubmit.longValue() > 0) {
                 market.submitOrder(type, toSubmit, 1);
-                submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+                recordSubmission(toSubmit.doubleValue() - finalEstimate);
               }
             } else {
               if (toSubmit.longValue() > 0) {
@@ -164,7 +174,7 @@ public class HBLAgent implements Agent {
                 // if toSubmit is equal to prePrice, do nothing
                 if (moreCompetitive) {
                   market.submitOrder(type, toSubmit, 1);
-                  submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+                  recordSubmission(toSubmit.doubleValue() - finalEstimate);
                   market.withdrawOrder(prevOrder);
 
                 } else if (toSubmit.equals(prevPrice)) {
@@ -172,7 +182,7 @@ public class HBLAgent implements Agent {
                 } else {
                   market.withdrawOrder(prevOrder);
                   market.submitOrder(type, toSubmit, 1);
-                  submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+                  recordSubmission(toSubmit.doubleValue() - finalEstimate);
                 }
               } else {
                 market.withdrawOrder(prevOrder);
@@ -187,7 +197,7 @@ public class HBLAgent implements Agent {
                 }
                 if (toSubmit.longValue() > 0) {
                   market.submitOrder(type, toSubmit, 1);
-                  submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+                  recordSubmission(toSubmit.doubleValue() - finalEstimate);
                 }
               } else {
                 if (toSubmit.longValue() > 0) {
@@ -196,7 +206,7 @@ public class HBLAgent implements Agent {
                   // if toSubmit is equal to prePrice, do nothing
                   if (moreCompetitive) {
                     market.submitOrder(type, toSubmit, 1);
-                    submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+                    recordSubmission(toSubmit.doubleValue() - finalEstimate);
                     market.withdrawOrder(prevOrder);
 
                   } else if (toSubmit.equals(prevPrice)) {
@@ -204,7 +214,7 @@ public class HBLAgent implements Agent {
                   } else {
                     market.withdrawOrder(prevOrder);
                     market.submitOrder(type, toSubmit, 1);
-                    submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+                    recordSubmission(toSubmit.doubleValue() - finalEstimate);
                   }
                 } else {
                   if (prevOrder != null) {
@@ -235,7 +245,7 @@ public class HBLAgent implements Agent {
           }
           if (toSubmit.longValue() > 0) {
             market.submitOrder(type, toSubmit, 1);
-            submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+            recordSubmission(toSubmit.doubleValue() - finalEstimate);
           }
         } else {
           if (toSubmit.longValue() > 0) {
@@ -244,14 +254,14 @@ public class HBLAgent implements Agent {
             // if toSubmit is equal to prePrice, do nothing
             if (moreCompetitive) {
               market.submitOrder(type, toSubmit, 1);
-              submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+              recordSubmission(toSubmit.doubleValue() - finalEstimate);
               market.withdrawOrder(prevOrder);
             } else if (toSubmit.equals(prevPrice)) {
               // do nothing
             } else {
               market.withdrawOrder(prevOrder);
               market.submitOrder(type, toSubmit, 1);
-              submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+              recordSubmission(toSubmit.doubleValue() - finalEstimate);
             }
           } else {
             market.withdrawOrder(prevOrder);
@@ -268,11 +278,22 @@ public class HBLAgent implements Agent {
     scheduleNextArrival();
   }
 
+  @Override
+  public TradeRole getTradeRole() {
+    return TradeRole.HBL;
+  }
+
   @Override
   public double payoffForPosition(int position) {
     return privateValue.valueAtPosition(position);
   }
 
+  private void recordSubmission(double distance) {
+    if (recordEstimates) {
+      submissionDist.add(distance);
+    }
+  }
+
   @Override
   public ArrayList<Double> getBeliefBias() {
     return beliefBias;
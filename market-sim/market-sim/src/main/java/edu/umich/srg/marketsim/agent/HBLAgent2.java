@@ -12,7 +12,9 @@ import edu.umich.srg.distributions.Uniform;
 import edu.umich.srg.distributions.Uniform.IntUniform;
 import edu.umich.srg.egtaonline.spec.Spec;
 import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.marketsim.Keys.Antithetic;
 import edu.umich.srg.marketsim.Keys.ArrivalRate;
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
 import edu.umich.srg.marketsim.Keys.FundamentalMean;
 import edu.umich.srg.marketsim.Keys.FundamentalMeanReversion;
 import edu.umich.srg.marketsim.Keys.FundamentalObservationVariance;
@@ -31,6 +33,7 @@ import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.fundamental.FundamentalView;
 import edu.umich.srg.marketsim.fundamental.GaussianMeanReverting;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
@@ -42,6 +45,7 @@ import edu.umich.srg.marketsim.strategy.SurplusThreshold;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class HBLAgent2 implements Agent {
@@ -65,17 +69,20 @@ public class HBLAgent2 implements Agent {
   private final BeliefFunctionEstimator2 bfEstimator;
   private ArrayList<Double> beliefBias;
   private ArrayList<Double> submissionDist;
+  private final boolean recordEstimates;
 
   public HBLAgent2(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO,
+        EnumSet.of(MarketData.SUBMISSIONS, MarketData.WITHDRAWALS, MarketData.TRANSACTIONS));
     this.trueFundamental = fundamental;
     this.maxPosition = spec.get(MaxPosition.class);
     this.threshold = SurplusThreshold.create(spec.get(Thresh.class));
     this.privateValue = PrivateValues.gaussianPrivateValue(rand, spec.get(MaxPosition.class),
-        spec.get(PrivateValueVar.class));
+        spec.get(PrivateValueVar.class), spec.get(Antithetic.class));
     this.arrivalDistribution = Geometric.withSuccessProbability(spec.get(ArrivalRate.class));
-    this.shadingDistribution = Uniform.closed(250, 500);
+    IntUniform shading = Uniform.closed(250, 500);
+    this.shadingDistribution = spec.get(Antithetic.class) ? shading.mirrored() : shading;
     this.arrivalRand = new Random(rand.nextLong());
     this.shadingRand = new Random(rand.nextLong());
     this.typeRand = new Random(rand.nextLong());
@@ -90,6 +97,7 @@ public class HBLAgent2 implements Agent {
         (long) (1 / spec.get(ArrivalRate.class)), spec.get(RecencyDiscount.class));
     this.beliefBias = new ArrayList<>();
     this.submissionDist = new ArrayList<>();
+    this.recordEstimates = sim.getFeatureLevel() == FeatureLevel.FULL;
   }
 
   public static HBLAgent2 createFromSpec(Sim sim, Fundamental fundamental,
@@ -115,8 +123,10 @@ public class HBLAgent2 implements Agent {
       market.withdrawOrder(order);
     }
     estimator.addFundamentalObservation(sim.getCurrentTime(), fundamental.getFundamental());
-    beliefBias.add(estimator.getCurrentEstimate()
-        - trueFundamental.getValueAt(sim.getCurrentTime()).doubleValue());
+    if (recordEstimates) {
+      beliefBias.add(estimator.getCurrentEstimate()
+          - trueFundamental.getValueAt(sim.getCurrentTime()).doubleValue());
+    }
     OrderType type = orderTypeDistribution.sample(typeRand);
 
     if (Math.abs(market.getHoldings() + type.sign()) <= maxPosition) {
@@ -146,7 +156,7 @@ public class HBLAgent2 implements Agent {
             toSubmit = threshold.shadePrice(type, market.getQuote(), privateVal, demandedSurplus);
             if (toSubmit.longValue() > 0) {
               market.submitOrder(type, toSubmit, 1);
-              submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+              recordSubmission(toSubmit.doubleValue() - finalEstimate);
             }
           } else {
             if (type.sign() * (privateVal - toSubmit.doubleValue()) > 0
@@ -158,7 +168,7 @@ public class HBLAgent2 implements Agent {
               // System.out.println(this.toString() + " " + sim.getCurrentTime().get() + " " + type
               // + " " + finalEstimate + " " + privateBenefit
               // + " " + toSubmit.doubleValue() + " " + prob);
-              submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+              recordSubmission(toSubmit.doubleValue() - finalEstimate);
             }
           }
         }
@@ -186,6 +196,12 @@ public class HBLAgent2 implements Agent {
     return privateValue.valueAtPosition(position);
   }
 
+  private void recordSubmission(double distance) {
+    if (recordEstimates) {
+      submissionDist.add(distance);
+    }
+  }
+
   @Override
   public ArrayList<Double> getBeliefBias() {
     return beliefBias;
@@ -15,11 +15,13 @@ import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.fundamental.FundamentalView;
 import edu.umich.srg.marketsim.fundamental.GaussianMeanReverting;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.strategy.NoisyFundamentalEstimator;
 
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 /**
@@ -32,7 +34,7 @@ public class MarkovAgent extends StandardMarketAgent {
 
   /** Standard constructor for the Markov agent. */
   public MarkovAgent(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
-    super(sim, market, fundamental, spec, rand);
+    super(sim, market, fundamental, spec, rand, EnumSet.of(MarketData.TRANSACTIONS));
     checkArgument(fundamental instanceof GaussianMeanReverting);
     this.fundamental = FundamentalView.create(sim, fundamental, TimeStamp.ZERO,
         spec.get(FundamentalObservationVariance.class), new Random(rand.nextLong()));
@@ -69,6 +71,11 @@ public class MarkovAgent extends StandardMarketAgent {
     return "Markov";
   }
 
+  @Override
+  public TradeRole getTradeRole() {
+    return TradeRole.ZI;
+  }
+
   @Override
   protected double getCurrentFundamentalEstimate() {
     return estimator.getCurrentEstimate();
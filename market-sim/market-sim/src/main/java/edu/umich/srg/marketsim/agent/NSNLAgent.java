@@ -6,12 +6,14 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class NSNLAgent implements Agent {
@@ -20,7 +22,7 @@ public class NSNLAgent implements Agent {
 
   public NSNLAgent(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.noneOf(MarketData.class));
   }
 
   public static NSNLAgent createFromSpec(Sim sim, Fundamental fundamental,
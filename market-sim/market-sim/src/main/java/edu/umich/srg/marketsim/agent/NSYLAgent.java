@@ -11,12 +11,14 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class NSYLAgent implements Agent {
@@ -37,7 +39,7 @@ public class NSYLAgent implements Agent {
 
   public NSYLAgent(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.noneOf(MarketData.class));
     this.fundamentalMean = spec.get(FundamentalMean.class);
     this.spoofingTime = TimeStamp.of(spec.get(SpoofingTime.class));
     this.profitTimeOne = TimeStamp.of(spec.get(ProfitTimeOne.class));
@@ -97,6 +99,11 @@ public class NSYLAgent implements Agent {
   // return estimator.estimate();
   // }
 
+  @Override
+  public TradeRole getTradeRole() {
+    return TradeRole.SPOOFER;
+  }
+
   @Override
   public double payoffForPosition(int position) {
     return 0;
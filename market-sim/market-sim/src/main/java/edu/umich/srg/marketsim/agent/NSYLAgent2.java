@@ -13,12 +13,14 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class NSYLAgent2 implements Agent {
@@ -32,7 +34,7 @@ public class NSYLAgent2 implements Agent {
 
   public NSYLAgent2(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.noneOf(MarketData.class));
     this.fundamentalMean = spec.get(FundamentalMean.class);
     this.spoofingTimeTwo = TimeStamp.of(spec.get(SpoofingTimeTwo.class));
     this.profitTimeOne = TimeStamp.of(spec.get(ProfitTimeOne.class));
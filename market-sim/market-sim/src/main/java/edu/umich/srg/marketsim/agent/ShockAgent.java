@@ -15,12 +15,14 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 import java.util.function.IntSupplier;
 
@@ -45,7 +47,7 @@ public class ShockAgent implements Agent {
   /** Standard constructor. */
   public ShockAgent(Sim sim, Market market, Spec spec) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.of(MarketData.QUOTES));
     this.arrivalTime = spec.get(SimLength.class) / 2;
     this.timeToLiquidate = spec.get(TimeToLiquidate.class);
     this.type = spec.get(Type.class);
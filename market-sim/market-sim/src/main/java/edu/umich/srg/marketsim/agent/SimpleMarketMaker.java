@@ -1,7 +1,7 @@
 package edu.umich.srg.marketsim.agent;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
 
 import edu.umich.srg.distributions.Distribution.LongDistribution;
 import edu.umich.srg.distributions.Geometric;
@@ -17,15 +17,20 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
+import edu.umich.srg.marketsim.market.Market.OrderBatch;
 import edu.umich.srg.marketsim.market.OrderNotification;
-import edu.umich.srg.marketsim.market.OrderRecord;
 import edu.umich.srg.marketsim.market.Quote;
 import edu.umich.srg.marketsim.strategy.MarketMakerLadder;
+import edu.umich.srg.marketsim.strategy.MarketMakerLadder.LadderDiff;
+import edu.umich.srg.marketsim.strategy.OrderDesc;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
+import java.util.stream.Stream;
 
 public class SimpleMarketMaker implements Agent {
 
@@ -42,7 +47,7 @@ public class SimpleMarketMaker implements Agent {
   /** Basic constructor for a simple market maker. */
   public SimpleMarketMaker(Sim sim, Market market, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.noneOf(MarketData.class));
     this.arrivalDistribution = Geometric.withSuccessProbability(spec.get(ArrivalRate.class));
     this.rungThickness = spec.get(RungThickness.class);
     this.strategy = new MarketMakerLadder(spec.get(RungSep.class), spec.get(NumRungs.class),
@@ -62,22 +67,25 @@ public class SimpleMarketMaker implements Agent {
 
   private void strategy() {
     updateQuote();
-    for (OrderRecord o : ImmutableList.copyOf(market.getActiveOrders())) {
-      market.withdrawOrder(o);
-    }
-    updateQuote();
 
-    if (lastBid.isPresent() && lastAsk.isPresent()) {
-      strategy.createLadder(lastBid.get(), lastAsk.get()).forEach(order -> {
-        market.submitOrder(order.getType(), order.getPrice(), rungThickness);
-      });
+    Stream<OrderDesc> ladder = lastBid.isPresent() && lastAsk.isPresent()
+        ? strategy.createLadder(lastBid.get(), lastAsk.get()) : Stream.empty();
+    LadderDiff diff = MarketMakerLadder.diff(market.getActiveOrders(), ladder, rungThickness);
+
+    OrderBatch batch = market.createBatch();
+    diff.getWithdrawals().forEach(batch::withdrawOrder);
+    for (Multiset.Entry<OrderDesc> order : diff.getSubmissions().entrySet()) {
+      batch.submitOrder(order.getElement().getType(), order.getElement().getPrice(),
+          order.getCount());
     }
+    batch.execute();
 
     scheduleNextArrival();
   }
 
+  /** The ladder is anchored on the quote of other agents, or the last one if a side is empty. */
   private void updateQuote() {
-    Quote quote = market.getQuote();
+    Quote quote = market.getOthersQuote();
     this.lastBid = quote.getBidPrice().or(lastBid);
     this.lastAsk = quote.getAskPrice().or(lastAsk);
   }
@@ -110,12 +118,6 @@ public class SimpleMarketMaker implements Agent {
 
   }
 
-  @Override
-  public void notifyTransaction(MarketView market, OrderNotification notification) {
-    // TODO Auto-generated method stub
-
-  }
-
   @Override
   public ArrayList<Double> getBeliefBias() {
     return new ArrayList<>();
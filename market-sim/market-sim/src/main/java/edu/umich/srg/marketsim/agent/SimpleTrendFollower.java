@@ -15,6 +15,7 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
@@ -22,6 +23,7 @@ import edu.umich.srg.marketsim.market.Quote;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 import java.util.function.Function;
 
@@ -56,7 +58,7 @@ public class SimpleTrendFollower implements Agent {
   /** Basic constructor of a simple trend follower. */
   public SimpleTrendFollower(Sim sim, Market market, Spec spec) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.of(MarketData.TRANSACTIONS));
     this.trendLength = spec.get(TrendLength.class);
     this.profitDemanded = spec.get(ProfitDemanded.class);
     this.expiration = spec.get(Expiration.class);
@@ -9,7 +9,9 @@ import edu.umich.srg.distributions.Uniform;
 import edu.umich.srg.distributions.Uniform.IntUniform;
 import edu.umich.srg.egtaonline.spec.Spec;
 import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.marketsim.Keys.Antithetic;
 import edu.umich.srg.marketsim.Keys.ArrivalRate;
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
 import edu.umich.srg.marketsim.Keys.MaxPosition;
 import edu.umich.srg.marketsim.Keys.PrivateValueVar;
 import edu.umich.srg.marketsim.Keys.Rmax;
@@ -22,6 +24,7 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
@@ -57,19 +60,27 @@ public abstract class StandardMarketAgent implements Agent {
   private final int ordersPerSide;
   private ArrayList<Double> beliefBias;
   private ArrayList<Double> submissionDist;
+  private final boolean recordEstimates;
 
   /** Standard constructor for ZIR agent. */
   public StandardMarketAgent(Sim sim, Market market, Fundamental fundamental, Spec spec,
       Random rand) {
+    this(sim, market, fundamental, spec, rand, EnumSet.noneOf(MarketData.class));
+  }
+
+  /** Constructor for subclasses that need to hear about market wide events. */
+  protected StandardMarketAgent(Sim sim, Market market, Fundamental fundamental, Spec spec,
+      Random rand, Set<MarketData> subscriptions) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, subscriptions);
     this.trueFundamental = fundamental;
     this.maxPosition = spec.get(MaxPosition.class);
     this.threshold = SurplusThreshold.create(spec.get(Thresh.class));
     this.privateValue = PrivateValues.gaussianPrivateValue(rand, spec.get(MaxPosition.class),
-        spec.get(PrivateValueVar.class));
+        spec.get(PrivateValueVar.class), spec.get(Antithetic.class));
     this.arrivalDistribution = Geometric.withSuccessProbability(spec.get(ArrivalRate.class));
-    this.shadingDistribution = Uniform.closed(spec.get(Rmin.class), spec.get(Rmax.class));
+    IntUniform shading = Uniform.closed(spec.get(Rmin.class), spec.get(Rmax.class));
+    this.shadingDistribution = spec.get(Antithetic.class) ? shading.mirrored() : shading;
     switch (spec.get(Sides.class)) {
       case RANDOM:
         this.side = () -> Collections.singleton(randomOrder.sample(rand));
@@ -84,6 +95,7 @@ public abstract class StandardMarketAgent implements Agent {
     this.rand = rand;
     this.beliefBias = new ArrayList<>();
     this.submissionDist = new ArrayList<>();
+    this.recordEstimates = sim.getFeatureLevel() == FeatureLevel.FULL;
   }
 
   protected abstract double getFinalFundamentalEstiamte();
@@ -109,8 +121,10 @@ public abstract class StandardMarketAgent implements Agent {
     Set<OrderType> sides = side.get();
     double finalEstimate = getFinalFundamentalEstiamte();
 
-    beliefBias.add(getCurrentFundamentalEstimate()
-        - trueFundamental.getValueAt(sim.getCurrentTime()).doubleValue());
+    if (recordEstimates) {
+      beliefBias.add(getCurrentFundamentalEstimate()
+          - trueFundamental.getValueAt(sim.getCurrentTime()).doubleValue());
+    }
     double demandedSurplus = shadingDistribution.sample(rand);
 
     for (OrderType type : sides) {
@@ -127,7 +141,7 @@ public abstract class StandardMarketAgent implements Agent {
             }
             if (toSubmit.longValue() > 0) {
               market.submitOrder(type, toSubmit, 1);
-              submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+              recordSubmission(toSubmit.doubleValue() - finalEstimate);
             }
           } else {
             if (toSubmit.longValue() > 0) {
@@ -136,7 +150,7 @@ public abstract class StandardMarketAgent implements Agent {
               // if toSubmit is equal to prePrice, do nothing
               if (moreCompetitive) {
                 market.submitOrder(type, toSubmit, 1);
-                submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+                recordSubmission(toSubmit.doubleValue() - finalEstimate);
                 market.withdrawOrder(prevOrder);
 
               } else if (toSubmit.equals(prevPrice)) {
@@ -144,7 +158,7 @@ public abstract class StandardMarketAgent implements Agent {
               } else {
                 market.withdrawOrder(prevOrder);
                 market.submitOrder(type, toSubmit, 1);
-                submissionDist.add(toSubmit.doubleValue() - finalEstimate);
+                recordSubmission(toSubmit.doubleValue() - finalEstimate);
               }
 
             } else {
@@ -167,6 +181,12 @@ public abstract class StandardMarketAgent implements Agent {
     return privateValue.valueAtPosition(position);
   }
 
+  private void recordSubmission(double distance) {
+    if (recordEstimates) {
+      submissionDist.add(distance);
+    }
+  }
+
   @Override
   public ArrayList<Double> getBeliefBias() {
     return beliefBias;
@@ -13,12 +13,14 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class YSNLAgent2 implements Agent {
@@ -35,7 +37,7 @@ public class YSNLAgent2 implements Agent {
   // spoofing on both buy and sell side
   public YSNLAgent2(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.of(MarketData.QUOTES));
     this.firstSpoofing = true;
     this.quoteUpdateOn = true;
     this.spoofingTimeOne = TimeStamp.of(spec.get(SpoofingTimeOne.class));
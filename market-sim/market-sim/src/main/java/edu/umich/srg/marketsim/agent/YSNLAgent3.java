@@ -10,6 +10,7 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
@@ -17,6 +18,7 @@ import edu.umich.srg.marketsim.market.OrderRecord;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class YSNLAgent3 implements Agent {
@@ -35,7 +37,7 @@ public class YSNLAgent3 implements Agent {
   // this version of spoofing agent does not withdraw spoof orders everytime
   public YSNLAgent3(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.allOf(MarketData.class));
     this.firstSpoofing = true;
     this.submitNewSpoof = false;
     this.fromWithdraw = false;
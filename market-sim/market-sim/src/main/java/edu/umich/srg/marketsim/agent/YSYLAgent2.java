@@ -14,12 +14,14 @@ import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.Fundamental;
 import edu.umich.srg.marketsim.market.Market;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
 import edu.umich.srg.marketsim.market.OrderNotification;
 import edu.umich.srg.marketsim.market.OrderRecord;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Random;
 
 public class YSYLAgent2 implements Agent {
@@ -39,7 +41,7 @@ public class YSYLAgent2 implements Agent {
   // spoof buy -> true sell -> spoof sell -> true buy
   public YSYLAgent2(Sim sim, Market market, Fundamental fundamental, Spec spec, Random rand) {
     this.sim = sim;
-    this.market = market.getView(this, TimeStamp.ZERO);
+    this.market = market.getView(this, TimeStamp.ZERO, EnumSet.of(MarketData.QUOTES));
     this.fundamentalMean = spec.get(FundamentalMean.class);
     this.firstSpoofing = true;
     this.quoteUpdateOn = true;
@@ -4,12 +4,15 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 
 import edu.umich.srg.collect.RandomPriorityQueue;
 import edu.umich.srg.marketsim.TimeStamp;
 
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * EventQueue holds the ordering of activities. Scheduled activities that occur at the same time are
@@ -26,11 +29,13 @@ public class EventQueue {
 
   private TimeStamp currentTime;
 
+  private final Random rand;
   private final RandomPriorityQueue<TimeStamp, Runnable> scheduledActivities;
   private final ListMultimap<TimeStamp, Runnable> pendingScheduledActivities;
 
   /** Construct an empty event queue. */
   public EventQueue(Random rand) {
+    this.rand = rand;
     this.scheduledActivities = RandomPriorityQueue.create(rand);
     this.pendingScheduledActivities = ArrayListMultimap.create();
     this.currentTime = TimeStamp.ZERO;
@@ -88,6 +93,18 @@ public class EventQueue {
     pendingScheduledActivities.put(TimeStamp.of(currentTime.get() + delay.get()), act);
   }
 
+  /**
+   * Schedule `activity` on every target, as if each were scheduled separately in order. The targets
+   * join the pending activities as one ordered batch, so they're interleaved with other activities
+   * at the same time exactly as separately scheduled activities would be, and no extra random draws
+   * are made.
+   */
+  public <T> void scheduleEachIn(TimeStamp delay, List<T> targets, Consumer<? super T> activity) {
+    checkArgument(delay.compareTo(TimeStamp.ZERO) >= 0);
+    pendingScheduledActivities.putAll(TimeStamp.of(currentTime.get() + delay.get()),
+        Lists.transform(targets, target -> () -> activity.accept(target)));
+  }
+
   public TimeStamp getCurrentTime() {
     return currentTime;
   }
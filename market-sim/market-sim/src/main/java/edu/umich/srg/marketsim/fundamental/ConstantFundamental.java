@@ -4,10 +4,8 @@ import edu.umich.srg.collect.Sparse;
 import edu.umich.srg.collect.Sparse.Entry;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.TimeStamp;
-import edu.umich.srg.util.SummStats;
 
 import java.util.Collections;
-import java.util.Iterator;
 
 public class ConstantFundamental extends GaussianMeanReverting {
 
@@ -36,22 +34,14 @@ public class ConstantFundamental extends GaussianMeanReverting {
   }
 
   @Override
-  public double rmsd(Iterator<? extends Entry<? extends Number>> prices, TimeStamp finalTime) {
-    if (!prices.hasNext()) {
-      return Double.NaN;
-    }
-    long longTime = finalTime.get();
-    SummStats rmsd = SummStats.empty();
-    Entry<? extends Number> nextPrice;
-    Entry<? extends Number> lastPrice = prices.next();
-    while (prices.hasNext() && (nextPrice = prices.next()).getIndex() <= longTime) {
-      double diff = lastPrice.getElement().doubleValue() - constant.doubleValue();
-      rmsd.acceptNTimes(diff, nextPrice.getIndex() - lastPrice.getIndex());
-      lastPrice = nextPrice;
-    }
-    double diff = lastPrice.getElement().doubleValue() - constant.doubleValue();
-    rmsd.acceptNTimes(diff, longTime - lastPrice.getIndex() + 1);
-    return Math.sqrt(rmsd.getAverage());
+  public RmsdAccumulator rmsdAccumulator() {
+    double value = constant.doubleValue();
+    return new DiscountedRmsd(value, 1) {
+      @Override
+      void addSegment(long start, long end, double price) {
+        add(0, 0, (value - price) * (value - price) * (end - start), end - start);
+      }
+    };
   }
 
   private static final long serialVersionUID = 1;
@@ -0,0 +1,87 @@
+package edu.umich.srg.marketsim.fundamental;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import edu.umich.srg.marketsim.TimeStamp;
+
+/**
+ * An rmsd between prices and the estimate of the final fundamental at every time step. The
+ * estimate at time t is `mean + (f_t - mean) r^(T - t)`, where r is the expected fraction of the
+ * difference from the mean left after one step, and T is the final time.
+ *
+ * <p>
+ * T isn't known until the end, so the squared differences are split into parts that are quadratic,
+ * linear, and constant in `r^(T - t)`. Each part is kept discounted to the last time covered, and
+ * rolled forward as more time is covered. Subclasses only need to add the parts for a stretch of
+ * time where the price was constant.
+ */
+abstract class DiscountedRmsd implements RmsdAccumulator {
+
+  final double mean;
+  final double reversion;
+
+  private double quadratic;
+  private double linear;
+  private double constant;
+  private boolean started;
+  private long first;
+  private long last;
+  private double price;
+
+  DiscountedRmsd(double mean, double reversion) {
+    this.mean = mean;
+    this.reversion = reversion;
+    this.started = false;
+  }
+
+  /**
+   * Add the parts for times `start` until `end` exclusive, when the price was `price`. This must
+   * call `add` with parts discounted to `end - 1`.
+   */
+  abstract void addSegment(long start, long end, double price);
+
+  /** Roll the parts forward `steps` and add new parts discounted to the new last time. */
+  final void add(double quadraticPart, double linearPart, double constantPart, long steps) {
+    if (steps == 1) {
+      quadratic = quadratic * reversion * reversion + quadraticPart;
+      linear = linear * reversion + linearPart;
+    } else {
+      quadratic = quadratic * Math.pow(reversion, 2 * steps) + quadraticPart;
+      linear = linear * Math.pow(reversion, steps) + linearPart;
+    }
+    constant += constantPart;
+  }
+
+  @Override
+  public void accept(long time, double price) {
+    if (!started) {
+      started = true;
+      first = time;
+    } else if (time > last) {
+      addSegment(last, time, this.price);
+    } else {
+      checkArgument(time == last, "Prices must be in time order");
+    }
+    last = time;
+    this.price = price;
+  }
+
+  @Override
+  public double get(TimeStamp finalTime) {
+    long end = finalTime.get();
+    if (!started || end < last) {
+      return Double.NaN;
+    }
+    // Cover the last price without keeping it, so more prices can still be added
+    double quadraticBefore = quadratic;
+    double linearBefore = linear;
+    double constantBefore = constant;
+    addSegment(last, end + 1, price);
+    double rmsd = Math.sqrt((quadratic + linear + constant) / (end - first + 1));
+    quadratic = quadraticBefore;
+    linear = linearBefore;
+    constant = constantBefore;
+    return rmsd;
+  }
+
+}
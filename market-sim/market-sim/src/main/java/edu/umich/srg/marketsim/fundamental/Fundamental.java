@@ -4,8 +4,6 @@ import edu.umich.srg.collect.Sparse.Entry;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.TimeStamp;
 
-import java.util.Iterator;
-
 /**
  * Class to store and compute a stochastic process used as a base to determine the private
  * valuations of agents.
@@ -14,12 +12,12 @@ public interface Fundamental {
 
   Price getValueAt(TimeStamp time);
 
-  double rmsd(Iterator<? extends Entry<? extends Number>> prices, TimeStamp finalTime);
-
-  default double rmsd(Iterable<? extends Entry<? extends Number>> prices, TimeStamp finalTime) {
-    return rmsd(prices.iterator(), finalTime);
-  }
-
   Iterable<Entry<Number>> getFundamentalValues(TimeStamp finalTime);
 
+  /**
+   * Start the root mean squared deviation between the fundamental and prices that are given as
+   * they change, treating prices as a step function from their first time.
+   */
+  RmsdAccumulator rmsdAccumulator();
+
 }
@@ -0,0 +1,165 @@
+package edu.umich.srg.marketsim.fundamental;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import edu.umich.srg.util.PositionalSeed;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * A file of dense fundamental paths that all share the same parameters. Simulations that should
+ * only differ in their agents can read the same path instead of each sampling their own, which
+ * saves the sampling and gives common random numbers across profiles.
+ *
+ * <p>
+ * Paths are memory mapped, so reading one doesn't copy it, and every simulation in the same
+ * process shares the pages. Path k is sampled from the k'th positional seed of the library seed,
+ * so it doesn't depend on how many paths are in the file.
+ */
+public class FundamentalLibrary {
+
+  private static final long magic = 0x66756e646c696231L; // "fundlib1"
+  private static final int headerBytes = 8 * Long.BYTES;
+
+  private final FileChannel channel;
+  private final int numPaths;
+  private final long length;
+  private final double mean;
+  private final double meanReversion;
+  private final double shockVar;
+  private final double shockProb;
+
+  private FundamentalLibrary(FileChannel channel) throws IOException {
+    this.channel = channel;
+    ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, headerBytes);
+    checkArgument(header.getLong() == magic, "Not a fundamental library");
+    this.numPaths = (int) header.getLong();
+    this.length = header.getLong();
+    this.mean = header.getDouble();
+    this.meanReversion = header.getDouble();
+    this.shockVar = header.getDouble();
+    this.shockProb = header.getDouble();
+  }
+
+  /** Open a library written by `write`. */
+  public static FundamentalLibrary open(Path file) throws IOException {
+    return new FundamentalLibrary(FileChannel.open(file, StandardOpenOption.READ));
+  }
+
+  /** Sample `numPaths` dense fundamentals from time 0 to `length` into `file`. */
+  public static void write(Path file, int numPaths, long seed, double mean, double meanReversion,
+      double shockVar, double shockProb, long length) throws IOException {
+    checkArgument(numPaths > 0, "Must write at least one path");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      ByteBuffer header = channel.map(MapMode.READ_WRITE, 0, headerBytes);
+      header.putLong(magic).putLong(numPaths).putLong(length).putDouble(mean)
+          .putDouble(meanReversion).putDouble(shockVar).putDouble(shockProb).putLong(seed);
+
+      PositionalSeed seeds = PositionalSeed.with(seed);
+      Random rand = new Random();
+      for (int k = 0; k < numPaths; ++k) {
+        rand.setSeed(seeds.getSeed(k));
+        double[] path = GaussianMeanReverting.samplePath(rand, mean, meanReversion, shockVar,
+            shockProb, length, false);
+        channel.map(MapMode.READ_WRITE, offset(k, length), pathBytes(length)).asDoubleBuffer()
+            .put(path);
+      }
+    }
+  }
+
+  /** Get path `k` as a fundamental. It reads straight from the mapped file. */
+  public GaussianMeanReverting getFundamental(int k) {
+    return getFundamental(k, false);
+  }
+
+  /**
+   * Get path `k`, and if `antithetic` mirror it about the mean, which is the path with every shock
+   * negated.
+   */
+  public GaussianMeanReverting getFundamental(int k, boolean antithetic) {
+    checkElementIndex(k, numPaths, "path");
+    try {
+      DoubleBuffer path =
+          channel.map(MapMode.READ_ONLY, offset(k, length), pathBytes(length)).asDoubleBuffer();
+      return new LibraryPath(path, mean, meanReversion, shockProb, antithetic);
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't map path " + k, e);
+    }
+  }
+
+  /** Whether the paths in this library were sampled with these parameters. */
+  public boolean matches(double mean, double meanReversion, double shockVar, double shockProb) {
+    return this.mean == mean && this.meanReversion == meanReversion && this.shockVar == shockVar
+        && this.shockProb == shockProb;
+  }
+
+  public int getNumPaths() {
+    return numPaths;
+  }
+
+  /** The last time in every path. */
+  public long getLength() {
+    return length;
+  }
+
+  private static long offset(int k, long length) {
+    return headerBytes + k * pathBytes(length);
+  }
+
+  private static long pathBytes(long length) {
+    return (length + 1) * Double.BYTES;
+  }
+
+  /**
+   * Write a library. The arguments are the file, the number of paths, the seed, and then the
+   * fundamental mean, mean reversion, shock variance, shock probability, and sim length.
+   */
+  public static void main(String[] args) throws IOException {
+    checkArgument(args.length == 8,
+        "usage: file paths seed mean meanReversion shockVar shockProb simLength");
+    write(Paths.get(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]),
+        Double.parseDouble(args[3]), Double.parseDouble(args[4]), Double.parseDouble(args[5]),
+        Double.parseDouble(args[6]), Long.parseLong(args[7]));
+  }
+
+  private static class LibraryPath extends GaussianMeanReverting.SampledPath {
+
+    // Mapped buffers can't be serialized, so a deserialized path can't be read
+    private final transient DoubleBuffer path;
+    private final boolean antithetic;
+    private final double mean;
+
+    private LibraryPath(DoubleBuffer path, double mean, double meanReversion, double shockProb,
+        boolean antithetic) {
+      super(mean, meanReversion, shockProb);
+      this.path = path;
+      this.antithetic = antithetic;
+      this.mean = mean;
+    }
+
+    @Override
+    double get(int time) {
+      return antithetic ? 2 * mean - path.get(time) : path.get(time);
+    }
+
+    @Override
+    int length() {
+      return path.limit() - 1;
+    }
+
+    private static final long serialVersionUID = 1;
+
+  }
+
+}
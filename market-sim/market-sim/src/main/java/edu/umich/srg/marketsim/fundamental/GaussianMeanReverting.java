@@ -1,19 +1,24 @@
 package edu.umich.srg.marketsim.fundamental;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
 import com.google.common.primitives.Ints;
 
 import edu.umich.srg.collect.Sparse;
 import edu.umich.srg.distributions.Binomial;
 import edu.umich.srg.distributions.Gaussian;
+import edu.umich.srg.distributions.Geometric;
 import edu.umich.srg.distributions.Hypergeometric;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.util.PositionalSeed;
-import edu.umich.srg.util.SummStats;
 
 import java.io.Serializable;
 import java.util.AbstractMap;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.Random;
@@ -59,34 +64,74 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
   /** Create a standard gaussian mean reverting fundamental stochastic process. */
   public static GaussianMeanReverting create(Random rand, double mean, double meanReversion,
       double shockVar, double shockProb) {
+    return create(rand, mean, meanReversion, shockVar, shockProb, false);
+  }
+
+  /**
+   * Create a fundamental, and if `antithetic` negate every gaussian shock. With the same random
+   * generator, the antithetic fundamental jumps at the same times, and is the original mirrored
+   * about the mean.
+   */
+  public static GaussianMeanReverting create(Random rand, double mean, double meanReversion,
+      double shockVar, double shockProb, boolean antithetic) {
     if (shockProb == 0) {
       return ConstantFundamental.create(Price.of(mean));
     } else {
       Sampler sampler;
       if (meanReversion == 0) {
-        sampler = new RandomWalk(rand, shockVar);
+        sampler = new RandomWalk(rand, shockVar, antithetic);
       } else if (meanReversion == 1) {
-        sampler = new IidGaussian(rand, mean, shockVar);
+        sampler = new IidGaussian(rand, mean, shockVar, antithetic);
       } else {
-        sampler = new MeanReverting(rand, mean, shockVar, meanReversion);
+        sampler = new MeanReverting(rand, mean, shockVar, meanReversion, antithetic);
       }
       if (shockProb == 1) {
-        return new JumpEvery(mean, sampler);
+        return new JumpEvery(mean, meanReversion, shockVar, sampler);
       } else {
-        return new JumpRandomlyCount(mean, sampler, shockProb, rand);
+        return new JumpRandomlyCount(mean, meanReversion, shockVar, sampler, shockProb, rand);
       }
     }
   }
 
+  /**
+   * Create a fundamental that samples its whole path up to `length` when it's created, so every
+   * query is an array lookup. It has the same distribution as one from `create`, but is sampled
+   * forward in time, so the same random generator gives a different path. It can't be queried
+   * after `length`.
+   */
+  public static GaussianMeanReverting createDense(Random rand, double mean, double meanReversion,
+      double shockVar, double shockProb, long length) {
+    return createDense(rand, mean, meanReversion, shockVar, shockProb, length, false);
+  }
+
+  /** Create a dense fundamental, and if `antithetic` negate every gaussian shock. */
+  public static GaussianMeanReverting createDense(Random rand, double mean, double meanReversion,
+      double shockVar, double shockProb, long length, boolean antithetic) {
+    if (shockProb == 0) {
+      return ConstantFundamental.create(Price.of(mean));
+    } else {
+      return new Dense(rand, mean, meanReversion, shockVar, shockProb, length, antithetic);
+    }
+  }
+
   private abstract static class AbstractGaussianMeanReverting<F extends FundamentalObservation>
       extends GaussianMeanReverting {
 
     private final NavigableMap<Long, F> fundamental;
+    private final double mean;
+    private final double reversion; // Expected fraction of the difference from mean left each step
+    private final double secondMoment; // Fraction of the squared difference left each step
+    private final double stepVariance; // Variance added each step
 
-    private AbstractGaussianMeanReverting(F initial) {
+    private AbstractGaussianMeanReverting(F initial, double mean, double meanReversion,
+        double shockVar, double shockProb) {
       // Put in zero and one, so doubling works
       this.fundamental = new TreeMap<>();
       fundamental.put(0L, initial);
+      this.mean = mean;
+      this.reversion = 1 - shockProb * meanReversion;
+      this.secondMoment = 1 - shockProb + shockProb * (1 - meanReversion) * (1 - meanReversion);
+      this.stepVariance = shockProb * shockVar;
     }
 
     @Override
@@ -133,25 +178,75 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
           .iterator();
     }
 
-    protected Iterable<Entry<Long, F>> getEntriesIterable() {
-      return fundamental.entrySet();
-    }
-
     protected abstract F observeFuture(Entry<Long, F> last, long time);
 
     protected abstract F observeIntermediate(Entry<Long, F> before, Entry<Long, F> after,
         long time);
 
+    @Override
+    public RmsdAccumulator rmsdAccumulator() {
+      return new ExpectedRmsd();
+    }
+
+    /**
+     * Only samples the fundamental when the price changes, and adds the squared difference expected
+     * from there until the next change. The estimate of the final fundamental is a martingale, so
+     * this is unbiased whether or not every step jumps.
+     */
+    private class ExpectedRmsd extends DiscountedRmsd {
+
+      private ExpectedRmsd() {
+        super(AbstractGaussianMeanReverting.this.mean, AbstractGaussianMeanReverting.this.reversion);
+      }
+
+      @Override
+      void addSegment(long start, long end, double price) {
+        getValueAt(TimeStamp.of(start));
+        double diff = fundamental.get(start).price - mean;
+        double offset = mean - price;
+        long steps = end - start;
+
+        // Discounted sums of the expected squared difference from the mean at each step
+        double squaredReversion = reversion * reversion;
+        double fromStart = secondMoment == 0 ? (steps == 1 ? 1 : 0)
+            : Math.pow(secondMoment, steps - 1)
+                * geometricSum(squaredReversion / secondMoment, steps);
+        double fromShocks = secondMoment == 1 ? steps * (steps - 1) / 2d
+            : (geometricSum(squaredReversion, steps) - fromStart) / (1 - secondMoment);
+
+        add(diff * diff * fromStart + stepVariance * fromShocks,
+            2 * offset * diff * steps * Math.pow(reversion, steps - 1), offset * offset * steps,
+            steps);
+      }
+
+    }
+
     private static final long serialVersionUID = 1;
 
   }
 
+  /** Sample a gaussian shock, mirrored about its mean if `antithetic`. */
+  private static double sampleShock(Random rand, double mean, double variance,
+      boolean antithetic) {
+    Gaussian shock = Gaussian.withMeanVariance(mean, variance);
+    return (antithetic ? shock.mirrored() : shock).sample(rand);
+  }
+
+  /** The sum of `ratio^i` for i from 0 until `terms`. */
+  private static double geometricSum(double ratio, long terms) {
+    if (ratio == 1) {
+      return terms;
+    }
+    double logRatio = Math.log(ratio);
+    return Math.expm1(terms * logRatio) / Math.expm1(logRatio);
+  }
+
   private static class JumpEvery extends AbstractGaussianMeanReverting<FundamentalObservation> {
 
     private final Sampler sampler;
 
-    private JumpEvery(double mean, Sampler sampler) {
-      super(new FundamentalObservation(mean));
+    private JumpEvery(double mean, double meanReversion, double shockVar, Sampler sampler) {
+      super(new FundamentalObservation(mean), mean, meanReversion, shockVar, 1);
       this.sampler = sampler;
     }
 
@@ -170,57 +265,6 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
       return new FundamentalObservation(newPrice);
     }
 
-    @Override
-    public double rmsd(Iterator<? extends Sparse.Entry<? extends Number>> prices,
-        TimeStamp finalTime) {
-      if (!prices.hasNext()) {
-        return Double.NaN;
-      }
-      getValueAt(finalTime); // Make sure there's a final time fundamental node
-
-      Iterator<? extends Entry<Long, ? extends Number>> fundamental =
-          getEntriesIterable().iterator();
-
-      SummStats rmsd = SummStats.empty();
-      Entry<Long, ? extends Number> lastFundamental = fundamental.next();
-      Sparse.Entry<? extends Number> lastPrice = prices.next();
-
-      while (lastFundamental.getKey().compareTo(lastPrice.getIndex()) < 0) {
-        lastFundamental = fundamental.next();
-      }
-
-      if (!prices.hasNext()) {
-        double finalEstimate = sampler.getFinalEstimate(lastFundamental.getKey(),
-            lastFundamental.getValue().doubleValue(), finalTime.get());
-        double diff = finalEstimate - lastPrice.getElement().doubleValue();
-        rmsd.accept(diff * diff);
-      } else {
-        while (prices.hasNext()) {
-          Sparse.Entry<? extends Number> nextPrice = prices.next();
-          while (lastFundamental.getKey().compareTo(nextPrice.getIndex()) < 0) {
-            double finalEstimate = sampler.getFinalEstimate(lastFundamental.getKey(),
-                lastFundamental.getValue().doubleValue(), finalTime.get());
-            double diff = finalEstimate - lastPrice.getElement().doubleValue();
-            rmsd.accept(diff * diff);
-            lastFundamental = fundamental.next();
-          }
-          lastPrice = nextPrice;
-        }
-        while (lastFundamental.getKey().compareTo(finalTime.get()) < 0) {
-          double finalEstimate = sampler.getFinalEstimate(lastFundamental.getKey(),
-              lastFundamental.getValue().doubleValue(), finalTime.get());
-          double diff = finalEstimate - lastPrice.getElement().doubleValue();
-          rmsd.accept(diff * diff);
-          lastFundamental = fundamental.next();
-        }
-        double finalEstimate = sampler.getFinalEstimate(lastFundamental.getKey(),
-            lastFundamental.getValue().doubleValue(), finalTime.get());
-        double diff = finalEstimate - lastPrice.getElement().doubleValue();
-        rmsd.accept(diff * diff);
-      }
-      return Math.sqrt(rmsd.getAverage());
-    }
-
     private static final long serialVersionUID = 1;
 
   }
@@ -233,8 +277,9 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
     private final Sampler sampler;
     private final double shockProb;
 
-    private JumpRandomlyCount(double mean, Sampler sampler, double shockProb, Random rand) {
-      super(new JumpFundamentalObservation(mean, 0));
+    private JumpRandomlyCount(double mean, double meanReversion, double shockVar, Sampler sampler,
+        double shockProb, Random rand) {
+      super(new JumpFundamentalObservation(mean, 0), mean, meanReversion, shockVar, shockProb);
       this.shockProb = shockProb;
       this.sampler = sampler;
       this.seed = PositionalSeed.with(rand.nextLong());
@@ -274,20 +319,122 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
       return new JumpFundamentalObservation(newPrice, jumpsBefore);
     }
 
+    private static final long serialVersionUID = 1;
+
+  }
+
+  /** Sample a dense path forward in time, the same way `createDense` does. */
+  static double[] samplePath(Random rand, double mean, double meanReversion, double shockVar,
+      double shockProb, long length, boolean antithetic) {
+    checkArgument(length >= 0 && length < Integer.MAX_VALUE, "Length must fit in an array");
+    double[] path = new double[Ints.checkedCast(length + 1)];
+
+    // Jump to each next shock, the price stays constant in between
+    Geometric gaps = Geometric.withSuccessProbability(shockProb);
+    Gaussian shock = Gaussian.withMeanVariance(0, shockVar);
+    if (antithetic) {
+      shock = shock.mirrored();
+    }
+    double price = mean;
+    int time = 0;
+    path[0] = price;
+    while (true) {
+      long next = time + 1 + Math.min(gaps.sample(rand), length);
+      Arrays.fill(path, time + 1, (int) Math.min(next, length + 1), price);
+      if (next > length) {
+        return path;
+      }
+      time = (int) next;
+      price = (1 - meanReversion) * price + meanReversion * mean + shock.sample(rand);
+      path[time] = price;
+    }
+  }
+
+  /** A fundamental whose whole path was sampled ahead of time. */
+  abstract static class SampledPath extends GaussianMeanReverting {
+
+    private final double mean;
+    private final double reversion; // Expected fraction of the difference from mean left each step
+
+    SampledPath(double mean, double meanReversion, double shockProb) {
+      this.mean = mean;
+      this.reversion = 1 - shockProb * meanReversion;
+    }
+
+    /** The raw fundamental at `time`. */
+    abstract double get(int time);
+
+    /** The last time in the path. */
+    abstract int length();
+
+    @Override
+    public Price getValueAt(TimeStamp time) {
+      int index = Ints.saturatedCast(time.get());
+      checkElementIndex(index, length() + 1, "time (the dense fundamental only covers SimLength)");
+      return Price.of(get(index)).nonnegative();
+    }
+
+    @Override
+    public Iterable<Sparse.Entry<Number>> getFundamentalValues(TimeStamp finalTime) {
+      // Only report the times the price changed
+      int end = (int) Math.min(finalTime.get(), length());
+      List<Sparse.Entry<Number>> values = new ArrayList<>();
+      double last = get(0);
+      values.add(Sparse.immutableEntry(0, Price.of(last)));
+      for (int time = 1; time <= end; ++time) {
+        double price = get(time);
+        if (price != last) {
+          values.add(Sparse.immutableEntry(time, Price.of(price)));
+          last = price;
+        }
+      }
+      return values;
+    }
+
+    /** Exact streaming rmsd, that steps through the path between price changes. */
     @Override
-    public double rmsd(Iterator<? extends Sparse.Entry<? extends Number>> prices,
-        TimeStamp finalTime) {
-      // FIXME This is unimplemented, and doesn't seem super trivial to accomplish
-      return Double.NaN;
+    public RmsdAccumulator rmsdAccumulator() {
+      return new DiscountedRmsd(mean, reversion) {
+        @Override
+        void addSegment(long start, long end, double price) {
+          double offset = mean - price;
+          for (long time = start; time < end; ++time) {
+            double diff = SampledPath.this.get((int) time) - mean;
+            add(diff * diff, 2 * offset * diff, offset * offset, 1);
+          }
+        }
+      };
     }
 
     private static final long serialVersionUID = 1;
 
   }
 
-  private interface Sampler {
+  private static class Dense extends SampledPath {
+
+    private final double[] path;
+
+    private Dense(Random rand, double mean, double meanReversion, double shockVar,
+        double shockProb, long length, boolean antithetic) {
+      super(mean, meanReversion, shockProb);
+      this.path = samplePath(rand, mean, meanReversion, shockVar, shockProb, length, antithetic);
+    }
+
+    @Override
+    double get(int time) {
+      return path[time];
+    }
+
+    @Override
+    int length() {
+      return path.length - 1;
+    }
+
+    private static final long serialVersionUID = 1;
 
-    double getFinalEstimate(long currentTime, double currentFundamental, long finalTime);
+  }
+
+  private interface Sampler {
 
     double getFutureValue(long time, double lastPrice, long jumps);
 
@@ -308,28 +455,28 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
     private final PositionalSeed seed;
     private final Random rand;
     private final double shockVar;
+    private final boolean antithetic;
 
-    private RandomWalk(Random rand, double shockVar) {
+    private RandomWalk(Random rand, double shockVar, boolean antithetic) {
       this.seed = PositionalSeed.with(rand.nextLong());
       this.shockVar = shockVar;
       this.rand = rand;
+      this.antithetic = antithetic;
     }
 
     @Override
     public double getFutureValue(long time, double lastPrice, long jumps) {
       rand.setSeed(seed.getSeed(time));
-      return Gaussian.withMeanVariance(lastPrice, shockVar * jumps).sample(rand);
+      return sampleShock(rand, lastPrice, shockVar * jumps, antithetic);
     }
 
     @Override
     public double getIntermediateValue(long time, double priceBefore, long jumpsBefore,
         double priceAfter, long jumpsAfter) {
       rand.setSeed(seed.getSeed(time));
-      return Gaussian
-          .withMeanVariance(
-              (priceBefore * jumpsAfter + priceAfter * jumpsBefore) / (jumpsBefore + jumpsAfter),
-              jumpsBefore * jumpsAfter / (double) (jumpsBefore + jumpsAfter) * shockVar)
-          .sample(rand);
+      return sampleShock(rand,
+          (priceBefore * jumpsAfter + priceAfter * jumpsBefore) / (jumpsBefore + jumpsAfter),
+          jumpsBefore * jumpsAfter / (double) (jumpsBefore + jumpsAfter) * shockVar, antithetic);
     }
 
     // Calculated using mathematica
@@ -354,11 +501,6 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
 
     private static final long serialVersionUID = 1;
 
-    @Override
-    public double getFinalEstimate(long currentTime, double currentFundamental, long finalTime) {
-      return currentFundamental;
-    }
-
   }
 
   private static class IidGaussian implements Sampler, Serializable {
@@ -367,9 +509,10 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
     private final Random rand;
     private final Gaussian dist;
 
-    private IidGaussian(Random rand, double mean, double shockVar) {
+    private IidGaussian(Random rand, double mean, double shockVar, boolean antithetic) {
       this.seed = PositionalSeed.with(rand.nextLong());
-      this.dist = Gaussian.withMeanVariance(mean, shockVar);
+      Gaussian dist = Gaussian.withMeanVariance(mean, shockVar);
+      this.dist = antithetic ? dist.mirrored() : dist;
       this.rand = rand;
     }
 
@@ -396,12 +539,6 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
 
     private static final long serialVersionUID = 1;
 
-    @Override
-    public double getFinalEstimate(long currentTime, double currentFundamental, long finalTime) {
-      // TODO Auto-generated method stub
-      return 0;
-    }
-
   }
 
   private static class MeanReverting implements Sampler, Serializable {
@@ -411,18 +548,16 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
     private final double shockVar;
     private final double mean;
     private final double kappac;
+    private final boolean antithetic;
 
-    private MeanReverting(Random rand, double mean, double shockVar, double meanReversion) {
+    private MeanReverting(Random rand, double mean, double shockVar, double meanReversion,
+        boolean antithetic) {
       this.seed = PositionalSeed.with(rand.nextLong());
       this.mean = mean;
       this.shockVar = shockVar;
       this.kappac = 1 - meanReversion;
       this.rand = rand;
-    }
-
-    public double getFinalEstimate(long currentTime, double currentFundamental, long finalTime) {
-      double kappacToPower = Math.pow(kappac, finalTime - currentTime);
-      return (1 - kappacToPower) * mean + kappacToPower * currentFundamental;
+      this.antithetic = antithetic;
     }
 
     @Override
@@ -431,7 +566,7 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
       double kappacToPower = Math.pow(kappac, jumps);
       double stepMean = (1 - kappacToPower) * mean + kappacToPower * lastPrice;
       double stepVar = (1 - kappacToPower * kappacToPower) / (1 - kappac * kappac);
-      return Gaussian.withMeanVariance(stepMean, shockVar * stepVar).sample(rand);
+      return sampleShock(rand, stepMean, shockVar * stepVar, antithetic);
     }
 
     @Override
@@ -448,7 +583,7 @@ public abstract class GaussianMeanReverting implements Fundamental, Serializable
       double stepVariance = (kappacPowerBefore * kappacPowerBefore - 1)
           * (kappacPowerAfter * kappacPowerAfter - 1) / ((kappac * kappac - 1)
               * (kappacPowerBefore * kappacPowerBefore * kappacPowerAfter * kappacPowerAfter - 1));
-      return Gaussian.withMeanVariance(stepMean, stepVariance * shockVar).sample(rand);
+      return sampleShock(rand, stepMean, stepVariance * shockVar, antithetic);
     }
 
     // Calculated using mathematica.
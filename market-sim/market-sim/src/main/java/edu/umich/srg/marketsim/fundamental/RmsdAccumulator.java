@@ -0,0 +1,20 @@
+package edu.umich.srg.marketsim.fundamental;
+
+import edu.umich.srg.marketsim.TimeStamp;
+
+/**
+ * The rmsd between a fundamental and a price series that's given one price change at a time, so
+ * the series itself doesn't need to be kept.
+ */
+public interface RmsdAccumulator {
+
+  /**
+   * The price changed to `price` at `time`. Times can't decrease, and a price at the same time as
+   * the last one replaces it.
+   */
+  void accept(long time, double price);
+
+  /** The rmsd from the first price until `finalTime`, treating prices as a step function. */
+  double get(TimeStamp finalTime);
+
+}
@@ -1,102 +1,262 @@
 package edu.umich.srg.marketsim.market;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.Splitter;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 
-import edu.umich.srg.collect.Sparse;
-import edu.umich.srg.collect.SparseArrayList;
+import edu.umich.srg.collect.TimeSeries;
+import edu.umich.srg.egtaonline.spec.Spec;
 import edu.umich.srg.fourheap.FourHeap;
 import edu.umich.srg.fourheap.MatchedOrders;
 import edu.umich.srg.fourheap.Order;
 import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.fourheap.OrderBook;
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
+import edu.umich.srg.marketsim.Keys.Pricing;
+import edu.umich.srg.marketsim.Keys.Sweep;
+import edu.umich.srg.marketsim.Keys.SweepClearIntervals;
+import edu.umich.srg.marketsim.Keys.SweepMode;
+import edu.umich.srg.marketsim.Keys.SweepPricings;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.agent.Agent;
-import edu.umich.srg.marketsim.agent.HBLAgent;
-import edu.umich.srg.marketsim.agent.MarkovAgent;
-import edu.umich.srg.marketsim.agent.NSYLAgent;
-import edu.umich.srg.marketsim.agent.YSYLAgent;
-import edu.umich.srg.marketsim.fundamental.Fundamental;
+import edu.umich.srg.marketsim.agent.Agent.TradeRole;
+import edu.umich.srg.marketsim.fundamental.RmsdAccumulator;
+import edu.umich.srg.util.SummStats;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Base class for all markets. This class provides almost all market functionality that one should
  * need for creating a market. The only thing an abstract market needs is a pricing rule. That is,
  * given a set of matched orders, what price is assigned to each transaction. By default the only
  * methods that schedules more activities is a clear and a quoteUpdate.
+ *
+ * <p>
+ * Orders that leave the order book are retired, and only released to the order book's pool once no
+ * market action is in progress, since the views still read them after the market returns.
  */
 abstract class AbstractMarket implements Market, Serializable {
 
+  /** The default trade class of a transaction, indexed by the trade roles of buyer and seller. */
+  private static final int[][] defaultTradeClasses = classifyAll();
+
   final Sim sim;
-  private final FourHeap<Price> orderbook;
+  private final OrderBook<Price> orderbook;
   private final PricingRule pricing;
 
   // Bookkeeping
   private final Collection<AbstractMarketView> views;
+  private final Map<MarketData, List<AbstractMarketView>> subscribers;
+  private final Map<MarketData, Map<TimeStamp, List<AbstractMarketView>>> latentSubscribers;
+  private final Map<TimeStamp, List<Consumer<Quote>>> quoteListeners;
   private final Map<Order<Price>, AbstractMarketView> orderOwners;
-  private final Sparse<Number> prices;
-  private final Sparse<Number> zi_prices;
-  private final Sparse<Number> hbl_prices;
-  private final Sparse<Number> zi_hbl_prices;
-  private final Sparse<Number> spoofing_prices;
-  private final Sparse<Number> midprices;
-  private final Sparse<Number> spreads;
+  private Quote quote;
+
+  // Features, only one of the series or the summaries is recorded depending on the level
+  private final FeatureLevel featureLevel;
+  private final TimeSeries prices;
+  private final TimeSeries[] classPrices;
+  private int[][] tradeClasses;
+  private final TimeSeries midprices;
+  private final TimeSeries spreads;
+  private final SummStats priceStats;
+  private final SummStats spreadStats;
+  private final RmsdAccumulator priceRmsd;
+  private final RmsdAccumulator midquoteRmsd;
+  private long lastTransactionTime;
+
+  // Counterfactual markets that see the same orders
+  private final List<ShadowCallMarket> shadows;
+
+  // Pooling
+  private final List<Order<Price>> retired;
+  private int actionDepth;
 
   AbstractMarket(Sim sim, PricingRule pricing) {
+    this(sim, pricing, new FourHeap<>());
+  }
+
+  AbstractMarket(Sim sim, PricingRule pricing, OrderBook<Price> orderbook) {
     this.sim = sim;
-    this.orderbook = new FourHeap<>();
+    this.orderbook = orderbook;
     this.pricing = pricing;
+    this.shadows = new ArrayList<>();
+    this.retired = new ArrayList<>();
+    this.actionDepth = 0;
 
     this.views = new ArrayList<>();
+    this.subscribers = new EnumMap<>(MarketData.class);
+    this.latentSubscribers = new EnumMap<>(MarketData.class);
+    for (MarketData kind : MarketData.values()) {
+      subscribers.put(kind, new ArrayList<>());
+      latentSubscribers.put(kind, new LinkedHashMap<>());
+    }
+    this.quoteListeners = new LinkedHashMap<>();
     this.orderOwners = new HashMap<>();
-    this.prices = SparseArrayList.empty();
-    this.zi_prices = SparseArrayList.empty();
-    this.hbl_prices = SparseArrayList.empty();
-    this.zi_hbl_prices = SparseArrayList.empty();
-    this.spoofing_prices = SparseArrayList.empty();
-    this.midprices = SparseArrayList.empty();
-    this.spreads = SparseArrayList.empty();
+    this.quote = Quote.empty();
+    this.featureLevel = sim.getFeatureLevel();
+    this.prices = TimeSeries.empty();
+    this.tradeClasses = defaultTradeClasses;
+    this.classPrices = new TimeSeries[TradeClass.values().length];
+    for (int i = 0; i < classPrices.length; ++i) {
+      classPrices[i] = TimeSeries.empty();
+    }
+    // Quote series only record changes
+    this.midprices = TimeSeries.compressed();
+    this.spreads = TimeSeries.compressed();
+    this.priceStats = SummStats.empty();
+    this.spreadStats = SummStats.empty();
+    // Prices are compared to the fundamental as they happen, so the series don't need to be kept
+    if (featureLevel != FeatureLevel.NONE) {
+      this.priceRmsd = sim.getFundamental().rmsdAccumulator();
+      this.midquoteRmsd = sim.getFundamental().rmsdAccumulator();
+    } else {
+      this.priceRmsd = null;
+      this.midquoteRmsd = null;
+    }
+    this.lastTransactionTime = -1;
+  }
+
+  /**
+   * Add a shadow call market for every setting of the sweep keys in `spec` when sweeping
+   * counterfactually. Any clear interval or pricing that's swept over is taken from the sweep keys.
+   * Shadows only report series, so none are added unless every feature is collected.
+   */
+  void addShadows(Spec spec) {
+    if (spec.get(Sweep.class) != SweepMode.COUNTERFACTUAL || featureLevel != FeatureLevel.FULL) {
+      return;
+    }
+    Iterable<Double> pricings = Iterables.isEmpty(spec.get(SweepPricings.class))
+        ? ImmutableList.of(spec.get(Pricing.class)) : spec.get(SweepPricings.class);
+    for (long clearInterval : spec.get(SweepClearIntervals.class)) {
+      for (double pricing : pricings) {
+        shadows.add(new ShadowCallMarket(sim, pricing, clearInterval));
+      }
+    }
   }
 
   Order<Price> submitOrder(AbstractMarketView submitter, OrderType buyOrSell, Price price,
       int quantity) {
     Order<Price> order = orderbook.submit(buyOrSell, price, quantity);
     orderOwners.put(order, submitter);
-
-    // Notify all agents of order submitted
-    for (AbstractMarketView view : views) {
-      view.orderSubmittedToMarket(buyOrSell, price, quantity);
+    for (ShadowCallMarket shadow : shadows) {
+      shadow.submitOrder(order, buyOrSell, price, quantity);
     }
+
+    publish(MarketData.SUBMISSIONS, buyOrSell, price, quantity,
+        AbstractMarketView::orderSubmittedToMarket);
     return order;
   }
 
   void withdrawOrder(Order<Price> order, int quantity) {
     orderbook.withdraw(order, quantity);
+    for (ShadowCallMarket shadow : shadows) {
+      shadow.withdrawOrder(order, quantity);
+    }
     if (order.getQuantity() == 0) {
       orderOwners.remove(order);
+      retire(order);
     }
 
-    // Notify all agents of order withdrawn
-    for (AbstractMarketView view : views) {
-      view.orderWithdrawnFromMarket(order.getOrderType(), order.getPrice(), quantity);
+    publish(MarketData.WITHDRAWALS, order.getOrderType(), order.getPrice(), quantity,
+        AbstractMarketView::orderWithdrawnFromMarket);
+  }
+
+  /**
+   * Apply a batch of withdrawals and then submissions from one view. Every view is notified of the
+   * whole batch in a single pass, and subclasses only need to clear or update the quote once the
+   * batch has been applied.
+   */
+  void submitBatch(AbstractMarketView submitter, Map<Order<Price>, Integer> withdrawals,
+      Map<OrderRecord, Integer> submissions) {
+    for (Entry<Order<Price>, Integer> withdrawal : withdrawals.entrySet()) {
+      Order<Price> order = withdrawal.getKey();
+      orderbook.withdraw(order, withdrawal.getValue());
+      for (ShadowCallMarket shadow : shadows) {
+        shadow.withdrawOrder(order, withdrawal.getValue());
+      }
+      if (order.getQuantity() == 0) {
+        orderOwners.remove(order);
+        retire(order);
+      }
+    }
+
+    for (Entry<OrderRecord, Integer> submission : submissions.entrySet()) {
+      OrderRecord record = submission.getKey();
+      Order<Price> order = orderbook.submit(record.buyOrSell, record.price, submission.getValue());
+      orderOwners.put(order, submitter);
+      for (ShadowCallMarket shadow : shadows) {
+        shadow.submitOrder(order, record.buyOrSell, record.price, submission.getValue());
+      }
+      // Owner must know the order before the clear, in case it transacts
+      submitter.batchOrderSubmitted(record, order);
+    }
+
+    // Notify subscribers of the batch
+    for (Entry<Order<Price>, Integer> withdrawal : withdrawals.entrySet()) {
+      Order<Price> order = withdrawal.getKey();
+      publish(MarketData.WITHDRAWALS, order.getOrderType(), order.getPrice(), withdrawal.getValue(),
+          AbstractMarketView::orderWithdrawnFromMarket);
+    }
+    for (Entry<OrderRecord, Integer> submission : submissions.entrySet()) {
+      OrderRecord record = submission.getKey();
+      publish(MarketData.SUBMISSIONS, record.buyOrSell, record.price, submission.getValue(),
+          AbstractMarketView::orderSubmittedToMarket);
+    }
+  }
+
+  /**
+   * Send a market wide event to the views subscribed to it. A single notification is created for
+   * the event, and only if anyone is subscribed.
+   */
+  private void publish(MarketData kind, OrderType buyOrSell, Price price, int quantity,
+      BiConsumer<AbstractMarketView, OrderNotification> delivery) {
+    if (subscribers.get(kind).isEmpty() && latentSubscribers.get(kind).isEmpty()) {
+      return;
+    }
+    deliver(kind, new OrderNotification(buyOrSell, price, quantity, sim.getCurrentTime()),
+        delivery);
+  }
+
+  /**
+   * Deliver information to immediate subscribers now. Latent subscribers are grouped by latency,
+   * and each group gets it in a single delayed event.
+   */
+  private <T> void deliver(MarketData kind, T info, BiConsumer<AbstractMarketView, T> delivery) {
+    for (AbstractMarketView view : subscribers.get(kind)) {
+      delivery.accept(view, info);
+    }
+    for (Entry<TimeStamp, List<AbstractMarketView>> group : latentSubscribers.get(kind)
+        .entrySet()) {
+      sim.scheduleEachIn(group.getKey(), group.getValue(), view -> delivery.accept(view, info));
     }
   }
 
@@ -109,122 +269,259 @@ abstract class AbstractMarket implements Market, Serializable {
 
       // Notify buyer
       Order<Price> buy = matched.getBuy();
-      orderOwners.get(buy).transacted(buy, price, matched.getQuantity());
+      AbstractMarketView buyer = orderOwners.get(buy);
+      buyer.transacted(buy, price, matched.getQuantity());
 
       // Notify seller
       Order<Price> sell = matched.getSell();
-      orderOwners.get(sell).transacted(sell, price, matched.getQuantity());
+      AbstractMarketView seller = orderOwners.get(sell);
+      seller.transacted(sell, price, matched.getQuantity());
 
-      // Notify all agents of transaction
-      for (AbstractMarketView view : views) {
-        view.transaction(price, matched.getQuantity(), buy, sell);
-      }
+      // Notify subscribers of the transaction, typed by the order that was in the book first
+      OrderType buyOrSell =
+          buy.getSubmitTime() < sell.getSubmitTime() ? buy.getOrderType() : sell.getOrderType();
+      publish(MarketData.TRANSACTIONS, buyOrSell, price, matched.getQuantity(),
+          AbstractMarketView::transaction);
 
-      // Classify trades happened
-      if (orderOwners.get(buy).getAgent().getClass().equals(MarkovAgent.class)
-          && orderOwners.get(sell).getAgent().getClass().equals(MarkovAgent.class)) {
-        zi_prices.add(sim.getCurrentTime().get(), price);
-      } else if (orderOwners.get(buy).getAgent().getClass().equals(HBLAgent.class)
-          && orderOwners.get(sell).getAgent().getClass().equals(HBLAgent.class)) {
-        hbl_prices.add(sim.getCurrentTime().get(), price);
-      } else if (orderOwners.get(buy).getAgent().getClass().equals(YSYLAgent.class)
-          || orderOwners.get(sell).getAgent().getClass().equals(YSYLAgent.class)
-          || orderOwners.get(buy).getAgent().getClass().equals(NSYLAgent.class)
-          || orderOwners.get(sell).getAgent().getClass().equals(NSYLAgent.class)) {
-        spoofing_prices.add(sim.getCurrentTime().get(), price);
-      } else {
-        zi_hbl_prices.add(sim.getCurrentTime().get(), price);
-      }
-      prices.add(sim.getCurrentTime().get(), price);
+      recordTransaction(buyer, seller, price);
     }
+
+    // Orders can appear in several matches, so these are only retired once every match is priced
+    for (MatchedOrders<Price> matched : matches) {
+      retireIfFilled(matched.getBuy());
+      retireIfFilled(matched.getSell());
+    }
+    orderbook.releaseMatches(matches);
   }
 
-  void updateQuote() {
-    Quote quote = new Quote(orderbook.bidQuote(), orderbook.getBidDepth(), orderbook.askQuote(),
-        orderbook.getAskDepth());
-    dispactInformation(view -> view.setQuote(quote));
+  private void recordTransaction(AbstractMarketView buyer, AbstractMarketView seller, Price price) {
+    if (featureLevel == FeatureLevel.NONE) {
+      return;
+    }
 
-    // add to midprices only when there is a change in midquotes
-    if (midprices.size() == 0) {
-      if (quote.isDefined()) {
-        midprices.add(sim.getCurrentTime().get(), quote.getMidquote());
-      }
-    } else if (!((SparseArrayList<Number>) midprices).getLast().getElement()
-        .equals(quote.getMidquote())) {
-      // when quote is undefined, the midquote of that time stamp is simply the previous midquote
-      if (quote.isDefined()) {
-        midprices.add(sim.getCurrentTime().get(), quote.getMidquote());
-      }
+    long time = sim.getCurrentTime().get();
+    double value = price.doubleValue();
+    priceRmsd.accept(time, value);
+    // Transaction prices take the place of the midquote at the time they happened
+    midquoteRmsd.accept(time, value);
+    lastTransactionTime = time;
+
+    if (featureLevel == FeatureLevel.SUMMARY) {
+      priceStats.accept(value);
+    } else {
+      classPrices[tradeClasses[buyer.tradeRole][seller.tradeRole]].add(time, value);
+      prices.add(time, value);
     }
+  }
 
-    // add to spreads only when there is a change in spreads
-    if (spreads.size() == 0) {
-      if (quote.isDefined()) {
-        spreads.add(sim.getCurrentTime().get(), quote.getSpread());
+  /**
+   * Override the class trades between some roles are recorded under. Each entry has the form
+   * "BUYER:SELLER:CLASS", with underscores in names written as '.'s, e.g. "ZI:SPOOFER:ZI.HBL".
+   */
+  void overrideTradeClasses(Iterable<String> overrides) {
+    if (Iterables.isEmpty(overrides)) {
+      return;
+    }
+    int[][] classes = new int[defaultTradeClasses.length][];
+    for (int i = 0; i < classes.length; ++i) {
+      classes[i] = defaultTradeClasses[i].clone();
+    }
+    for (String override : overrides) {
+      List<String> parts = Splitter.on(':').splitToList(override);
+      checkArgument(parts.size() == 3, "trade class override \"%s\" isn't BUYER:SELLER:CLASS",
+          override);
+      TradeRole buyer = TradeRole.valueOf(parts.get(0).replace('.', '_'));
+      TradeRole seller = TradeRole.valueOf(parts.get(1).replace('.', '_'));
+      classes[buyer.ordinal()][seller.ordinal()] =
+          TradeClass.valueOf(parts.get(2).replace('.', '_')).ordinal();
+    }
+    tradeClasses = classes;
+  }
+
+  private static int[][] classifyAll() {
+    TradeRole[] roles = TradeRole.values();
+    int[][] classes = new int[roles.length][roles.length];
+    for (TradeRole buyer : roles) {
+      for (TradeRole seller : roles) {
+        classes[buyer.ordinal()][seller.ordinal()] = classify(buyer, seller).ordinal();
       }
-    } else if (!((SparseArrayList<Number>) spreads).getLast().getElement()
-        .equals(quote.getSpread())) {
-      // when quote is undefined, the spread of that time stamp is simply the previous spread
-      if (quote.isDefined()) {
-        spreads.add(sim.getCurrentTime().get(), quote.getSpread());
+    }
+    return classes;
+  }
+
+  /** The default class of a trade between a buyer and seller with the given roles. */
+  private static TradeClass classify(TradeRole buyer, TradeRole seller) {
+    if (buyer == TradeRole.ZI && seller == TradeRole.ZI) {
+      return TradeClass.ZI;
+    } else if (buyer == TradeRole.HBL && seller == TradeRole.HBL) {
+      return TradeClass.HBL;
+    } else if (buyer == TradeRole.SPOOFER || seller == TradeRole.SPOOFER) {
+      return TradeClass.SPOOFING;
+    } else {
+      return TradeClass.ZI_HBL;
+    }
+  }
+
+  private void retireIfFilled(Order<Price> order) {
+    if (order.getQuantity() == 0 && orderOwners.remove(order) != null) {
+      retire(order);
+    }
+  }
+
+  private void retire(Order<Price> order) {
+    for (ShadowCallMarket shadow : shadows) {
+      shadow.orderRetired(order);
+    }
+    retired.add(order);
+  }
+
+  /** Called at the start of any action that can modify the order book. */
+  void beginAction() {
+    actionDepth++;
+  }
+
+  /**
+   * Called at the end of any action that can modify the order book. Actions can be nested when
+   * agents respond to notifications, so retired orders are only released by the outermost one.
+   */
+  void endAction() {
+    if (--actionDepth == 0) {
+      for (Order<Price> order : retired) {
+        orderbook.release(order);
       }
+      retired.clear();
     }
   }
 
-  private void dispactInformation(Consumer<AbstractMarketView> action) {
-    for (AbstractMarketView view : views) {
-      action.accept(view);
+  /**
+   * Take a new snapshot of the quote. Immediate views all read this snapshot when asked, so only
+   * views that subscribed to quotes, or that need to delay it, are told about the update.
+   */
+  void updateQuote() {
+    quote = new Quote(orderbook.bidQuote(), orderbook.getBidDepth(), orderbook.askQuote(),
+        orderbook.getAskDepth());
+    deliver(MarketData.QUOTES, quote, AbstractMarketView::quoteUpdated);
+    for (Entry<TimeStamp, List<Consumer<Quote>>> group : quoteListeners.entrySet()) {
+      if (group.getKey().equals(TimeStamp.ZERO)) {
+        group.getValue().forEach(listener -> listener.accept(quote));
+      } else {
+        Quote delayed = quote;
+        sim.scheduleEachIn(group.getKey(), group.getValue(), listener -> listener.accept(delayed));
+      }
+    }
+
+    // when quote is undefined, the midquote and spread are simply the previous ones
+    if (!quote.isDefined() || featureLevel == FeatureLevel.NONE) {
+      return;
+    }
+    long time = sim.getCurrentTime().get();
+    if (time != lastTransactionTime) {
+      midquoteRmsd.accept(time, quote.getMidquote());
+    }
+    if (featureLevel == FeatureLevel.FULL) {
+      midprices.add(time, quote.getMidquote());
+      spreads.add(time, quote.getSpread());
+    } else {
+      spreadStats.accept(quote.getSpread());
     }
   }
 
   @Override
-  public FourHeap<Price> getOrderBook() {
+  public OrderBook<Price> getOrderBook() {
     return orderbook;
   }
 
+  @Override
+  public void addQuoteListener(TimeStamp latency, Consumer<Quote> listener) {
+    quoteListeners.computeIfAbsent(latency, l -> new ArrayList<>()).add(listener);
+    listener.accept(quote);
+  }
+
   @Override
   public Iterable<Entry<Agent, AgentInfo>> getAgentInfo() {
-    return Iterables.transform(views, v -> Maps.<Agent, AgentInfo>immutableEntry(v.getAgent(),
-        ImmutableAgentInfo.of(v.getProfit(), v.getHoldings(), v.getSubmissions())));
+    return Iterables.transform(views, AbstractMarket::agentInfo);
+  }
+
+  @Override
+  public Iterable<Entry<Agent, AgentInfo>> getAgentInfo(Set<Agent> agents) {
+    return Iterables.transform(Iterables.filter(views, v -> agents.contains(v.getAgent())),
+        AbstractMarket::agentInfo);
+  }
+
+  private static Entry<Agent, AgentInfo> agentInfo(AbstractMarketView view) {
+    return Maps.immutableEntry(view.getAgent(),
+        ImmutableAgentInfo.of(view.getProfit(), view.getHoldings(), view.getSubmissions()));
   }
 
   @Override
-  public MarketView getView(Agent agent, TimeStamp latency) {
-    AbstractMarketView view = latency.equals(TimeStamp.ZERO)
-        ? new AbstractImmediateMarketView(agent) : new AbstractLatentMarketView(agent, latency);
+  public MarketView getView(Agent agent, TimeStamp latency, Set<MarketData> subscriptions) {
+    AbstractMarketView view;
+    if (latency.equals(TimeStamp.ZERO)) {
+      view = new AbstractImmediateMarketView(agent);
+      for (MarketData kind : subscriptions) {
+        subscribers.get(kind).add(view);
+      }
+    } else {
+      view = new AbstractLatentMarketView(agent, latency,
+          subscriptions.contains(MarketData.QUOTES));
+      // Latent views keep their own delayed copy of the quote, so they need every update. They
+      // don't report market wide submissions or withdrawals.
+      Set<MarketData> kinds = EnumSet.of(MarketData.QUOTES);
+      if (subscriptions.contains(MarketData.TRANSACTIONS)) {
+        kinds.add(MarketData.TRANSACTIONS);
+      }
+      for (MarketData kind : kinds) {
+        latentSubscribers.get(kind).computeIfAbsent(latency, l -> new ArrayList<>()).add(view);
+      }
+    }
     views.add(view);
     return view;
   }
 
   @Override
-  public JsonObject getFeatures(Fundamental fundamental) {
+  public JsonObject getFeatures() {
     JsonObject features = new JsonObject();
-    Iterator<edu.umich.srg.collect.Sparse.Entry<Number>> iterator = prices.iterator();
-    while (iterator.hasNext()) {
-      Sparse.Entry<? extends Number> temp = iterator.next();
-      midprices.add((edu.umich.srg.collect.Sparse.Entry<Number>) temp);
-    }
-
-    features.add("prices", convertSparseData(prices));
-    features.add("zi_prices", convertSparseData(zi_prices));
-    features.add("hbl_prices", convertSparseData(hbl_prices));
-    features.add("zi_hbl_prices", convertSparseData(zi_hbl_prices));
-    features.add("spoofing_prices", convertSparseData(spoofing_prices));
-    features.addProperty("price_rmsd", fundamental.rmsd(prices, sim.getCurrentTime()));
-    features.addProperty("midquotes_rmsd", fundamental.rmsd(midprices, sim.getCurrentTime()));
-    features.add("midquotes", convertSparseData(midprices));
-    features.add("spreads", convertSparseData(spreads));
+    if (featureLevel == FeatureLevel.SUMMARY) {
+      features.addProperty("transactions", priceStats.getCount());
+      features.addProperty("price_mean", priceStats.getAverage());
+      features.addProperty("price_stddev", priceStats.getStandardDeviation());
+      features.addProperty("spread_mean", spreadStats.getAverage());
+      features.addProperty("price_rmsd", priceRmsd.get(sim.getCurrentTime()));
+      features.addProperty("midquotes_rmsd", midquoteRmsd.get(sim.getCurrentTime()));
+      return features;
+    } else if (featureLevel != FeatureLevel.FULL) {
+      return features;
+    }
+
+    // Transaction prices take the place of the midquote at the time they happened
+    TimeSeries midquotes = TimeSeries.merge(midprices, prices);
+
+    features.add("prices", convertSeries(prices));
+    for (TradeClass tradeClass : TradeClass.values()) {
+      features.add(tradeClass.feature, convertSeries(classPrices[tradeClass.ordinal()]));
+    }
+    features.addProperty("price_rmsd", priceRmsd.get(sim.getCurrentTime()));
+    features.addProperty("midquotes_rmsd", midquoteRmsd.get(sim.getCurrentTime()));
+    features.add("midquotes", convertSeries(midquotes));
+    features.add("spreads", convertSeries(spreads));
+
+    if (!shadows.isEmpty()) {
+      JsonObject shadowFeatures = new JsonObject();
+      for (ShadowCallMarket shadow : shadows) {
+        shadowFeatures.add(shadow.getName(), shadow.getFeatures());
+      }
+      features.add("shadows", shadowFeatures);
+    }
 
     return features;
   }
 
-  private static JsonArray convertSparseData(
-      Iterable<? extends Sparse.Entry<? extends Number>> data) {
+  static JsonArray convertSeries(TimeSeries data) {
     JsonArray json = new JsonArray();
-    for (Sparse.Entry<? extends Number> obs : data) {
+    for (int i = 0; i < data.size(); ++i) {
       JsonArray point = new JsonArray();
-      point.add(new JsonPrimitive(obs.getIndex()));
-      point.add(new JsonPrimitive(obs.getElement().doubleValue()));
+      point.add(new JsonPrimitive(data.getTime(i)));
+      point.add(new JsonPrimitive(data.getValue(i)));
       json.add(point);
     }
     return json;
@@ -235,17 +532,46 @@ abstract class AbstractMarket implements Market, Serializable {
     return "CDA " + Integer.toString(System.identityHashCode(this), 36).toUpperCase();
   }
 
+  /** The series transactions are recorded in, besides all prices, in feature order. */
+  private enum TradeClass {
+    ZI("zi_prices"), HBL("hbl_prices"), ZI_HBL("zi_hbl_prices"), SPOOFING("spoofing_prices");
+
+    private final String feature;
+
+    TradeClass(String feature) {
+      this.feature = feature;
+    }
+  }
+
   abstract class AbstractMarketView implements MarketView, Serializable {
 
-    abstract void setQuote(Quote quote);
+    // The ordinal of the agent's trade role, fixed when the view is created
+    private final int tradeRole;
+
+    AbstractMarketView(Agent agent) {
+      this.tradeRole = agent.getTradeRole().ordinal();
+    }
+
+    /*
+     * Market wide information is passed to views when it should reach the agent, so latent views
+     * already have their latency applied.
+     */
+
+    abstract void quoteUpdated(Quote quote);
 
     abstract void transacted(Order<Price> order, Price price, int quantity);
 
-    abstract void transaction(Price price, int quantity, Order<Price> buy, Order<Price> sell);
+    abstract void transaction(OrderNotification notification);
+
+    abstract void orderSubmittedToMarket(OrderNotification notification);
 
-    abstract void orderSubmittedToMarket(OrderType buyOrSell, Price price, int quantity);
+    abstract void orderWithdrawnFromMarket(OrderNotification notification);
 
-    abstract void orderWithdrawnFromMarket(OrderType buyOrSell, Price price, int quantity);
+    /** Called by the market when an order from this view's batch enters the order book. */
+    abstract void batchOrderSubmitted(OrderRecord record, Order<Price> order);
+
+    /** Send the withdrawals and submissions of a batch to the market. */
+    abstract void executeBatch(List<OrderRecord> withdrawals, List<OrderRecord> submissions);
 
     abstract Agent getAgent();
 
@@ -253,12 +579,56 @@ abstract class AbstractMarket implements Market, Serializable {
 
     abstract int getTrueHoldings();
 
+    @Override
+    public OrderBatch createBatch() {
+      return new ViewBatch();
+    }
+
     private static final long serialVersionUID = 1730831537473428295L;
 
+    private class ViewBatch implements OrderBatch {
+
+      private final List<OrderRecord> withdrawals;
+      private final List<OrderRecord> submissions;
+      private boolean executed;
+
+      private ViewBatch() {
+        this.withdrawals = new ArrayList<>();
+        this.submissions = new ArrayList<>();
+        this.executed = false;
+      }
+
+      @Override
+      public void withdrawOrder(OrderRecord record) {
+        checkState(!executed, "Batch was already executed");
+        withdrawals.add(record);
+      }
+
+      @Override
+      public OrderRecord submitOrder(OrderType buyOrSell, Price price, int quantity) {
+        checkState(!executed, "Batch was already executed");
+        checkArgument(quantity > 0, "Orders must have positive quantity");
+        OrderRecord record = new OrderRecord(AbstractMarketView.this, buyOrSell, price, quantity);
+        submissions.add(record);
+        return record;
+      }
+
+      @Override
+      public void execute() {
+        checkState(!executed, "Batch was already executed");
+        executed = true;
+        if (!withdrawals.isEmpty() || !submissions.isEmpty()) {
+          executeBatch(withdrawals, submissions);
+        }
+      }
+
+    }
+
   }
 
   class AbstractLatentMarketView extends AbstractMarketView {
     private final TimeStamp latency;
+    private final boolean notifyQuotes;
     private Quote quote;
     private final Agent agent;
     private double profit;
@@ -269,8 +639,10 @@ abstract class AbstractMarket implements Market, Serializable {
     private Set<OrderRecord> observedOrders;
     private final BiMap<OrderRecord, Order<Price>> recordMap;
 
-    AbstractLatentMarketView(Agent agent, TimeStamp latency) {
+    AbstractLatentMarketView(Agent agent, TimeStamp latency, boolean notifyQuotes) {
+      super(agent);
       this.latency = latency;
+      this.notifyQuotes = notifyQuotes;
       this.quote = Quote.empty();
       this.agent = agent;
       this.profit = 0;
@@ -283,21 +655,16 @@ abstract class AbstractMarket implements Market, Serializable {
     }
 
     @Override
-    void setQuote(Quote quote) {
-      AbstractMarket.this.sim.scheduleIn(latency, () -> {
-        this.quote = quote;
+    void quoteUpdated(Quote quote) {
+      this.quote = quote;
+      if (notifyQuotes) {
         agent.notifyQuoteUpdated(this);
-      });
+      }
     }
 
     @Override
-    void transaction(Price tranPrice, int tranQuantity, Order<Price> buy, Order<Price> sell) {
-      OrderType buyOrSell =
-          buy.getSubmitTime() < sell.getSubmitTime() ? buy.getOrderType() : sell.getOrderType();
-      OrderNotification notification =
-          new OrderNotification(buyOrSell, tranPrice, tranQuantity, sim.getCurrentTime());
-      AbstractMarket.this.sim.scheduleIn(latency,
-          () -> agent.notifyTransaction(this, notification));
+    void transaction(OrderNotification notification) {
+      agent.notifyTransaction(this, notification);
     }
 
     @Override
@@ -311,9 +678,11 @@ abstract class AbstractMarket implements Market, Serializable {
       observedOrders.add(record);
 
       AbstractMarket.this.sim.scheduleIn(latency, () -> {
-        Order<Price> order = AbstractMarket.this.submitOrder(this, buyOrSell, price, quantity);
-        submissions += quantity;
-        recordMap.put(record, order);
+        beginAction();
+        // Submitted as a batch so the record is known before the order can transact
+        AbstractMarket.this.submitBatch(this, ImmutableMap.of(),
+            ImmutableMap.of(record, quantity));
+        endAction();
 
         AbstractMarket.this.sim.scheduleIn(latency, () -> agent.notifyOrderSubmitted(record));
       });
@@ -331,6 +700,7 @@ abstract class AbstractMarket implements Market, Serializable {
           return; // This will happen if the order transacted, but hasn't reached the agent yet
         }
 
+        beginAction();
         // Min because some of the order may have transacted already, in which case we want to
         // withdraw the rest
         AbstractMarket.this.withdrawOrder(order, Math.min(quantity, order.getQuantity()));
@@ -338,6 +708,7 @@ abstract class AbstractMarket implements Market, Serializable {
         if (order.getQuantity() == 0) {
           recordMap.remove(record);
         }
+        endAction();
 
         AbstractMarket.this.sim.scheduleIn(latency,
             () -> agent.notifyOrderWithrawn(record, quantity));
@@ -349,11 +720,72 @@ abstract class AbstractMarket implements Market, Serializable {
 
     }
 
+    @Override
+    void executeBatch(List<OrderRecord> withdrawals, List<OrderRecord> submissions) {
+      // Quantities are fixed now, when the agent makes the decision
+      Map<OrderRecord, Integer> withdrawn = new LinkedHashMap<>();
+      for (OrderRecord record : withdrawals) {
+        if (record.quantity > 0) {
+          withdrawn.put(record, record.quantity);
+          record.quantity = 0;
+          observedOrders.remove(record);
+        }
+      }
+      Map<OrderRecord, Integer> submitted = new LinkedHashMap<>();
+      for (OrderRecord record : submissions) {
+        submitted.put(record, record.quantity);
+        observedOrders.add(record);
+      }
+
+      AbstractMarket.this.sim.scheduleIn(latency, () -> {
+        Map<Order<Price>, Integer> orders = new LinkedHashMap<>();
+        Map<OrderRecord, Integer> reached = new LinkedHashMap<>();
+        for (Entry<OrderRecord, Integer> withdrawal : withdrawn.entrySet()) {
+          Order<Price> order = recordMap.get(withdrawal.getKey());
+          if (order != null) { // Otherwise it transacted, but hasn't reached the agent yet
+            // Min because some of the order may have transacted already
+            orders.put(order, Math.min(withdrawal.getValue(), order.getQuantity()));
+            reached.put(withdrawal.getKey(), withdrawal.getValue());
+          }
+        }
+
+        beginAction();
+        AbstractMarket.this.submitBatch(this, orders, submitted);
+
+        for (Order<Price> order : orders.keySet()) {
+          if (order.getQuantity() == 0) {
+            recordMap.inverse().remove(order);
+          }
+        }
+        endAction();
+
+        AbstractMarket.this.sim.scheduleIn(latency, () -> {
+          for (Entry<OrderRecord, Integer> withdrawal : reached.entrySet()) {
+            agent.notifyOrderWithrawn(withdrawal.getKey(), withdrawal.getValue());
+          }
+          for (OrderRecord record : submitted.keySet()) {
+            agent.notifyOrderSubmitted(record);
+          }
+        });
+      });
+    }
+
+    @Override
+    void batchOrderSubmitted(OrderRecord record, Order<Price> order) {
+      submissions += order.getQuantity();
+      recordMap.put(record, order);
+    }
+
     @Override
     public Quote getQuote() {
       return quote;
     }
 
+    @Override
+    public Quote getOthersQuote() {
+      throw new UnsupportedOperationException("Views with latency can't see the current book");
+    }
+
     @Override
     public double getProfit() {
       return observedProfit;
@@ -423,13 +855,13 @@ abstract class AbstractMarket implements Market, Serializable {
     private static final long serialVersionUID = 7349920586918545462L;
 
     @Override
-    void orderSubmittedToMarket(OrderType buyOrSell, Price price, int quantity) {
+    void orderSubmittedToMarket(OrderNotification notification) {
       // TODO Auto-generated method stub
 
     }
 
     @Override
-    void orderWithdrawnFromMarket(OrderType buyOrSell, Price price, int quantity) {
+    void orderWithdrawnFromMarket(OrderNotification notification) {
       // TODO Auto-generated method stub
 
     }
@@ -438,7 +870,6 @@ abstract class AbstractMarket implements Market, Serializable {
 
   /** A market view when there is no latency between market access. */
   class AbstractImmediateMarketView extends AbstractMarketView {
-    private Quote quote;
     private final Agent agent;
     private int holdings;
     private int submissions;
@@ -448,7 +879,7 @@ abstract class AbstractMarket implements Market, Serializable {
     private OrderRecord submittedOrder;
 
     AbstractImmediateMarketView(Agent agent) {
-      this.quote = Quote.empty();
+      super(agent);
       this.agent = agent;
       this.holdings = 0;
       this.submissions = 0;
@@ -458,33 +889,24 @@ abstract class AbstractMarket implements Market, Serializable {
     }
 
     @Override
-    void setQuote(Quote quote) {
-      this.quote = quote;
+    void quoteUpdated(Quote quote) {
       agent.notifyQuoteUpdated(this);
     }
 
     @Override
-    void transaction(Price tranPrice, int tranQuantity, Order<Price> buy, Order<Price> sell) {
-      OrderType buyOrSell =
-          buy.getSubmitTime() < sell.getSubmitTime() ? buy.getOrderType() : sell.getOrderType();
-      OrderNotification notification =
-          new OrderNotification(buyOrSell, tranPrice, tranQuantity, sim.getCurrentTime());
+    void transaction(OrderNotification notification) {
       this.agent.notifyTransaction(this, notification);
     }
 
     @Override
-    void orderSubmittedToMarket(OrderType buyOrSell, Price price, int quantity) {
-      OrderNotification notification =
-          new OrderNotification(buyOrSell, price, quantity, sim.getCurrentTime());
+    void orderSubmittedToMarket(OrderNotification notification) {
       this.agent.notifyOrderSubmittedToMarket(this, notification);
     }
 
     @Override
-    void orderWithdrawnFromMarket(OrderType buyOrSell, Price price, int quantity) {
-      OrderNotification notification =
-          new OrderNotification(buyOrSell, price, quantity, sim.getCurrentTime());
+    void orderWithdrawnFromMarket(OrderNotification notification) {
       this.agent.notifyOrderWithdrawnFromMarket(this, notification);
-    };
+    }
 
     @Override
     public TimeStamp getLatency() {
@@ -497,6 +919,7 @@ abstract class AbstractMarket implements Market, Serializable {
 
       submittedOrder = record; // In case we transact before we get the order
       agent.notifyOrderSubmitted(record);
+      beginAction();
       Order<Price> order = AbstractMarket.this.submitOrder(this, buyOrSell, price, quantity);
       submittedOrder = null;
 
@@ -504,6 +927,7 @@ abstract class AbstractMarket implements Market, Serializable {
       if (order.getQuantity() != 0) {
         recordMap.put(record, order);
       }
+      endAction();
 
       return record;
     }
@@ -515,19 +939,71 @@ abstract class AbstractMarket implements Market, Serializable {
         return; // order already removed
       }
 
+      beginAction();
       AbstractMarket.this.withdrawOrder(order, quantity);
       record.quantity = order.getQuantity();
 
       if (record.quantity == 0) {
         recordMap.remove(record);
       }
+      endAction();
 
       agent.notifyOrderWithrawn(record, quantity);
     }
 
+    @Override
+    void executeBatch(List<OrderRecord> withdrawals, List<OrderRecord> submissions) {
+      // Withdrawals remove all remaining quantity before the batch can transact
+      Map<Order<Price>, Integer> orders = new LinkedHashMap<>();
+      Map<OrderRecord, Integer> withdrawn = new LinkedHashMap<>();
+      for (OrderRecord record : withdrawals) {
+        Order<Price> order = recordMap.remove(record);
+        if (order != null) { // Otherwise order already removed
+          orders.put(order, order.getQuantity());
+          withdrawn.put(record, order.getQuantity());
+          record.quantity = 0;
+        }
+      }
+      Map<OrderRecord, Integer> submitted = new LinkedHashMap<>();
+      for (OrderRecord record : submissions) {
+        submitted.put(record, record.quantity);
+        agent.notifyOrderSubmitted(record);
+      }
+
+      beginAction();
+      AbstractMarket.this.submitBatch(this, orders, submitted);
+      endAction();
+
+      for (Entry<OrderRecord, Integer> withdrawal : withdrawn.entrySet()) {
+        agent.notifyOrderWithrawn(withdrawal.getKey(), withdrawal.getValue());
+      }
+    }
+
+    @Override
+    void batchOrderSubmitted(OrderRecord record, Order<Price> order) {
+      submissions += order.getQuantity();
+      recordMap.put(record, order);
+    }
+
     @Override
     public Quote getQuote() {
-      return quote;
+      return AbstractMarket.this.quote;
+    }
+
+    @Override
+    public Quote getOthersQuote() {
+      int bidDepth = orderbook.getBidDepth();
+      int askDepth = orderbook.getAskDepth();
+      for (Order<Price> order : recordMap.values()) {
+        if (order.getOrderType() == OrderType.BUY) {
+          bidDepth -= order.getQuantity();
+        } else {
+          askDepth -= order.getQuantity();
+        }
+      }
+      Predicate<Order<Price>> others = order -> orderOwners.get(order) != this;
+      return new Quote(orderbook.bestPrice(OrderType.BUY, others), bidDepth,
+          orderbook.bestPrice(OrderType.SELL, others), askDepth);
     }
 
     @Override
@@ -3,43 +3,59 @@ package edu.umich.srg.marketsim.market;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import edu.umich.srg.egtaonline.spec.Spec;
+import edu.umich.srg.fourheap.BatchAuction;
+import edu.umich.srg.fourheap.FourHeap.Pooling;
 import edu.umich.srg.fourheap.MatchedOrders;
 import edu.umich.srg.fourheap.Order;
 import edu.umich.srg.fourheap.Order.OrderType;
 import edu.umich.srg.marketsim.Keys.ClearInterval;
+import edu.umich.srg.marketsim.Keys.OrderPooling;
 import edu.umich.srg.marketsim.Keys.Pricing;
+import edu.umich.srg.marketsim.Keys.TradeClasses;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
 
 import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Map.Entry;
 
 /**
  * Pricing of 0 prices at the lowest bid, 1 at the highest ask, and 0.5, the average between them.
+ * Orders rest in a batch auction book, so no matching is done until the market clears.
  */
 public class CallMarket extends AbstractMarket {
 
   private final long clearInterval;
   private boolean nextClearScheduled;
 
-  private CallMarket(Sim sim, CallPricing pricing, long clearInterval) {
-    super(sim, pricing);
+  private CallMarket(Sim sim, CallPricing pricing, long clearInterval, Pooling pooling) {
+    super(sim, pricing, new BatchAuction<>(pooling));
     this.clearInterval = clearInterval;
     this.nextClearScheduled = false;
   }
 
   public static CallMarket create(Sim sim, double pricing, long clearInterval) {
-    return new CallMarket(sim, new CallPricing(pricing), clearInterval);
+    return create(sim, pricing, clearInterval, Pooling.NONE);
+  }
+
+  public static CallMarket create(Sim sim, double pricing, long clearInterval,
+      Pooling pooling) {
+    return new CallMarket(sim, new CallPricing(pricing), clearInterval, pooling);
   }
 
   public static CallMarket create(Sim sim, long clearInterval) {
     return create(sim, 0.5, clearInterval);
   }
 
+  /** Create a call market from a spec, along with any shadow markets it specifies. */
   public static CallMarket createFromSpec(Sim sim, Spec spec) {
-    return create(sim, spec.get(Pricing.class), spec.get(ClearInterval.class));
+    CallMarket market = create(sim, spec.get(Pricing.class), spec.get(ClearInterval.class),
+        spec.get(OrderPooling.class));
+    market.overrideTradeClasses(spec.get(TradeClasses.class));
+    market.addShadows(spec);
+    return market;
   }
 
   /*
@@ -75,23 +91,36 @@ public class CallMarket extends AbstractMarket {
     super.withdrawOrder(order, quantity);
   }
 
+  @Override
+  void submitBatch(AbstractMarketView submitter, Map<Order<Price>, Integer> withdrawals,
+      Map<OrderRecord, Integer> submissions) {
+    scheduleClear();
+    super.submitBatch(submitter, withdrawals, submissions);
+  }
+
   @Override
   void clear() {
+    beginAction();
     this.nextClearScheduled = false;
     super.clear();
     updateQuote();
+    endAction();
   }
 
-  private static class CallPricing implements PricingRule {
+  static class CallPricing implements PricingRule {
 
     private final double pricing;
 
-    private CallPricing(double pricing) {
+    CallPricing(double pricing) {
       checkArgument(pricing >= 0 && pricing <= 1,
           "Pricing must be between 0 and 1 inclusive, was %d", pricing);
       this.pricing = pricing;
     }
 
+    double getPricing() {
+      return pricing;
+    }
+
     @Override
     public Iterable<Entry<MatchedOrders<Price>, Price>> apply(
         Collection<MatchedOrders<Price>> matches) {
@@ -3,13 +3,18 @@ package edu.umich.srg.marketsim.market;
 import com.google.common.collect.Maps;
 
 import edu.umich.srg.egtaonline.spec.Spec;
+import edu.umich.srg.fourheap.FourHeap;
+import edu.umich.srg.fourheap.FourHeap.Pooling;
 import edu.umich.srg.fourheap.MatchedOrders;
 import edu.umich.srg.fourheap.Order;
 import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.marketsim.Keys.OrderPooling;
+import edu.umich.srg.marketsim.Keys.TradeClasses;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.Sim;
 
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 
 public class CdaMarket extends AbstractMarket {
@@ -35,16 +40,23 @@ public class CdaMarket extends AbstractMarket {
     };
   };
 
-  private CdaMarket(Sim sim) {
-    super(sim, cdaPricing);
+  private CdaMarket(Sim sim, Pooling pooling) {
+    super(sim, cdaPricing, new FourHeap<>(pooling));
   }
 
   public static CdaMarket create(Sim sim) {
-    return new CdaMarket(sim);
+    return create(sim, Pooling.NONE);
+  }
+
+  public static CdaMarket create(Sim sim, Pooling pooling) {
+    return new CdaMarket(sim, pooling);
   }
 
   public static CdaMarket createFromSpec(Sim sim, Spec spec) {
-    return new CdaMarket(sim);
+    CdaMarket market = create(sim, spec.get(OrderPooling.class));
+    market.overrideTradeClasses(spec.get(TradeClasses.class));
+    market.addShadows(spec);
+    return market;
   }
 
   @Override
@@ -61,6 +73,13 @@ public class CdaMarket extends AbstractMarket {
     updateQuote();
   }
 
+  @Override
+  void submitBatch(AbstractMarketView submitter, Map<Order<Price>, Integer> withdrawals,
+      Map<OrderRecord, Integer> submissions) {
+    super.submitBatch(submitter, withdrawals, submissions);
+    clear();
+  }
+
   @Override
   void clear() {
     super.clear();
@@ -2,29 +2,50 @@ package edu.umich.srg.marketsim.market;
 
 import com.google.gson.JsonObject;
 
-import edu.umich.srg.fourheap.FourHeap;
 import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.fourheap.OrderBook;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.agent.Agent;
-import edu.umich.srg.marketsim.fundamental.Fundamental;
 
 import java.io.Serializable;
+import java.util.EnumSet;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface Market {
 
-  MarketView getView(Agent agent, TimeStamp latency);
+  /**
+   * Get a view of the market for an agent. The agent is only notified of the market wide events in
+   * `subscriptions`, but is always notified about its own orders.
+   */
+  MarketView getView(Agent agent, TimeStamp latency, Set<MarketData> subscriptions);
+
+  /** Get a view that's notified of every market wide event. */
+  default MarketView getView(Agent agent, TimeStamp latency) {
+    return getView(agent, latency, EnumSet.allOf(MarketData.class));
+  }
 
   /** Get zero latency view. */
   default MarketView getView(Agent agent) {
     return getView(agent, TimeStamp.ZERO);
   }
 
+  /**
+   * Call `listener` with the current quote immediately, and then with every new quote `latency`
+   * after it happens. This is for processes like the SIP that aren't agents, so it doesn't need a
+   * view.
+   */
+  void addQuoteListener(TimeStamp latency, Consumer<Quote> listener);
+
   Iterable<Entry<Agent, AgentInfo>> getAgentInfo();
 
-  JsonObject getFeatures(Fundamental fundamental);
+  /** Get the info of only the agents in `agents`. */
+  Iterable<Entry<Agent, AgentInfo>> getAgentInfo(Set<Agent> agents);
+
+  /** The market's features, with rmsd measured against the simulation's fundamental. */
+  JsonObject getFeatures();
 
   interface MarketView {
 
@@ -38,8 +59,21 @@ public interface Market {
       withdrawOrder(record, record.getQuantity());
     }
 
+    /**
+     * Create a batch of withdrawals and submissions that reach the market as a single action. The
+     * market applies every withdrawal before any submission, and then clears and updates its quote
+     * once, instead of once per order.
+     */
+    OrderBatch createBatch();
+
     Quote getQuote();
 
+    /**
+     * The quote of every other agent's resting orders, as if this agent had none in the market.
+     * This looks at the book as it is now, so only views without latency can see it.
+     */
+    Quote getOthersQuote();
+
     Set<OrderRecord> getActiveOrders();
 
     double getProfit();
@@ -52,6 +86,35 @@ public interface Market {
 
   }
 
+  /** A group of order actions that a market processes together. */
+  interface OrderBatch {
+
+    /** Withdraw whatever quantity of this order remains when the batch is executed. */
+    void withdrawOrder(OrderRecord record);
+
+    /** Add an order to the batch. The returned record is only active once the batch executes. */
+    OrderRecord submitOrder(OrderType buyOrSell, Price price, int quantity);
+
+    /** Send the batch to the market. A batch can only be executed once. */
+    void execute();
+
+  }
+
+  /** Kinds of market wide events an agent can subscribe to. */
+  enum MarketData {
+    /** Orders reaching the market, see Agent::notifyOrderSubmittedToMarket. */
+    SUBMISSIONS,
+    /** Orders withdrawn from the market, see Agent::notifyOrderWithdrawnFromMarket. */
+    WITHDRAWALS,
+    /** Transactions in the market, see Agent::notifyTransaction. */
+    TRANSACTIONS,
+    /**
+     * Quote updates, see Agent::notifyQuoteUpdated. Views can always read the current quote, so
+     * this is only needed to react to it.
+     */
+    QUOTES
+  }
+
   interface AgentInfo {
 
     double getProfit();
@@ -112,6 +175,6 @@ public interface Market {
     OrderType getOrderType();
   }
 
-  FourHeap<Price> getOrderBook();
+  OrderBook<Price> getOrderBook();
 
 }
@@ -7,40 +7,31 @@ import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.market.Market.OrderInfo;
 
-public class OrderNotification implements OrderInfo, Comparable<OrderNotification> {
+import java.util.Objects;
 
-  final OrderType buyOrSell;
-  final Price price;
-  private TimeStamp timeStamp; // when the notification is generated, will be updated to the time of
-                               // withdraw or transaction
-  private int quantity;
-  private long period; // alive period (-1 is submission and withdraw are at the same time, 0 if
-                       // still alive, positive if already dead)
+/**
+ * A market wide order event. The market creates one for each event and passes the same instance to
+ * every subscriber, so it can't be changed. Strategies that track orders over time wrap it in their
+ * own records.
+ */
+public final class OrderNotification implements OrderInfo, Comparable<OrderNotification> {
+
+  private final OrderType buyOrSell;
+  private final Price price;
+  private final int quantity;
+  private final TimeStamp timeStamp; // when the event happened
 
   public OrderNotification(OrderType buyOrSell, Price price, int quantity, TimeStamp timeStamp) {
     this.buyOrSell = buyOrSell;
     this.price = price;
     this.quantity = quantity;
     this.timeStamp = timeStamp;
-    this.period = (long) 0;
   }
 
   public TimeStamp getTimeStamp() {
     return timeStamp;
   }
 
-  public void setTimeStamp(TimeStamp t) {
-    this.timeStamp = t;
-  }
-
-  public void setPeriod(long period) {
-    this.period = period;
-  }
-
-  public long getPeriod() {
-    return this.period;
-  }
-
   @Override
   public Price getPrice() {
     return price;
@@ -58,8 +49,8 @@ public class OrderNotification implements OrderInfo, Comparable<OrderNotificatio
 
   @Override
   public String toString() {
-    return timeStamp.toString() + (buyOrSell == BUY ? " Buy" : " Sell") + ' ' + quantity + " @ "
-        + price + " period " + period;
+    return getTimeStamp().toString() + (buyOrSell == BUY ? " Buy" : " Sell") + ' ' + quantity
+        + " @ " + price;
   }
 
   @Override
@@ -69,7 +60,7 @@ public class OrderNotification implements OrderInfo, Comparable<OrderNotificatio
     if (!this.price.equals(oPrice)) {
       return this.price.compareTo(oPrice);
     } else {
-      return this.timeStamp.compareTo(o.timeStamp);
+      return this.getTimeStamp().compareTo(o.getTimeStamp());
     }
   }
 
@@ -79,9 +70,15 @@ public class OrderNotification implements OrderInfo, Comparable<OrderNotificatio
       return false;
     } else {
       OrderNotification that = (OrderNotification) other;
-      return this.timeStamp.equals(that.timeStamp) && this.buyOrSell.equals(that.buyOrSell)
-          && this.price.equals(that.price) && this.quantity == that.quantity;
+      return this.getTimeStamp().equals(that.getTimeStamp())
+          && this.buyOrSell.equals(that.buyOrSell) && this.price.equals(that.price)
+          && this.quantity == that.quantity;
     }
   }
 
+  @Override
+  public int hashCode() {
+    return Objects.hash(buyOrSell, price, quantity);
+  }
+
 }
@@ -0,0 +1,144 @@
+package edu.umich.srg.marketsim.market;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.gson.JsonObject;
+
+import edu.umich.srg.collect.TimeSeries;
+import edu.umich.srg.fourheap.BatchAuction;
+import edu.umich.srg.fourheap.MatchedOrders;
+import edu.umich.srg.fourheap.Order;
+import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.marketsim.Price;
+import edu.umich.srg.marketsim.Sim;
+import edu.umich.srg.marketsim.TimeStamp;
+import edu.umich.srg.marketsim.fundamental.RmsdAccumulator;
+import edu.umich.srg.marketsim.market.CallMarket.CallPricing;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A call market that receives a copy of another market's order flow, but never reports anything
+ * back to agents. Agents keep acting on what happens in the market they're actually in, so a
+ * shadow shows what that exact order stream would have done under a different clear interval or
+ * pricing.
+ *
+ * <p>
+ * Shadows don't schedule events, so attaching them leaves the simulation they're attached to
+ * unchanged. Instead, a pending clear is run right before the next order action after its time, or
+ * when features are computed. An action at the same time as a clear happens after that clear.
+ */
+class ShadowCallMarket implements Serializable {
+
+  private final Sim sim;
+  private final CallPricing pricing;
+  private final long clearInterval;
+  private final BatchAuction<Price> orderbook;
+  private final Map<Order<Price>, Order<Price>> shadowOrders;
+  private long nextClear;
+
+  private final TimeSeries prices;
+  private final TimeSeries midprices;
+  private final TimeSeries spreads;
+  private final RmsdAccumulator priceRmsd;
+  private final RmsdAccumulator midpriceRmsd;
+
+  ShadowCallMarket(Sim sim, double pricing, long clearInterval) {
+    checkArgument(clearInterval > 0, "Clear interval must be positive");
+    this.sim = sim;
+    this.pricing = new CallPricing(pricing);
+    this.clearInterval = clearInterval;
+    this.orderbook = new BatchAuction<>();
+    this.shadowOrders = new HashMap<>();
+    this.nextClear = Long.MAX_VALUE;
+
+    this.prices = TimeSeries.empty();
+    this.midprices = TimeSeries.empty();
+    this.spreads = TimeSeries.empty();
+    this.priceRmsd = sim.getFundamental().rmsdAccumulator();
+    this.midpriceRmsd = sim.getFundamental().rmsdAccumulator();
+  }
+
+  /** Mirror a submission that created `order` in the real market. */
+  void submitOrder(Order<Price> order, OrderType buyOrSell, Price price, int quantity) {
+    beforeAction();
+    shadowOrders.put(order, orderbook.submit(buyOrSell, price, quantity));
+  }
+
+  /**
+   * Mirror a withdrawal from the real market, called after it's applied to `order`. Shadow orders
+   * may have transacted differently, so only what remains of the quantity is withdrawn, unless the
+   * real order is now gone, in which case everything left of the shadow is withdrawn too.
+   */
+  void withdrawOrder(Order<Price> order, int quantity) {
+    beforeAction();
+    Order<Price> shadow = shadowOrders.get(order);
+    int remaining =
+        order.getQuantity() == 0 ? shadow.getQuantity() : Math.min(quantity, shadow.getQuantity());
+    if (remaining > 0) {
+      orderbook.withdraw(shadow, remaining);
+    }
+  }
+
+  /**
+   * Called when an order leaves the real market. Its shadow stays in the book if it has quantity
+   * left, since the agent that placed it will never withdraw it.
+   */
+  void orderRetired(Order<Price> order) {
+    shadowOrders.remove(order);
+  }
+
+  private void beforeAction() {
+    long current = sim.getCurrentTime().get();
+    clearUntil(current);
+    if (nextClear == Long.MAX_VALUE) {
+      nextClear = (current / clearInterval + 1) * clearInterval;
+    }
+  }
+
+  private void clearUntil(long time) {
+    if (nextClear > time) {
+      return;
+    }
+    Collection<MatchedOrders<Price>> matches = orderbook.clear();
+    for (Entry<MatchedOrders<Price>, Price> pricedTrade : pricing.apply(matches)) {
+      prices.add(nextClear, pricedTrade.getValue().doubleValue());
+      priceRmsd.accept(nextClear, pricedTrade.getValue().doubleValue());
+    }
+
+    Quote quote = new Quote(orderbook.bidQuote(), orderbook.getBidDepth(), orderbook.askQuote(),
+        orderbook.getAskDepth());
+    if (quote.isDefined()) {
+      midprices.add(nextClear, quote.getMidquote());
+      midpriceRmsd.accept(nextClear, quote.getMidquote());
+      spreads.add(nextClear, quote.getSpread());
+    }
+    nextClear = Long.MAX_VALUE;
+  }
+
+  String getName() {
+    return "clear_interval_" + clearInterval + "_pricing_" + pricing.getPricing();
+  }
+
+  JsonObject getFeatures() {
+    TimeStamp finalTime = sim.getCurrentTime();
+    clearUntil(finalTime.get());
+
+    JsonObject features = new JsonObject();
+    features.addProperty("clear_interval", clearInterval);
+    features.addProperty("pricing", pricing.getPricing());
+    features.add("prices", AbstractMarket.convertSeries(prices));
+    features.addProperty("price_rmsd", priceRmsd.get(finalTime));
+    features.add("midquotes", AbstractMarket.convertSeries(midprices));
+    features.addProperty("midquotes_rmsd", midpriceRmsd.get(finalTime));
+    features.add("spreads", AbstractMarket.convertSeries(spreads));
+    return features;
+  }
+
+  private static final long serialVersionUID = 1;
+
+}
@@ -0,0 +1,233 @@
+package edu.umich.srg.marketsim.market;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Ordering;
+
+import edu.umich.srg.marketsim.Price;
+import edu.umich.srg.marketsim.TimeStamp;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The securities information processor, which consolidates the quotes of every market into the
+ * national best bid and offer. Quotes reach it after its latency, so the NBBO it reports may be
+ * stale compared to the markets.
+ *
+ * <p>
+ * Each side keeps a heap over markets ordered by their best price. A quote update that doesn't
+ * change a market's prices is O(1), and one that does is O(log M) where M is the number of markets.
+ * The SIP only starts listening to markets once someone asks for its view, so simulations that
+ * don't use it pay nothing. Each market's current quote is taken when it starts listening, so a
+ * view requested after quotes exist still sees them.
+ */
+public class Sip implements Serializable {
+
+  private static final Ordering<Price> bidOrder = Ordering.<Price>natural().reverse().nullsLast();
+  private static final Ordering<Price> askOrder = Ordering.<Price>natural().nullsLast();
+
+  private final TimeStamp latency;
+  private final List<Market> markets;
+  private final MarketHeap bids;
+  private final MarketHeap asks;
+  private boolean active;
+
+  private Sip(TimeStamp latency) {
+    this.latency = latency;
+    this.markets = new ArrayList<>();
+    this.bids = new MarketHeap(bidOrder);
+    this.asks = new MarketHeap(askOrder);
+    this.active = false;
+  }
+
+  /** Create a SIP that learns of quote updates `latency` after they happen. */
+  public static Sip create(TimeStamp latency) {
+    return new Sip(latency);
+  }
+
+  /** Add a market whose quotes are part of the NBBO. */
+  public void addMarket(Market market) {
+    int index = markets.size();
+    markets.add(market);
+    bids.add(index);
+    asks.add(index);
+    if (active) {
+      listen(index);
+    }
+  }
+
+  /** Get a view of the NBBO. */
+  public NbboView getView() {
+    if (!active) {
+      active = true;
+      for (int i = 0; i < markets.size(); ++i) {
+        listen(i);
+      }
+    }
+    return new SipView();
+  }
+
+  private void listen(int index) {
+    markets.get(index).addQuoteListener(latency, quote -> quoteUpdated(index, quote));
+  }
+
+  private void quoteUpdated(int index, Quote quote) {
+    bids.update(index, quote.getBidPrice().orNull(), quote.getBidDepth());
+    asks.update(index, quote.getAskPrice().orNull(), quote.getAskDepth());
+  }
+
+  /** What agents see of the SIP. */
+  public interface NbboView {
+
+    TimeStamp getLatency();
+
+    /** The national best bid and offer, with the depth of the market that has each price. */
+    Quote getQuote();
+
+    /** The market with the best bid, if any market has one. */
+    Optional<Market> getBestBidMarket();
+
+    /** The market with the best ask, if any market has one. */
+    Optional<Market> getBestAskMarket();
+
+  }
+
+  private class SipView implements NbboView, Serializable {
+
+    @Override
+    public TimeStamp getLatency() {
+      return latency;
+    }
+
+    @Override
+    public Quote getQuote() {
+      return new Quote(bids.bestPrice(), bids.bestDepth(), asks.bestPrice(), asks.bestDepth());
+    }
+
+    @Override
+    public Optional<Market> getBestBidMarket() {
+      return bestMarket(bids);
+    }
+
+    @Override
+    public Optional<Market> getBestAskMarket() {
+      return bestMarket(asks);
+    }
+
+    private Optional<Market> bestMarket(MarketHeap side) {
+      return side.bestPrice() == null ? Optional.absent()
+          : Optional.of(markets.get(side.best()));
+    }
+
+    private static final long serialVersionUID = 1;
+
+  }
+
+  /**
+   * A binary heap of market indices ordered by each market's price on one side. Markets keep their
+   * position in the heap so that a single market's price can be changed in O(log M).
+   */
+  private static class MarketHeap implements Serializable {
+
+    private final Comparator<Price> order;
+    private int[] heap; // Market index at each heap position
+    private int[] positions; // Heap position of each market index
+    private Price[] prices;
+    private int[] depths;
+    private int size;
+
+    private MarketHeap(Comparator<Price> order) {
+      this.order = order;
+      this.heap = new int[4];
+      this.positions = new int[4];
+      this.prices = new Price[4];
+      this.depths = new int[4];
+      this.size = 0;
+    }
+
+    private void add(int index) {
+      if (size == heap.length) {
+        int capacity = size * 2;
+        heap = Arrays.copyOf(heap, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+      }
+      // Markets start without a price, so they go at the bottom
+      heap[size] = index;
+      positions[index] = size;
+      size++;
+    }
+
+    private void update(int index, Price price, int depth) {
+      depths[index] = depth;
+      if (Objects.equals(prices[index], price)) {
+        return;
+      }
+      prices[index] = price;
+      siftUp(positions[index]);
+      siftDown(positions[index]);
+    }
+
+    private int best() {
+      return heap[0];
+    }
+
+    private Price bestPrice() {
+      return size == 0 ? null : prices[heap[0]];
+    }
+
+    private int bestDepth() {
+      return bestPrice() == null ? 0 : depths[heap[0]];
+    }
+
+    private void siftUp(int position) {
+      while (position > 0) {
+        int parent = (position - 1) / 2;
+        if (compare(position, parent) >= 0) {
+          return;
+        }
+        swap(position, parent);
+        position = parent;
+      }
+    }
+
+    private void siftDown(int position) {
+      while (true) {
+        int child = 2 * position + 1;
+        if (child >= size) {
+          return;
+        } else if (child + 1 < size && compare(child + 1, child) < 0) {
+          child++;
+        }
+        if (compare(child, position) >= 0) {
+          return;
+        }
+        swap(position, child);
+        position = child;
+      }
+    }
+
+    private int compare(int first, int second) {
+      return order.compare(prices[heap[first]], prices[heap[second]]);
+    }
+
+    private void swap(int first, int second) {
+      int market = heap[first];
+      heap[first] = heap[second];
+      heap[second] = market;
+      positions[heap[first]] = first;
+      positions[heap[second]] = second;
+    }
+
+    private static final long serialVersionUID = 1;
+
+  }
+
+  private static final long serialVersionUID = 1;
+
+}
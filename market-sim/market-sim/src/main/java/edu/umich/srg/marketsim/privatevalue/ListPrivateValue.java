@@ -8,7 +8,6 @@ import edu.umich.srg.fourheap.Order.OrderType;
 
 import java.util.Arrays;
 import java.util.Random;
-import java.util.stream.DoubleStream;
 
 /**
  * This class allows storage of an agent's private value. In general it is constructed by passing it
@@ -25,11 +24,13 @@ class ListPrivateValue implements PrivateValue {
 
   private final int offset;
   private final double[] values;
+  private final double[] positionValues; // Value at position `index - offset`, for lookup
   private final double extraBuy; // Benefit of buying one for large indices
   private final double extraSell; // Benefit of buyong one for small indices
 
   ListPrivateValue(double[] values, int offset) {
     assert isDecreasing(values);
+    assert 0 <= offset && offset <= values.length;
     this.values = values;
     this.offset = offset;
 
@@ -40,6 +41,15 @@ class ListPrivateValue implements PrivateValue {
       extraBuy = Math.min(values[values.length - 1], 0);
       extraSell = Math.max(values[0], 0);
     }
+
+    // Accumulate outward from position 0 so small positions don't carry rounding from large ones
+    this.positionValues = new double[values.length + 1];
+    for (int i = offset; i < values.length; ++i) {
+      positionValues[i + 1] = positionValues[i] + values[i];
+    }
+    for (int i = offset - 1; i >= 0; --i) {
+      positionValues[i] = positionValues[i + 1] - values[i];
+    }
   }
 
   ListPrivateValue(double[] values) {
@@ -47,8 +57,7 @@ class ListPrivateValue implements PrivateValue {
   }
 
   ListPrivateValue(DoubleDistribution dist, int maxPosition, Random rand) {
-    this(DoubleStream.generate(() -> -dist.sample(rand)).limit(2 * maxPosition).sorted()
-        .map(x -> -x).toArray(), maxPosition);
+    this(sortedDescending(dist, 2 * maxPosition, rand), maxPosition);
   }
 
   @Override
@@ -65,18 +74,27 @@ class ListPrivateValue implements PrivateValue {
 
   @Override
   public double valueAtPosition(int position) {
-    double value = 0;
     position += offset;
-    if (position > offset) {
-      int index = Math.min(position, values.length);
-      value += (position - index) * extraBuy;
-      value += Arrays.stream(values, offset, index).sum();
+    if (position > values.length) {
+      return positionValues[values.length] + (position - values.length) * extraBuy;
+    } else if (position < 0) {
+      return positionValues[0] + position * extraSell;
     } else {
-      int index = Math.max(0, position);
-      value += (position - index) * extraSell;
-      value -= Arrays.stream(values, index, offset).sum();
+      return positionValues[position];
+    }
+  }
+
+  /** Draw `num` samples from `dist` in order, and sort them in descending order. */
+  private static double[] sortedDescending(DoubleDistribution dist, int num, Random rand) {
+    double[] values = new double[num];
+    dist.sample(rand, values, 0, num);
+    Arrays.sort(values);
+    for (int i = 0, j = num - 1; i < j; ++i, --j) {
+      double swap = values[i];
+      values[i] = values[j];
+      values[j] = swap;
     }
-    return value;
+    return values;
   }
 
   /** Verifies an array of doubles is decreasing. */
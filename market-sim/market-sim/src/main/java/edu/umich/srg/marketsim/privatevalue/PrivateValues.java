@@ -7,7 +7,14 @@ import java.util.Random;
 public final class PrivateValues {
 
   public static PrivateValue gaussianPrivateValue(Random rand, int maxPosition, double variance) {
-    return new ListPrivateValue(Gaussian.withMeanVariance(0, variance), maxPosition, rand);
+    return gaussianPrivateValue(rand, maxPosition, variance, false);
+  }
+
+  /** A gaussian private value, that's mirrored if `antithetic`, with the same draws. */
+  public static PrivateValue gaussianPrivateValue(Random rand, int maxPosition, double variance,
+      boolean antithetic) {
+    Gaussian dist = Gaussian.withMeanVariance(0, variance);
+    return new ListPrivateValue(antithetic ? dist.mirrored() : dist, maxPosition, rand);
   }
 
   public static PrivateValue fromMarginalBuys(double[] marginalBuys) {
@@ -28,8 +28,8 @@ public class BeliefFunctionEstimator {
 
   private final int numTran;
   private final long gracePeriod;
-  private final ArrayList<OrderNotification> bidNotifications;
-  private final ArrayList<OrderNotification> askNotifications;
+  private final ArrayList<TrackedOrderNotification> bidNotifications;
+  private final ArrayList<TrackedOrderNotification> askNotifications;
   private final ArrayList<OrderNotification> transactionNotifications;
 
   public BeliefFunctionEstimator(int numTran, long gracePeriod) {
@@ -50,10 +50,12 @@ public class BeliefFunctionEstimator {
    * @param notification
    */
   public void addOrderSubmitObservation(OrderNotification notification) {
+    // The market's notification is shared, so the estimator tracks the order with its own copy
+    TrackedOrderNotification tracked = new TrackedOrderNotification(notification);
     if (notification.getOrderType() == OrderType.BUY) {
-      bidNotifications.add(notification);
+      bidNotifications.add(tracked);
     } else {
-      askNotifications.add(notification);
+      askNotifications.add(tracked);
     }
   }
 
@@ -77,7 +79,7 @@ public class BeliefFunctionEstimator {
    * @param notificationList
    * @param notification
    */
-  private void orderWithdrawUpdate(ArrayList<OrderNotification> notificationList,
+  private void orderWithdrawUpdate(ArrayList<TrackedOrderNotification> notificationList,
       OrderNotification notification, boolean fromTransaction) {
     // if (!fromTransaction) {
     // // find the orderNotification with the exact same price
@@ -112,7 +114,8 @@ public class BeliefFunctionEstimator {
 
     // search for the submitted order
     Collections.sort(notificationList);
-    int index = Collections.binarySearch(notificationList, notification);
+    int index = Collections.binarySearch(notificationList,
+        new TrackedOrderNotification(notification));
 
     // instant withdraw
     if (index >= 0) {
@@ -127,7 +130,7 @@ public class BeliefFunctionEstimator {
             + " order withdrawn is not in the notification array!");
       } else {
         // Example: 1 2 3 4 x 5; abs(-4-1) - 2
-        OrderNotification original = notificationList.get(Math.abs(index) - 2);
+        TrackedOrderNotification original = notificationList.get(Math.abs(index) - 2);
         if (original.getPrice().equals(notification.getPrice())) {
           original.setPeriod(notification.getTimeStamp().get() - original.getTimeStamp().get());
           original.setTimeStamp(notification.getTimeStamp());
@@ -211,7 +214,8 @@ public class BeliefFunctionEstimator {
    */
   private int bidsGreaterIndex(Price p) {
     // Example: z 1 2 3 y 4 x 5 a; binarySearch output (0-1), (-3-1), (-4-1), (-5-1)
-    OrderNotification o = new OrderNotification(OrderType.BUY, p, 1, TimeStamp.ZERO);
+    TrackedOrderNotification o =
+        new TrackedOrderNotification(OrderType.BUY, p, 1, TimeStamp.ZERO);
     int index = Math.abs(Collections.binarySearch(bidNotifications, o)) - 1;
 
     if (index == bidNotifications.size()) {
@@ -251,7 +255,8 @@ public class BeliefFunctionEstimator {
    */
   private int asksLessIndex(Price p) {
     // Example: e 1 a 2 3 b 4 c 5 d; (-0-1) (-1-1), (-3-1), (-4-1), (-5-1)
-    OrderNotification o = new OrderNotification(OrderType.SELL, p, 1, TimeStamp.INF);
+    TrackedOrderNotification o =
+        new TrackedOrderNotification(OrderType.SELL, p, 1, TimeStamp.INF);
     int index = Math.abs(Collections.binarySearch(askNotifications, o)) - 2;
 
     if (index == -1) {
@@ -308,7 +313,7 @@ public class BeliefFunctionEstimator {
 
     while (index != askNotifications.size()
         && askNotifications.get(index).getPrice().compareTo(p) <= 0) {
-      OrderNotification notification = askNotifications.get(index);
+      TrackedOrderNotification notification = askNotifications.get(index);
       long period = notification.getPeriod();
       OrderNotification temp = new OrderNotification(notification.getOrderType(),
           notification.getPrice(), notification.getQuantity(), notification.getTimeStamp());
@@ -335,7 +340,7 @@ public class BeliefFunctionEstimator {
     double volume = 0;
 
     while (index != -1 && bidNotifications.get(index).getPrice().compareTo(p) >= 0) {
-      OrderNotification notification = bidNotifications.get(index);
+      TrackedOrderNotification notification = bidNotifications.get(index);
       long period = notification.getPeriod();
       OrderNotification temp = new OrderNotification(notification.getOrderType(),
           notification.getPrice(), notification.getQuantity(), notification.getTimeStamp());
@@ -702,11 +707,11 @@ public class BeliefFunctionEstimator {
     Collections.sort(transactionNotifications);
   }
 
-  public ArrayList<OrderNotification> getBidNotifications() {
+  public ArrayList<TrackedOrderNotification> getBidNotifications() {
     return bidNotifications;
   }
 
-  public ArrayList<OrderNotification> getAskNotifications() {
+  public ArrayList<TrackedOrderNotification> getAskNotifications() {
     return askNotifications;
   }
 
@@ -29,8 +29,8 @@ public class BeliefFunctionEstimator2 {
   private final int numTran;
   private final long gracePeriod;
   private final double recencyDiscount;
-  private final ArrayList<OrderNotification> bidNotifications;
-  private final ArrayList<OrderNotification> askNotifications;
+  private final ArrayList<TrackedOrderNotification> bidNotifications;
+  private final ArrayList<TrackedOrderNotification> askNotifications;
   private final ArrayList<OrderNotification> transactionNotifications;
 
   public BeliefFunctionEstimator2(int numTran, long gracePeriod, double recencyDiscount) {
@@ -53,10 +53,12 @@ public class BeliefFunctionEstimator2 {
    * @param notification
    */
   public void addOrderSubmitObservation(OrderNotification notification) {
+    // The market's notification is shared, so the estimator tracks the order with its own copy
+    TrackedOrderNotification tracked = new TrackedOrderNotification(notification);
     if (notification.getOrderType() == OrderType.BUY) {
-      bidNotifications.add(notification);
+      bidNotifications.add(tracked);
     } else {
-      askNotifications.add(notification);
+      askNotifications.add(tracked);
     }
   }
 
@@ -80,10 +82,11 @@ public class BeliefFunctionEstimator2 {
    * @param notificationList
    * @param notification
    */
-  private void orderWithdrawUpdate(ArrayList<OrderNotification> notificationList,
+  private void orderWithdrawUpdate(ArrayList<TrackedOrderNotification> notificationList,
       OrderNotification notification) {
     Collections.sort(notificationList);
-    int index = Collections.binarySearch(notificationList, notification);
+    int index = Collections.binarySearch(notificationList,
+        new TrackedOrderNotification(notification));
 
     // instant withdraw
     if (index >= 0) {
@@ -98,7 +101,7 @@ public class BeliefFunctionEstimator2 {
             + " order withdrawn is not in the notification array!");
       } else {
         // Example: 1 2 3 4 x 5; abs(-4-1) - 2
-        OrderNotification original = notificationList.get(Math.abs(index) - 2);
+        TrackedOrderNotification original = notificationList.get(Math.abs(index) - 2);
         if (original.getPrice().equals(notification.getPrice())) {
           original.setPeriod(notification.getTimeStamp().get() - original.getTimeStamp().get());
           original.setTimeStamp(notification.getTimeStamp());
@@ -160,13 +163,15 @@ public class BeliefFunctionEstimator2 {
    * The orderbook stats below only count orders in an agent's memory length
    */
 
+  // Live orders have a period of zero, so this is their submission time either way
+  private int discountPower(TrackedOrderNotification order, TimeStamp timeStamp) {
+    return (int) ((int) (timeStamp.get() - (order.getTimeStamp().get() - order.getPeriod()))
+        / 1000);
+  }
+
+  // Orders that aren't tracked, like transactions, are treated as still alive
   private int discountPower(OrderNotification order, TimeStamp timeStamp) {
-    if (order.getPeriod() != 0) {
-      return (int) ((int) (timeStamp.get() - (order.getTimeStamp().get() - order.getPeriod()))
-          / 1000);
-    } else {
-      return (int) ((int) (timeStamp.get() - order.getTimeStamp().get()) / 1000);
-    }
+    return (int) ((int) (timeStamp.get() - order.getTimeStamp().get()) / 1000);
   }
 
   /**
@@ -179,7 +184,7 @@ public class BeliefFunctionEstimator2 {
     int index = bidNotifications.size() - 1;
     double volume = 0;
     while (index != -1 && bidNotifications.get(index).getPrice().compareTo(p) >= 0) {
-      OrderNotification temp = bidNotifications.get(index);
+      TrackedOrderNotification temp = bidNotifications.get(index);
       volume =
           volume + temp.getQuantity() * Math.pow(recencyDiscount, discountPower(temp, timeStamp));
       index--;
@@ -195,7 +200,8 @@ public class BeliefFunctionEstimator2 {
    */
   private int bidsGreaterIndex(Price p) {
     // Example: z 1 2 3 y 4 x 5 a; binarySearch output (0-1), (-3-1), (-4-1), (-5-1)
-    OrderNotification o = new OrderNotification(OrderType.BUY, p, 1, TimeStamp.ZERO);
+    TrackedOrderNotification o =
+        new TrackedOrderNotification(OrderType.BUY, p, 1, TimeStamp.ZERO);
     int index = Math.abs(Collections.binarySearch(bidNotifications, o)) - 1;
 
     if (index == bidNotifications.size()) {
@@ -221,7 +227,7 @@ public class BeliefFunctionEstimator2 {
     double volume = 0;
     while (index != askNotifications.size()
         && askNotifications.get(index).getPrice().compareTo(p) <= 0) {
-      OrderNotification temp = askNotifications.get(index);
+      TrackedOrderNotification temp = askNotifications.get(index);
       volume =
           volume + temp.getQuantity() * Math.pow(recencyDiscount, discountPower(temp, timeStamp));
       index++;
@@ -237,7 +243,8 @@ public class BeliefFunctionEstimator2 {
    */
   private int asksLessIndex(Price p) {
     // Example: e 1 a 2 3 b 4 c 5 d; (-0-1) (-1-1), (-3-1), (-4-1), (-5-1)
-    OrderNotification o = new OrderNotification(OrderType.SELL, p, 1, TimeStamp.INF);
+    TrackedOrderNotification o =
+        new TrackedOrderNotification(OrderType.SELL, p, 1, TimeStamp.INF);
     int index = Math.abs(Collections.binarySearch(askNotifications, o)) - 2;
 
     if (index == -1) {
@@ -298,7 +305,7 @@ public class BeliefFunctionEstimator2 {
 
     while (index != askNotifications.size()
         && askNotifications.get(index).getPrice().compareTo(p) <= 0) {
-      OrderNotification notification = askNotifications.get(index);
+      TrackedOrderNotification notification = askNotifications.get(index);
       long period = notification.getPeriod();
       OrderNotification temp = new OrderNotification(notification.getOrderType(),
           notification.getPrice(), notification.getQuantity(), notification.getTimeStamp());
@@ -326,7 +333,7 @@ public class BeliefFunctionEstimator2 {
     double volume = 0;
 
     while (index != -1 && bidNotifications.get(index).getPrice().compareTo(p) >= 0) {
-      OrderNotification notification = bidNotifications.get(index);
+      TrackedOrderNotification notification = bidNotifications.get(index);
       long period = notification.getPeriod();
       OrderNotification temp = new OrderNotification(notification.getOrderType(),
           notification.getPrice(), notification.getQuantity(), notification.getTimeStamp());
@@ -688,11 +695,11 @@ public class BeliefFunctionEstimator2 {
     Collections.sort(transactionNotifications);
   }
 
-  public ArrayList<OrderNotification> getBidNotifications() {
+  public ArrayList<TrackedOrderNotification> getBidNotifications() {
     return bidNotifications;
   }
 
-  public ArrayList<OrderNotification> getAskNotifications() {
+  public ArrayList<TrackedOrderNotification> getAskNotifications() {
     return askNotifications;
   }
 
@@ -4,8 +4,15 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static edu.umich.srg.fourheap.Order.OrderType.BUY;
 import static edu.umich.srg.fourheap.Order.OrderType.SELL;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedHashMultiset;
+import com.google.common.collect.Multiset;
+
 import edu.umich.srg.marketsim.Price;
+import edu.umich.srg.marketsim.market.OrderRecord;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
@@ -41,4 +48,52 @@ public class MarketMakerLadder {
         .filter(p -> p > -(cross + offset));
   }
 
+  /**
+   * Compares the orders an agent has resting in the market with a target ladder where every rung
+   * has `rungThickness` units. Resting orders that are part of the target are kept, so they retain
+   * their time priority. Every other resting order is withdrawn, and any missing quantity in the
+   * target is submitted.
+   */
+  public static LadderDiff diff(Collection<OrderRecord> resting, Stream<OrderDesc> target,
+      int rungThickness) {
+    checkArgument(rungThickness > 0);
+    Multiset<OrderDesc> missing = LinkedHashMultiset.create();
+    target.forEach(rung -> missing.add(rung, rungThickness));
+
+    ImmutableList.Builder<OrderRecord> withdrawals = ImmutableList.builder();
+    for (OrderRecord record : resting) {
+      OrderDesc rung = OrderDesc.of(record.getOrderType(), record.getPrice());
+      if (record.getQuantity() <= missing.count(rung)) {
+        missing.remove(rung, record.getQuantity());
+      } else {
+        withdrawals.add(record);
+      }
+    }
+
+    return new LadderDiff(withdrawals.build(), missing);
+  }
+
+  /** The changes necessary to turn the resting orders into a target ladder. */
+  public static class LadderDiff {
+
+    private final List<OrderRecord> withdrawals;
+    private final Multiset<OrderDesc> submissions;
+
+    private LadderDiff(List<OrderRecord> withdrawals, Multiset<OrderDesc> submissions) {
+      this.withdrawals = withdrawals;
+      this.submissions = submissions;
+    }
+
+    /** Resting orders that are no longer part of the ladder. */
+    public List<OrderRecord> getWithdrawals() {
+      return withdrawals;
+    }
+
+    /** Orders to submit, where the count of each order is the quantity to submit. */
+    public Multiset<OrderDesc> getSubmissions() {
+      return submissions;
+    }
+
+  }
+
 }
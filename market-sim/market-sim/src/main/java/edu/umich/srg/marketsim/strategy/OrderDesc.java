@@ -34,7 +34,7 @@ public class OrderDesc {
       return false;
     } else {
       OrderDesc that = (OrderDesc) other;
-      return Objects.equals(this.price, that.price) && Objects.equals(this.price, that.price);
+      return Objects.equals(this.type, that.type) && Objects.equals(this.price, that.price);
     }
   }
 
@@ -0,0 +1,79 @@
+package edu.umich.srg.marketsim.strategy;
+
+import static edu.umich.srg.fourheap.Order.OrderType.BUY;
+
+import edu.umich.srg.fourheap.Order.OrderType;
+import edu.umich.srg.marketsim.Price;
+import edu.umich.srg.marketsim.TimeStamp;
+import edu.umich.srg.marketsim.market.Market.OrderInfo;
+import edu.umich.srg.marketsim.market.OrderNotification;
+
+/**
+ * An estimator's own record of a submitted order. It wraps the notification markets share, and is
+ * updated with how long the order was alive once it becomes inactive.
+ */
+public class TrackedOrderNotification implements OrderInfo, Comparable<TrackedOrderNotification> {
+
+  private final OrderNotification submission;
+  private TimeStamp timeStamp; // when the order was submitted, will be updated to the time of
+                               // withdraw or transaction
+  private long period; // alive period (-1 is submission and withdraw are at the same time, 0 if
+                       // still alive, positive if already dead)
+
+  public TrackedOrderNotification(OrderType buyOrSell, Price price, int quantity,
+      TimeStamp timeStamp) {
+    this(new OrderNotification(buyOrSell, price, quantity, timeStamp));
+  }
+
+  /** Start tracking the order a market notification was about. */
+  public TrackedOrderNotification(OrderNotification notification) {
+    this.submission = notification;
+    this.timeStamp = notification.getTimeStamp();
+    this.period = 0;
+  }
+
+  @Override
+  public Price getPrice() {
+    return submission.getPrice();
+  }
+
+  @Override
+  public int getQuantity() {
+    return submission.getQuantity();
+  }
+
+  @Override
+  public OrderType getOrderType() {
+    return submission.getOrderType();
+  }
+
+  public TimeStamp getTimeStamp() {
+    return timeStamp;
+  }
+
+  public void setTimeStamp(TimeStamp t) {
+    this.timeStamp = t;
+  }
+
+  public void setPeriod(long period) {
+    this.period = period;
+  }
+
+  public long getPeriod() {
+    return this.period;
+  }
+
+  @Override
+  // first compare price, then compare time stamp, the same as the notifications markets share
+  public int compareTo(TrackedOrderNotification o) {
+    int priceOrder = getPrice().compareTo(o.getPrice());
+    return priceOrder != 0 ? priceOrder : timeStamp.compareTo(o.timeStamp);
+  }
+
+  @Override
+  public String toString() {
+    return timeStamp.toString() + (getOrderType() == BUY ? " Buy" : " Sell") + ' '
+        + getQuantity() + " @ " + getPrice() + " period " + period;
+  }
+
+}
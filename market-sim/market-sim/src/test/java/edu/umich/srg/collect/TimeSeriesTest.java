@@ -0,0 +1,104 @@
+package edu.umich.srg.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class TimeSeriesTest {
+
+  private static final Random rand = new Random();
+
+  @Test
+  public void emptyTest() {
+    TimeSeries series = TimeSeries.empty();
+    assertTrue(series.isEmpty());
+    assertEquals(0, series.size());
+  }
+
+  @Test
+  public void appendTest() {
+    TimeSeries series = TimeSeries.empty();
+    for (int i = 0; i < 100; ++i) {
+      series.add(i * 2, i);
+    }
+    assertEquals(100, series.size());
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(i * 2, series.getTime(i));
+      assertEquals(i, series.getValue(i), 0);
+    }
+  }
+
+  @Test
+  public void replaceTest() {
+    TimeSeries series = TimeSeries.empty();
+    series.add(1, 5);
+    series.add(3, 6);
+    series.add(3, 7);
+    series.add(1, 8);
+    assertEquals(2, series.size());
+    assertEquals(8, series.getValue(0), 0);
+    assertEquals(7, series.getValue(1), 0);
+  }
+
+  @Test
+  public void compressedTest() {
+    TimeSeries series = TimeSeries.compressed();
+    series.add(1, 5);
+    series.add(2, 5);
+    series.add(3, 6);
+    series.add(4, 6);
+    series.add(5, 5);
+    assertEquals(3, series.size());
+    assertEquals(1, series.getTime(0));
+    assertEquals(3, series.getTime(1));
+    assertEquals(5, series.getTime(2));
+  }
+
+  @Test
+  public void mergeTest() {
+    TimeSeries base = TimeSeries.empty();
+    base.add(1, 1);
+    base.add(3, 3);
+    base.add(5, 5);
+    TimeSeries overrides = TimeSeries.empty();
+    overrides.add(0, 10);
+    overrides.add(3, 30);
+    overrides.add(6, 60);
+
+    TimeSeries merged = TimeSeries.merge(base, overrides);
+    long[] times = {0, 1, 3, 5, 6};
+    double[] values = {10, 1, 30, 5, 60};
+    assertEquals(times.length, merged.size());
+    for (int i = 0; i < times.length; ++i) {
+      assertEquals(times[i], merged.getTime(i));
+      assertEquals(values[i], merged.getValue(i), 0);
+    }
+  }
+
+  /** Out of order observations end up in the same place a sorted map would put them. */
+  @Test
+  public void randomInsertTest() {
+    TimeSeries series = TimeSeries.empty();
+    TreeMap<Long, Double> expected = new TreeMap<>();
+    for (int i = 0; i < 1000; ++i) {
+      long time = rand.nextInt(200);
+      double value = rand.nextDouble();
+      series.add(time, value);
+      expected.put(time, value);
+    }
+
+    assertEquals(expected.size(), series.size());
+    int index = 0;
+    for (Entry<Long, Double> entry : expected.entrySet()) {
+      assertEquals((long) entry.getKey(), series.getTime(index));
+      assertEquals(entry.getValue(), series.getValue(index), 0);
+      index++;
+    }
+  }
+
+}
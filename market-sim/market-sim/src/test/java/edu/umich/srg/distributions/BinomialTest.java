@@ -1,10 +1,12 @@
 package edu.umich.srg.distributions;
 
+import static edu.umich.srg.testing.Asserts.assertChiSquared;
 import static edu.umich.srg.testing.Asserts.assertTrue;
 import static org.junit.Assert.assertEquals;
 
 import org.junit.Ignore;
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.experimental.theories.Theories;
 import org.junit.experimental.theories.Theory;
 import org.junit.runner.RunWith;
@@ -12,9 +14,11 @@ import org.junit.runner.RunWith;
 import edu.umich.srg.testing.RepeatRule;
 import edu.umich.srg.testing.TestDoubles;
 import edu.umich.srg.testing.TestInts;
+import edu.umich.srg.util.SummStats;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.stream.DoubleStream;
 
 @RunWith(Theories.class)
 public class BinomialTest {
@@ -25,7 +29,7 @@ public class BinomialTest {
 
   @Theory
   public void boundTest(@TestDoubles({0, 0.2, 0.5, 0.8, 1}) double prob,
-      @TestInts({0, 1, 15, 50, 100}) int samples) {
+      @TestInts({0, 1, 15, 50, 100, 1000000}) int samples) {
     Binomial bin = Binomial.with(samples, prob);
     for (int i = 0; i < 10000; ++i) {
       long draw = bin.sample(rand);
@@ -36,11 +40,9 @@ public class BinomialTest {
 
   /**
    * This tests compares the expected pmf with the actual pmf. The expected pmf is calculated in log
-   * space for stability. The numbers 15, 37, and 100 were chosen because 15 is in the Bernoulli
-   * range, 37 is the cutoff to the beta approximation method, and 100 is way above the beta
-   * approximation bound. Finally, a chi squared test is not used because the distribtion is on;y
-   * approximated, so it will always fail. Instead, this just verifies that they are "close". Since
-   * this test is random, it is disabled by default.
+   * space for stability. With these numbers, every draw count and probability is sampled by
+   * inversion except 100 at one half, which uses BTPE. This just verifies that they are "close".
+   * Since this test is random, it is disabled by default.
    */
   @Ignore
   @Theory
@@ -66,4 +68,56 @@ public class BinomialTest {
     }
   }
 
+  /** Large binomials are sampled by BTPE, whose mean and variance should be exact. */
+  @Ignore // This test is random and won't always be successful
+  @Theory
+  public void summaryStatisticsTest(@TestDoubles({0.01, 0.2, 0.5, 0.8}) double prob,
+      @TestInts({1000, 1000000, 1000000000}) int draws) {
+    Binomial bin = Binomial.with(draws, prob);
+    SummStats stats = SummStats.over(DoubleStream.generate(() -> bin.sample(rand)).limit(100000));
+    double variance = draws * prob * (1 - prob);
+    assertEquals(draws * prob, stats.getAverage(), 5 * Math.sqrt(variance / 100000));
+    assertEquals(variance, stats.getVariance(), variance * 5e-2);
+  }
+
+  /**
+   * Chi-squared tests of the pmf in the BTPE range. The pmf is binned to the 21 bins the critical
+   * values support, and the seed is fixed so the test can run by default.
+   */
+  @Test
+  public void btpeChiSquaredTest() {
+    Random rand = new Random(1729);
+    assertBinnedChiSquared(1000, 0.3, rand);
+    assertBinnedChiSquared(200, 0.5, rand);
+    assertBinnedChiSquared(5000, 0.01, rand);
+  }
+
+  private static void assertBinnedChiSquared(int draws, double prob, Random rand) {
+    int numBins = 21;
+    double stddev = Math.sqrt(draws * prob * (1 - prob));
+    int low = (int) Math.round(draws * prob - 3 * stddev);
+    int width = (int) Math.ceil(6 * stddev / numBins);
+
+    double[] expected = new double[numBins];
+    double logPmf = draws * Math.log(1 - prob);
+    for (int k = 0; k <= draws; ++k) {
+      if (k > 0) {
+        logPmf += Math.log(draws - k + 1) + Math.log(prob) - Math.log(k) - Math.log(1 - prob);
+      }
+      expected[bin(k, low, width, numBins)] += Math.exp(logPmf);
+    }
+    assertEquals(1, Arrays.stream(expected).sum(), 1e-6);
+
+    Binomial bin = Binomial.with(draws, prob);
+    int[] observed = new int[numBins];
+    for (int i = 0; i < 100000; ++i) {
+      observed[bin(bin.sample(rand), low, width, numBins)]++;
+    }
+    assertChiSquared(expected, observed, 0.999);
+  }
+
+  private static int bin(long draw, int low, int width, int numBins) {
+    return (int) Math.min(Math.max(Math.floorDiv(draw - low, width), 0), numBins - 1);
+  }
+
 }
@@ -0,0 +1,57 @@
+package edu.umich.srg.distributions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+import edu.umich.srg.testing.TestDoubles;
+import edu.umich.srg.util.SummStats;
+
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+@RunWith(Theories.class)
+public class GaussianTest {
+
+  private static Random rand = new Random();
+
+  @Ignore // This test is random and won't always be successful
+  @Theory
+  public void summaryStatisticsTest(@TestDoubles({0, -3, 100}) double mean,
+      @TestDoubles({0.1, 1, 20}) double stddev) {
+    Gaussian dist = Gaussian.withMeanStandardDeviation(mean, stddev);
+    SummStats stats = SummStats.over(DoubleStream.generate(() -> dist.sample(rand)).limit(1000000));
+    assertEquals(mean, stats.getAverage(), 5e-3 * stddev);
+    assertEquals(stddev, stats.getStandardDeviation(), 5e-3 * stddev);
+  }
+
+  @Ignore // This test is random and won't always be successful
+  @Test
+  public void tailTest() {
+    // The ziggurat samples past 3.44 separately, so check the mass there
+    long tail = DoubleStream.generate(() -> Gaussian.standard(rand)).limit(10000000)
+        .filter(x -> Math.abs(x) > 3.442619855899).count();
+    assertEquals(5.761e-4, tail / 1e7, 3e-5);
+  }
+
+  @Test
+  public void bulkSampleTest() {
+    long seed = rand.nextLong();
+    Gaussian dist = Gaussian.withMeanVariance(5, 2);
+    double[] bulk = new double[1000];
+    dist.sample(new Random(seed), bulk, 100, 900);
+
+    Random sequential = new Random(seed);
+    double[] expected = new double[1000];
+    for (int i = 100; i < 900; ++i) {
+      expected[i] = dist.sample(sequential);
+    }
+    assertArrayEquals(expected, bulk, 0);
+  }
+
+}
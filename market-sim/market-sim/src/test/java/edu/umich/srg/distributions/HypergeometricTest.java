@@ -98,4 +98,36 @@ public class HypergeometricTest {
     assertChiSquared(expected, observed);
   }
 
+  /** Small mean, sampled by inversion. */
+  @Test
+  public void test_40_5_12() {
+    double[] expected = {0.149359886201991, 0.373399715504979, 0.328591749644381,
+        0.126381442170916, 0.0210635736951526, 0.00120363278258015};
+    assertEquals(1, Arrays.stream(expected).sum(), eps);
+
+    Hypergeometric dist = Hypergeometric.with(40, 5, 12);
+    int[] observed = new int[6];
+    for (int i = 0; i < n; ++i)
+      observed[dist.sample(rand)] += 1;
+    assertChiSquared(expected, observed);
+  }
+
+  /** Large mean, sampled by ratio of uniforms. */
+  @Test
+  public void test_40_20_20() {
+    double[] expected = {7.25444455192484e-12, 2.90177782076994e-09, 2.61885448324487e-07,
+        9.42787613968153e-06, 0.000170291012772998, 0.0017437799707955, 0.0108986248174718,
+        0.0435944992698874, 0.115116724634546, 0.20465195490586, 0.247628865436091,
+        0.20465195490586, 0.115116724634546, 0.0435944992698874, 0.0108986248174718,
+        0.0017437799707955, 0.000170291012772998, 9.42787613968153e-06, 2.61885448324487e-07,
+        2.90177782076994e-09, 7.25444455192484e-12};
+    assertEquals(1, Arrays.stream(expected).sum(), eps);
+
+    Hypergeometric dist = Hypergeometric.with(40, 20, 20);
+    int[] observed = new int[21];
+    for (int i = 0; i < n; ++i)
+      observed[dist.sample(rand)] += 1;
+    assertChiSquared(expected, observed);
+  }
+
 }
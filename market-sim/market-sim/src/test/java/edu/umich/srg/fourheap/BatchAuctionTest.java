@@ -0,0 +1,212 @@
+package edu.umich.srg.fourheap;
+
+import static edu.umich.srg.fourheap.Order.OrderType.BUY;
+import static edu.umich.srg.fourheap.Order.OrderType.SELL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Iterables;
+
+import edu.umich.srg.fourheap.Order.OrderType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+public class BatchAuctionTest {
+
+  private static final Random rand = new Random();
+  private BatchAuction<Integer> ba;
+
+  @Before
+  public void setup() {
+    ba = new BatchAuction<>();
+  }
+
+  @Test
+  public void emptyTest() {
+    assertNull(ba.bidQuote());
+    assertNull(ba.askQuote());
+    assertTrue(ba.clear().isEmpty());
+    assertEquals(0, ba.size());
+  }
+
+  @Test
+  public void noMatchUntilClearTest() {
+    Order<Integer> os = ba.submit(SELL, 5, 2);
+    Order<Integer> ob = ba.submit(BUY, 7, 3);
+    assertEquals(2, ba.size());
+    assertEquals(3, ba.getBidDepth());
+    assertEquals(2, ba.getAskDepth());
+    // Quote is the same as the fourheap's for a crossed book
+    assertEquals(7, (int) ba.bidQuote());
+    assertEquals(7, (int) ba.askQuote());
+
+    MatchedOrders<Integer> trans = Iterables.getOnlyElement(ba.clear());
+    assertEquals(os, trans.getSell());
+    assertEquals(ob, trans.getBuy());
+    assertEquals(2, trans.getQuantity());
+    assertEquals(1, ob.getQuantity());
+    assertEquals(1, ba.size());
+    assertEquals(1, ba.getBidDepth());
+    assertEquals(0, ba.getAskDepth());
+    assertEquals(7, (int) ba.bidQuote());
+    assertNull(ba.askQuote());
+  }
+
+  @Test
+  public void timePriorityTest() {
+    Order<Integer> first = ba.submit(BUY, 7, 1);
+    Order<Integer> second = ba.submit(BUY, 7, 1);
+    ba.submit(SELL, 5, 1);
+
+    MatchedOrders<Integer> trans = Iterables.getOnlyElement(ba.clear());
+    assertEquals(first, trans.getBuy());
+    assertEquals(1, second.getQuantity());
+  }
+
+  @Test
+  public void withdrawTest() {
+    Order<Integer> ob = ba.submit(BUY, 7, 3);
+    ba.submit(SELL, 5, 2);
+    ba.withdraw(ob, 2);
+    assertEquals(1, ba.getBidDepth());
+    assertEquals(5, (int) ba.bidQuote());
+    assertEquals(5, (int) ba.askQuote());
+
+    ba.withdraw(ob, 1);
+    assertEquals(1, ba.size());
+    assertNull(ba.bidQuote());
+    assertEquals(5, (int) ba.askQuote());
+    assertTrue(ba.clear().isEmpty());
+  }
+
+  @Test
+  public void pooledReuseTest() {
+    ba = new BatchAuction<>(FourHeap.Pooling.POOLED);
+    Order<Integer> buy = ba.submit(BUY, 10, 1);
+    Order<Integer> sell = ba.submit(SELL, 5, 1);
+    Collection<MatchedOrders<Integer>> matches = ba.clear();
+
+    ba.releaseMatches(matches);
+    ba.release(buy);
+    ba.release(sell);
+
+    Order<Integer> reused = ba.submit(SELL, 7, 2);
+    assertTrue(reused == buy || reused == sell);
+    assertEquals(2, reused.getQuantity());
+  }
+
+  /**
+   * The fourheap only matches a new order against unmatched orders before it displaces matched
+   * ones, so here it would trade two units. A batch clear finds all three.
+   */
+  @Test
+  public void displacedQuantityClearsTest() {
+    ba.submit(BUY, 1, 3);
+    ba.submit(SELL, 2, 3);
+    ba.submit(BUY, 3, 2);
+    ba.submit(SELL, 0, 3);
+    assertEquals(1, (int) ba.bidQuote());
+    assertEquals(1, (int) ba.askQuote());
+
+    int volume = 0;
+    for (MatchedOrders<Integer> trans : ba.clear()) {
+      volume += trans.getQuantity();
+    }
+    assertEquals(3, volume);
+    assertEquals(1, (int) ba.bidQuote());
+    assertEquals(2, (int) ba.askQuote());
+  }
+
+  @Test
+  public void randomClearTest() {
+    for (int i = 0; i < 100; ++i) {
+      randomClear(new BatchAuction<>());
+    }
+  }
+
+  // Helper methods
+
+  /**
+   * Submits and withdraws random orders, and checks that each clear trades the maximal volume in
+   * price then time priority, and leaves the book uncrossed.
+   */
+  private static void randomClear(BatchAuction<Integer> ba) {
+    List<Order<Integer>> orders = new ArrayList<>();
+    for (int step = 0; step < 200; ++step) {
+      double action = rand.nextDouble();
+      if (action < 0.6 || orders.isEmpty()) {
+        orders.add(ba.submit(rand.nextBoolean() ? BUY : SELL, rand.nextInt(20),
+            rand.nextInt(3) + 1));
+      } else if (action < 0.8) {
+        Order<Integer> order = orders.get(rand.nextInt(orders.size()));
+        ba.withdraw(order, rand.nextInt(order.getQuantity()) + 1);
+      } else {
+        List<Order<Integer>> buys = sorted(orders, BUY);
+        List<Order<Integer>> sells = sorted(orders, SELL);
+        int[] buyQuantities = quantities(buys);
+        int[] sellQuantities = quantities(sells);
+
+        // Fill units in priority order while the marginal buy is at least the marginal sell
+        int expected = 0;
+        int buyIndex = 0;
+        int sellIndex = 0;
+        while (buyIndex < buys.size() && sellIndex < sells.size()
+            && buys.get(buyIndex).getPrice() >= sells.get(sellIndex).getPrice()) {
+          int quantity = Math.min(buyQuantities[buyIndex], sellQuantities[sellIndex]);
+          buyQuantities[buyIndex] -= quantity;
+          sellQuantities[sellIndex] -= quantity;
+          expected += quantity;
+          buyIndex += buyQuantities[buyIndex] == 0 ? 1 : 0;
+          sellIndex += sellQuantities[sellIndex] == 0 ? 1 : 0;
+        }
+
+        int volume = 0;
+        for (MatchedOrders<Integer> trans : ba.clear()) {
+          volume += trans.getQuantity();
+        }
+        assertEquals(expected, volume);
+        for (int j = 0; j < buys.size(); ++j) {
+          assertEquals(buyQuantities[j], buys.get(j).getQuantity());
+        }
+        for (int j = 0; j < sells.size(); ++j) {
+          assertEquals(sellQuantities[j], sells.get(j).getQuantity());
+        }
+        if (ba.bidQuote() != null && ba.askQuote() != null) {
+          assertTrue(ba.bidQuote() < ba.askQuote());
+        }
+      }
+      orders.removeIf(order -> order.getQuantity() == 0);
+      assertEquals(orders.size(), ba.size());
+    }
+  }
+
+  private static List<Order<Integer>> sorted(List<Order<Integer>> orders, OrderType type) {
+    List<Order<Integer>> side = new ArrayList<>();
+    for (Order<Integer> order : orders) {
+      if (order.getOrderType() == type) {
+        side.add(order);
+      }
+    }
+    side.sort((first, second) -> {
+      int price = type.sign() * second.getPrice().compareTo(first.getPrice());
+      return price != 0 ? price : Long.compare(first.getSubmitTime(), second.getSubmitTime());
+    });
+    return side;
+  }
+
+  private static int[] quantities(List<Order<Integer>> orders) {
+    int[] quantities = new int[orders.size()];
+    for (int i = 0; i < quantities.length; ++i) {
+      quantities[i] = orders.get(i).getQuantity();
+    }
+    return quantities;
+  }
+
+}
@@ -574,6 +574,57 @@ public class FourHeapTest {
     assertTrue(raw.size() > 0);
   }
 
+  @Test
+  public void pooledReuseTest() {
+    fh = new FourHeap<>(FourHeap.Pooling.POOLED);
+    Order<Integer> buy = fh.submit(BUY, 10, 1);
+    Order<Integer> sell = fh.submit(SELL, 5, 1);
+    Collection<MatchedOrders<Integer>> matches = fh.clear();
+    MatchedOrders<Integer> match = Iterables.getOnlyElement(matches);
+
+    fh.releaseMatches(matches);
+    fh.release(buy);
+    fh.release(sell);
+
+    Order<Integer> reused = fh.submit(SELL, 7, 2);
+    assertTrue(reused == buy || reused == sell);
+    assertEquals(SELL, reused.getOrderType());
+    assertEquals(7, (int) reused.getPrice());
+    assertEquals(2, reused.getQuantity());
+
+    fh.submit(BUY, 8, 1);
+    assertTrue(match == Iterables.getOnlyElement(fh.clear()));
+    assertInvariants(fh);
+  }
+
+  @Test
+  public void debugUseAfterReleaseTest() {
+    fh = new FourHeap<>(FourHeap.Pooling.DEBUG);
+    Order<Integer> order = fh.submit(BUY, 10, 1);
+    fh.withdraw(order);
+    fh.release(order);
+
+    try {
+      order.getPrice();
+      fail("Allowed access to released order");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+    assertNotEquals(order, fh.submit(BUY, 10, 1));
+  }
+
+  @Test
+  public void releaseActiveOrderTest() {
+    fh = new FourHeap<>(FourHeap.Pooling.POOLED);
+    Order<Integer> order = fh.submit(BUY, 10, 1);
+    try {
+      fh.release(order);
+      fail("Allowed release of order still in fourheap");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+
   // Helper methods
 
   private static int matchedSize(Queue<Order<Integer>> bh) {
@@ -169,6 +169,30 @@ public class FeaturesTest {
     }, 5, TimeUnit.SECONDS);
   }
 
+  /** Test that competitive equilibrium trades the most valuable units from several agents. */
+  @Test
+  public void multipleAgentEquilibriumTest() {
+    MarketSimulator sim = MarketSimulator.create(ConstantFundamental.create(0), rand);
+    // Buyers that gain 8, 6 and 7, 1 from buying
+    sim.addAgent(MockAgent.builder()
+        .privateValue(PrivateValues.fromMarginalBuys(new double[] {9, 9, 8, 6})).build());
+    sim.addAgent(MockAgent.builder()
+        .privateValue(PrivateValues.fromMarginalBuys(new double[] {9, 9, 7, 1})).build());
+    // Sellers that gain 2, 1 and 5, 3 from selling
+    sim.addAgent(MockAgent.builder()
+        .privateValue(PrivateValues.fromMarginalBuys(new double[] {-1, -2, -9, -9})).build());
+    sim.addAgent(MockAgent.builder()
+        .privateValue(PrivateValues.fromMarginalBuys(new double[] {-3, -5, -9, -9})).build());
+
+    // Trades pair 8 with 5, 7 with 3, 6 with 2, and 1 with 1
+    sim.initialize();
+    JsonObject features = sim.computeFeatures();
+    assertEquals(33, features.get("max_surplus").getAsDouble(), tol);
+    assertEquals(0, features.get("ce_price").getAsDouble(), tol);
+    // Without submissions, no one can trade
+    assertEquals(0, features.get("max_surplus_sublim").getAsDouble(), tol);
+  }
+
   /** Test that submissions is accurately counted. */
   @Test
   public void submissionsTest() {
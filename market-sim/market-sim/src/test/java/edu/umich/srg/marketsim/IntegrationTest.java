@@ -15,10 +15,14 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Multiset.Entry;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import edu.umich.srg.egtaonline.Observation;
 import edu.umich.srg.egtaonline.Observation.Player;
@@ -27,22 +31,38 @@ import edu.umich.srg.egtaonline.SimSpec;
 import edu.umich.srg.egtaonline.SimSpec.RoleStrat;
 import edu.umich.srg.egtaonline.spec.Spec;
 import edu.umich.srg.egtaonline.spec.Value;
+import edu.umich.srg.marketsim.Keys.Antithetic;
+import edu.umich.srg.marketsim.Keys.AntitheticPairs;
 import edu.umich.srg.marketsim.Keys.ArrivalRate;
+import edu.umich.srg.marketsim.Keys.Checkpoints;
+import edu.umich.srg.marketsim.Keys.FeatureCollection;
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
+import edu.umich.srg.marketsim.Keys.FundamentalMean;
 import edu.umich.srg.marketsim.Keys.FundamentalMeanReversion;
+import edu.umich.srg.marketsim.Keys.FundamentalPaths;
+import edu.umich.srg.marketsim.Keys.FundamentalShockProb;
 import edu.umich.srg.marketsim.Keys.FundamentalShockVar;
 import edu.umich.srg.marketsim.Keys.Markets;
+import edu.umich.srg.marketsim.Keys.MaxPosition;
+import edu.umich.srg.marketsim.Keys.PayoffStrategies;
+import edu.umich.srg.marketsim.Keys.PrivateValueVar;
 import edu.umich.srg.marketsim.Keys.RandomSeed;
+import edu.umich.srg.marketsim.Keys.Rmax;
+import edu.umich.srg.marketsim.Keys.Rmin;
 import edu.umich.srg.marketsim.Keys.SimLength;
 import edu.umich.srg.marketsim.agent.Agent;
 import edu.umich.srg.marketsim.agent.NoiseAgent;
 import edu.umich.srg.marketsim.fundamental.ConstantFundamental;
+import edu.umich.srg.marketsim.fundamental.FundamentalLibrary;
 import edu.umich.srg.marketsim.market.CdaMarket;
 import edu.umich.srg.marketsim.market.Market;
 import edu.umich.srg.marketsim.market.Market.AgentInfo;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.DoubleSummaryStatistics;
 import java.util.Iterator;
@@ -54,6 +74,9 @@ import java.util.stream.StreamSupport;
 
 public class IntegrationTest {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private static final Random rand = new Random();
   private static final Gson gson = new Gson();
   private static final Joiner stratJoiner = Joiner.on('_');
@@ -198,6 +221,166 @@ public class IntegrationTest {
       assertTrue(player.getAsJsonObject().has("features"));
   }
 
+  /** Payoffs at a checkpoint are the same as those of a run that ends there. */
+  @Test
+  public void checkpointTest() {
+    int numAgents = 10;
+    long seed = rand.nextLong();
+    Spec agentSpec = Spec.fromPairs(ArrivalRate.class, 0.1);
+    Multiset<RoleStrat> assignment = HashMultiset.create(1);
+    assignment.add(RoleStrat.of("role", toStratString("noise", agentSpec)), numAgents);
+
+    Spec base = Spec.fromPairs(Markets.class, ImmutableList.of("cda"),
+        FundamentalMeanReversion.class, 0.01, FundamentalShockVar.class, 100d, RandomSeed.class,
+        seed);
+    Spec checkpointed = Spec.fromPairs(SimLength.class, 1000l, Checkpoints.class,
+        ImmutableList.of(600l, 300l)).withDefault(base);
+    List<Player> players = ImmutableList.copyOf(
+        CommandLineInterface.simulate(SimSpec.create(assignment, checkpointed), 0).getPlayers());
+
+    for (long length : new long[] {300, 600, 1000}) {
+      Spec shorter = Spec.fromPairs(SimLength.class, length).withDefault(base);
+      Iterator<? extends Player> expected = CommandLineInterface
+          .simulate(SimSpec.create(assignment, shorter), 0).getPlayers().iterator();
+      for (Player player : players) {
+        double payoff = length == 1000 ? player.getPayoff()
+            : player.getCheckpointPayoffs().get(length);
+        assertEquals(expected.next().getPayoff(), payoff, tol);
+      }
+    }
+  }
+
+  /** Checkpoints of a run that only reports some players still match those of a full report. */
+  @Test
+  public void reportedCheckpointTest() {
+    long seed = rand.nextLong();
+    String strategy = toStratString("noise", Spec.fromPairs(ArrivalRate.class, 0.1));
+    Multiset<RoleStrat> assignment = HashMultiset.create(2);
+    assignment.add(RoleStrat.of("reported", strategy), 5);
+    assignment.add(RoleStrat.of("hidden", strategy), 5);
+
+    Spec base = Spec.fromPairs(SimLength.class, 1000l, Checkpoints.class, ImmutableList.of(300l))
+        .withDefault(Spec.fromPairs(Markets.class, ImmutableList.of("cda"),
+            FundamentalMeanReversion.class, 0.01, FundamentalShockVar.class, 100d,
+            RandomSeed.class, seed));
+    List<Player> expected = CommandLineInterface.simulate(SimSpec.create(assignment, base), 0)
+        .getPlayers().stream().filter(player -> player.getRole().equals("reported"))
+        .collect(Collectors.toList());
+
+    for (FeatureLevel level : FeatureLevel.values()) {
+      Spec reported = Spec.fromPairs(PayoffStrategies.class,
+          ImmutableList.of("reported:" + strategy), FeatureCollection.class, level)
+          .withDefault(base);
+      List<Player> players = ImmutableList.copyOf(
+          CommandLineInterface.simulate(SimSpec.create(assignment, reported), 0).getPlayers());
+      assertEquals(expected.size(), players.size());
+      for (int i = 0; i < players.size(); ++i) {
+        assertEquals(expected.get(i).getCheckpointPayoffs().get(300l),
+            players.get(i).getCheckpointPayoffs().get(300l), tol);
+      }
+    }
+  }
+
+  /** A simulation past the number of fundamental paths fails before it starts. */
+  @Test(expected = IllegalArgumentException.class)
+  public void tooFewPathsTest() throws IOException {
+    Path file = folder.newFile().toPath();
+    FundamentalLibrary.write(file, 2, rand.nextLong(), 1000, 0.1, 100, 1, 100);
+    Spec spec = Spec.fromPairs(FundamentalPaths.class, file.toString(), SimLength.class, 100l)
+        .withDefault(Spec.fromPairs(FundamentalMean.class, 1000d, FundamentalMeanReversion.class,
+            0.1, FundamentalShockVar.class, 100d, FundamentalShockProb.class, 1d));
+    CommandLineInterface.simulate(SimSpec.create(ImmutableMultiset.of(), spec), 2);
+  }
+
+  /** Antithetic pairs report the average of the simulation and its antithetic simulation. */
+  @Test
+  public void antitheticPairsTest() {
+    long seed = rand.nextLong();
+    Spec agentSpec = Spec.fromPairs(ArrivalRate.class, 0.1, Rmin.class, 0, Rmax.class, 500,
+        MaxPosition.class, 5, PrivateValueVar.class, 1e6);
+    Multiset<RoleStrat> assignment = HashMultiset.create(1);
+    assignment.add(RoleStrat.of("role", toStratString("zir", agentSpec)), 10);
+
+    Spec base = Spec.fromPairs(Markets.class, ImmutableList.of("cda"), SimLength.class, 500l,
+        FundamentalMeanReversion.class, 0.01, FundamentalShockVar.class, 100d, RandomSeed.class,
+        seed);
+    Spec paired = Spec.fromPairs(AntitheticPairs.class, true).withDefault(base);
+    Spec mirrored = Spec.fromPairs(Antithetic.class, true).withDefault(base);
+    List<Player> pairs = ImmutableList
+        .copyOf(CommandLineInterface.simulate(SimSpec.create(assignment, paired), 0).getPlayers());
+    Iterator<? extends Player> original = CommandLineInterface
+        .simulate(SimSpec.create(assignment, base), 0).getPlayers().iterator();
+    Iterator<? extends Player> antithetic = CommandLineInterface
+        .simulate(SimSpec.create(assignment, mirrored), 0).getPlayers().iterator();
+
+    for (Player player : pairs) {
+      assertEquals((original.next().getPayoff() + antithetic.next().getPayoff()) / 2,
+          player.getPayoff(), tol);
+    }
+  }
+
+  /**
+   * Deviations are sampled with common random numbers, so deviations that behave identically get
+   * identical payoffs, even though their strategies differ. Each deviation's features are reported.
+   */
+  @Test
+  public void deviationsTest() {
+    long seed = rand.nextLong();
+    Spec agentSpec = Spec.fromPairs(ArrivalRate.class, 0.1, Rmin.class, 0, Rmax.class, 500,
+        MaxPosition.class, 5, PrivateValueVar.class, 1e6);
+    Multiset<RoleStrat> assignment = HashMultiset.create(1);
+    assignment.add(RoleStrat.of("role", toStratString("zir", agentSpec)), 9);
+    // Zir agents don't read the shock variance, so this behaves the same as the background
+    List<RoleStrat> deviations = ImmutableList.of(
+        RoleStrat.of("role", toStratString("zir", agentSpec)),
+        RoleStrat.of("role",
+            toStratString("zir", Spec.fromPairs(FundamentalShockVar.class, 1d)
+                .withDefault(agentSpec))),
+        RoleStrat.of("role", toStratString("zir", Spec.fromPairs(Rmax.class, 50)
+            .withDefault(agentSpec))));
+
+    Spec configuration = Spec.fromPairs(Markets.class, ImmutableList.of("cda"), SimLength.class,
+        500l, FundamentalMeanReversion.class, 0.01, FundamentalShockVar.class, 100d,
+        RandomSeed.class, seed);
+    SimSpec spec = SimSpec.create(assignment, configuration, deviations);
+
+    StringWriter obsData = new StringWriter();
+    Runner.run(CommandLineInterface::simulate, toReader(spec), obsData, 3, 1, 1, false, keyPrefix,
+        keyCaseFormat);
+    List<JsonObject> observations = Arrays.stream(obsData.toString().split("\n"))
+        .map(line -> gson.fromJson(line, JsonObject.class)).collect(Collectors.toList());
+    assertEquals(3, observations.size());
+
+    for (int simNum = 0; simNum < 3; ++simNum) {
+      double[] payoffs = Runner.deviationPayoffs(CommandLineInterface::simulate, spec, simNum);
+      assertEquals(deviations.size(), payoffs.length);
+      assertEquals(payoffs[0], payoffs[1], tol);
+
+      Iterator<JsonElement> players =
+          observations.get(simNum).getAsJsonArray("players").iterator();
+      for (int i = 0; i < deviations.size(); ++i) {
+        // Each is the deviator's payoff in the simulation of that deviation alone
+        Player deviator = Iterables.getOnlyElement(Iterables.filter(CommandLineInterface
+            .simulate(spec.withDeviator(deviations.get(i)), simNum).getPlayers(),
+            Player::isDeviator));
+        assertEquals(deviator.getPayoff(), payoffs[i], tol);
+
+        JsonObject player = players.next().getAsJsonObject();
+        assertEquals(deviations.get(i).getStrategy(), player.get("strategy").getAsString());
+        assertEquals(payoffs[i], player.get("payoff").getAsDouble(), tol);
+      }
+      assertFalse(players.hasNext());
+
+      // The features of each deviation's simulation are kept in the same order
+      JsonArray features =
+          observations.get(simNum).getAsJsonObject("features").getAsJsonArray("deviations");
+      assertEquals(deviations.size(), features.size());
+      for (JsonElement armFeatures : features) {
+        assertTrue(armFeatures.getAsJsonObject().has("fundamental"));
+      }
+    }
+  }
+
   /**
    * Tests to see if identical simulations with the same random seed produce the same result. We
    * can't arbitrarily order the agents, because different entry orders in the event queue will
@@ -422,6 +605,19 @@ public class IntegrationTest {
     }
     json.add("assignment", assignment);
 
+    if (!spec.deviations.isEmpty()) {
+      JsonObject deviations = new JsonObject();
+      for (RoleStrat deviation : spec.deviations) {
+        JsonElement strategies = deviations.get(deviation.getRole());
+        if (strategies == null) {
+          strategies = new JsonArray();
+          deviations.add(deviation.getRole(), strategies);
+        }
+        strategies.getAsJsonArray().add(new JsonPrimitive(deviation.getStrategy()));
+      }
+      json.add("deviations", deviations);
+    }
+
     JsonObject configuration = new JsonObject();
     for (Map.Entry<Class<? extends Value<?>>, Value<?>> entry : spec.configuration.entrySet()) {
       configuration.addProperty(
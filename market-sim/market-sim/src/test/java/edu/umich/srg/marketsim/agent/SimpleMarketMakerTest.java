@@ -1,5 +1,8 @@
 package edu.umich.srg.marketsim.agent;
 
+import static edu.umich.srg.fourheap.Order.OrderType.BUY;
+import static edu.umich.srg.fourheap.Order.OrderType.SELL;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -12,12 +15,14 @@ import edu.umich.srg.marketsim.Keys.RungThickness;
 import edu.umich.srg.marketsim.Keys.TickImprovement;
 import edu.umich.srg.marketsim.Keys.TickOutside;
 import edu.umich.srg.marketsim.MarketSimulator;
+import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.TimeStamp;
 import edu.umich.srg.marketsim.fundamental.ConstantFundamental;
 import edu.umich.srg.marketsim.market.CdaMarket;
 import edu.umich.srg.marketsim.market.Market;
 import edu.umich.srg.marketsim.market.Market.MarketView;
-import edu.umich.srg.marketsim.market.OrderNotification;
+import edu.umich.srg.marketsim.market.OrderRecord;
+import edu.umich.srg.marketsim.testing.MockAgent;
 
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -44,8 +49,8 @@ public class SimpleMarketMakerTest {
         rand) {
 
       @Override
-      public void notifyTransaction(MarketView market, OrderNotification notification) {
-        super.notifyTransaction(market, notification);
+      public void notifyOrderTransacted(OrderRecord order, Price price, int quantity) {
+        super.notifyOrderTransacted(order, price, quantity);
         transacted.set(true);
       }
 
@@ -59,4 +64,70 @@ public class SimpleMarketMakerTest {
     assertTrue("MarketMaker didn't transact", transacted.get());
   }
 
+  /** When the quote of other agents doesn't change, the ladder is kept as is. */
+  @Test
+  public void quietMarketTest() {
+    MarketSimulator sim = MarketSimulator.create(ConstantFundamental.create(500), rand);
+    Market cda = sim.addMarket(CdaMarket.create(sim));
+
+    // Other agents only quote at the start
+    sim.addAgent(new MockAgent() {
+      final MarketView view = cda.getView(this, TimeStamp.ZERO);
+
+      @Override
+      public void initialize() {
+        view.submitOrder(BUY, Price.of(400), 1);
+        view.submitOrder(SELL, Price.of(600), 1);
+      }
+    });
+
+    SimpleMarketMaker marketMaker = new SimpleMarketMaker(sim, cda,
+        Spec.builder().put(ArrivalRate.class, 1.0).put(RungThickness.class, 1)
+            .put(NumRungs.class, 4).put(RungSep.class, 10).put(TickImprovement.class, false)
+            .put(TickOutside.class, false).build(),
+        rand);
+    sim.addAgent(marketMaker);
+
+    sim.initialize();
+    sim.executeUntil(TimeStamp.of(20));
+
+    // The maker arrived every step, but only ever submitted its first ladder
+    assertEquals(8, sim.getAgentPayoffs().get(marketMaker).getSubmissions());
+  }
+
+
+  /** When the other agents' quote moves behind the maker's top rung, the ladder follows it. */
+  @Test
+  public void quoteBehindLadderTest() {
+    MarketSimulator sim = MarketSimulator.create(ConstantFundamental.create(500), rand);
+    Market cda = sim.addMarket(CdaMarket.create(sim));
+
+    // Another agent lowers its bid after the maker's ladder improves on it
+    MarketView other = cda.getView(new MockAgent(), TimeStamp.ZERO);
+    sim.addAgent(new MockAgent() {
+      @Override
+      public void initialize() {
+        OrderRecord bid = other.submitOrder(BUY, Price.of(100), 1);
+        other.submitOrder(SELL, Price.of(200), 1);
+        sim.scheduleIn(TimeStamp.of(10), () -> {
+          other.withdrawOrder(bid);
+          other.submitOrder(BUY, Price.of(90), 1);
+        });
+      }
+    });
+
+    SimpleMarketMaker marketMaker = new SimpleMarketMaker(sim, cda,
+        Spec.builder().put(ArrivalRate.class, 1.0).put(RungThickness.class, 1)
+            .put(NumRungs.class, 2).put(RungSep.class, 10).put(TickImprovement.class, true)
+            .put(TickOutside.class, false).build(),
+        rand);
+    sim.addAgent(marketMaker);
+
+    sim.initialize();
+    sim.executeUntil(TimeStamp.of(5));
+    assertEquals(Price.of(101), other.getQuote().getBidPrice().get());
+    sim.executeUntil(TimeStamp.of(20));
+    assertEquals(Price.of(91), other.getQuote().getBidPrice().get());
+  }
+
 }
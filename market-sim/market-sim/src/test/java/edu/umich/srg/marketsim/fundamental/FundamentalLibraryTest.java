@@ -0,0 +1,60 @@
+package edu.umich.srg.marketsim.fundamental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umich.srg.marketsim.Price;
+import edu.umich.srg.marketsim.TimeStamp;
+import edu.umich.srg.util.PositionalSeed;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class FundamentalLibraryTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final Random rand = new Random();
+
+  @Test
+  public void readWriteTest() throws IOException {
+    Path file = folder.newFile().toPath();
+    long seed = rand.nextLong();
+    FundamentalLibrary.write(file, 3, seed, 1000, 0.1, 100, 0.5, 200);
+
+    FundamentalLibrary library = FundamentalLibrary.open(file);
+    assertEquals(3, library.getNumPaths());
+    assertEquals(200, library.getLength());
+    assertTrue(library.matches(1000, 0.1, 100, 0.5));
+    assertFalse(library.matches(1000, 0.1, 100, 1));
+
+    // Each path is the dense path from its positional seed
+    PositionalSeed seeds = PositionalSeed.with(seed);
+    for (int k = 0; k < 3; ++k) {
+      double[] expected = GaussianMeanReverting.samplePath(new Random(seeds.getSeed(k)), 1000, 0.1,
+          100, 0.5, 200, false);
+      Fundamental fundamental = library.getFundamental(k);
+      Fundamental antithetic = library.getFundamental(k, true);
+      for (int t = 0; t <= 200; ++t) {
+        assertEquals(Price.of(expected[t]).nonnegative(), fundamental.getValueAt(TimeStamp.of(t)));
+        assertEquals(Price.of(2000 - expected[t]).nonnegative(),
+            antithetic.getValueAt(TimeStamp.of(t)));
+      }
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void missingPathTest() throws IOException {
+    Path file = folder.newFile().toPath();
+    FundamentalLibrary.write(file, 2, rand.nextLong(), 1000, 0.1, 100, 1, 10);
+    FundamentalLibrary.open(file).getFundamental(2);
+  }
+
+}
@@ -1,8 +1,9 @@
 package edu.umich.srg.marketsim.fundamental;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
 import org.junit.Ignore;
@@ -13,7 +14,7 @@ import org.junit.experimental.theories.Theory;
 import org.junit.runner.RunWith;
 
 import edu.umich.srg.collect.Collectors;
-import edu.umich.srg.collect.Sparse;
+import edu.umich.srg.collect.TimeSeries;
 import edu.umich.srg.distributions.Distribution.LongDistribution;
 import edu.umich.srg.distributions.Uniform;
 import edu.umich.srg.marketsim.Price;
@@ -75,6 +76,176 @@ public class GaussianMeanRevertingTest {
     assertEquals(53, Iterables.size(fundamental.getFundamentalValues(finalTime)));
   }
 
+  /**
+   * The value of a dense fundamental at a few times has the mean and variance of the process. The
+   * difference from the mean shrinks by 1 - kappa and gains the shock variance at each jump, so
+   * the variance follows v' = v (1 - p + p (1 - kappa)^2) + p var from zero.
+   */
+  @Theory
+  public void denseDistributionTest(@TestDoubles({0, 0.3}) double kappa,
+      @TestDoubles({0.5, 1}) double shockProb) {
+    // The mean is far from zero so prices never need to be clipped
+    double fundamentalMean = 1e6;
+    double shockVar = 1e4;
+    long[] times = {10, 25, 50};
+    int samples = 10000;
+    SummStats[] values = new SummStats[times.length];
+    for (int i = 0; i < times.length; ++i) {
+      values[i] = SummStats.empty();
+    }
+    for (int n = 0; n < samples; ++n) {
+      Fundamental fundamental = GaussianMeanReverting.createDense(rand, fundamentalMean, kappa,
+          shockVar, shockProb, 50);
+      for (int i = 0; i < times.length; ++i) {
+        values[i].accept(fundamental.getValueAt(TimeStamp.of(times[i])).doubleValue());
+      }
+    }
+
+    double variance = 0;
+    long time = 0;
+    for (int i = 0; i < times.length; ++i) {
+      for (; time < times[i]; ++time) {
+        variance = variance * (1 - shockProb + shockProb * (1 - kappa) * (1 - kappa))
+            + shockProb * shockVar;
+      }
+      double meanError = Math.abs(values[i].getAverage() - fundamentalMean)
+          / Math.sqrt(variance / samples);
+      Asserts.assertTrue(meanError < 5, "Mean at %d was %f standard errors off", times[i],
+          meanError);
+      double varianceError = Math.abs(values[i].getVariance() - variance) / variance;
+      Asserts.assertTrue(varianceError < 0.1, "Variance at %d was off by %f", times[i],
+          varianceError);
+    }
+  }
+
+  /** An antithetic fundamental is the original mirrored about the mean. */
+  @Repeat(100)
+  @Theory
+  public void antitheticTest(@TestDoubles({0, 0.3, 1}) double kappa,
+      @TestDoubles({0.2, 1}) double shockProb, @TestInts({0, 1}) int dense) {
+    long length = 200;
+    long seed = rand.nextLong();
+    Fundamental original;
+    Fundamental antithetic;
+    if (dense == 1) {
+      original = GaussianMeanReverting.createDense(new Random(seed), mean, kappa, 100, shockProb,
+          length, false);
+      antithetic = GaussianMeanReverting.createDense(new Random(seed), mean, kappa, 100, shockProb,
+          length, true);
+    } else {
+      original = GaussianMeanReverting.create(new Random(seed), mean, kappa, 100, shockProb, false);
+      antithetic =
+          GaussianMeanReverting.create(new Random(seed), mean, kappa, 100, shockProb, true);
+    }
+
+    // Query in opposite orders, which mustn't matter
+    double[] mirrored = new double[(int) length + 1];
+    for (int t = (int) length; t >= 0; --t) {
+      mirrored[t] = antithetic.getValueAt(TimeStamp.of(t)).doubleValue();
+    }
+    for (int t = 0; t <= length; ++t) {
+      // Each price is rounded separately
+      assertEquals(2 * mean, original.getValueAt(TimeStamp.of(t)).doubleValue() + mirrored[t], 1);
+    }
+  }
+
+  /** Dense fundamentals say why they can't be queried past their length. */
+  @Test
+  public void densePastLengthTest() {
+    Fundamental fundamental = GaussianMeanReverting.createDense(rand, 1000, 0.1, 100, 0.5, 100);
+    try {
+      fundamental.getValueAt(TimeStamp.of(101));
+      fail("Queried past the end of a dense fundamental");
+    } catch (IndexOutOfBoundsException e) {
+      assertTrue(e.getMessage().contains("SimLength"));
+    }
+  }
+
+  /** Dense rmsd of a random walk is the rmsd against the fundamental at every time. */
+  @Test
+  public void denseRmsdTest() {
+    long length = 100;
+    Fundamental fundamental =
+        GaussianMeanReverting.createDense(rand, 100000, 0, 100, 0.5, length);
+    RmsdAccumulator rmsd = fundamental.rmsdAccumulator();
+    rmsd.accept(10, 99990);
+    rmsd.accept(50, 100010);
+
+    SummStats expected = SummStats.empty();
+    for (long t = 10; t <= length; ++t) {
+      double price = t < 50 ? 99990 : 100010;
+      double diff = fundamental.getValueAt(TimeStamp.of(t)).doubleValue() - price;
+      expected.accept(diff * diff);
+    }
+    // Queried values are rounded to whole prices
+    assertEquals(Math.sqrt(expected.getAverage()), rmsd.get(TimeStamp.of(length)), 0.5);
+  }
+
+  /**
+   * Streaming rmsd of a mean reverting dense fundamental is the rmsd against the estimate of the
+   * final fundamental at every time, with a repeated time replacing the earlier price.
+   */
+  @Test
+  public void denseStreamingRmsdTest() {
+    long length = 100;
+    double reversion = 1 - 0.5 * 0.1;
+    Fundamental fundamental = GaussianMeanReverting.createDense(rand, 1000, 0.1, 100, 0.5, length);
+    TimeSeries prices = TimeSeries.empty();
+    RmsdAccumulator rmsd = fundamental.rmsdAccumulator();
+    for (long time : new long[] {5, 20, 20, 60, 99}) {
+      double price = 1000 + rand.nextGaussian() * 10;
+      prices.add(time, price);
+      rmsd.accept(time, price);
+    }
+
+    SummStats expected = SummStats.empty();
+    int index = 0;
+    for (long t = 5; t <= length; ++t) {
+      while (index + 1 < prices.size() && prices.getTime(index + 1) <= t) {
+        index++;
+      }
+      double estimate = 1000 + (fundamental.getValueAt(TimeStamp.of(t)).doubleValue() - 1000)
+          * Math.pow(reversion, length - t);
+      double diff = estimate - prices.getValue(index);
+      expected.accept(diff * diff);
+    }
+    // Queried values are rounded to whole prices
+    assertEquals(Math.sqrt(expected.getAverage()), rmsd.get(TimeStamp.of(length)), 0.5);
+  }
+
+  /**
+   * The streaming rmsd of a lazy fundamental only looks at the fundamental when prices change, but
+   * its square should match the mean squared difference at every step on average.
+   */
+  @Theory
+  public void expectedRmsdTest(@TestDoubles({0, 0.1, 1}) double meanReversion,
+      @TestDoubles({0.3, 1}) double shockProb) {
+    long length = 100;
+    double reversion = 1 - shockProb * meanReversion;
+    SummStats expected = SummStats.empty();
+    SummStats actual = SummStats.empty();
+    for (int i = 0; i < 2000; ++i) {
+      Fundamental fundamental =
+          GaussianMeanReverting.create(rand, 1e6, meanReversion, 1e4, shockProb);
+      RmsdAccumulator rmsd = fundamental.rmsdAccumulator();
+      rmsd.accept(10, 1e6 + 100);
+      rmsd.accept(40, 1e6 - 100);
+      double streamed = rmsd.get(TimeStamp.of(length));
+      actual.accept(streamed * streamed);
+
+      SummStats squared = SummStats.empty();
+      for (long t = 10; t <= length; ++t) {
+        double estimate = 1e6 + (fundamental.getValueAt(TimeStamp.of(t)).doubleValue() - 1e6)
+            * Math.pow(reversion, length - t);
+        double diff = estimate - (t < 40 ? 1e6 + 100 : 1e6 - 100);
+        squared.accept(diff * diff);
+      }
+      expected.accept(squared.getAverage());
+    }
+    double error = Math.abs(actual.getAverage() - expected.getAverage()) / expected.getAverage();
+    Asserts.assertTrue(error < 0.05, "Average error (%f) was too high", error);
+  }
+
   /**
    * This test uses FundamentalRmsd to calculate the sparse expected rmsd of a fundamental without
    * requesting new values. This rmsd is compared to the true rmsd after sampling the rest of the
@@ -97,8 +268,9 @@ public class GaussianMeanRevertingTest {
         fund.getValueAt(TimeStamp.of(sampling.sample(rand)));
       }
 
-      double expected = fund.rmsd(ImmutableList.of(Sparse.immutableEntry(0, price)).iterator(),
-          TimeStamp.of(finalTime));
+      RmsdAccumulator rmsd = fund.rmsdAccumulator();
+      rmsd.accept(0, price);
+      double expected = rmsd.get(TimeStamp.of(finalTime));
 
       SummStats observedMean = SummStats.empty();
       for (long t = 0; t <= finalTime; t++) {
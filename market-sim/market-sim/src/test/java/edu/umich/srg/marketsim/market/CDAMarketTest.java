@@ -3,14 +3,35 @@ package edu.umich.srg.marketsim.market;
 import static edu.umich.srg.fourheap.Order.OrderType.BUY;
 import static edu.umich.srg.fourheap.Order.OrderType.SELL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonObject;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+
+import edu.umich.srg.egtaonline.spec.Spec;
+import edu.umich.srg.marketsim.Keys;
+import edu.umich.srg.marketsim.Keys.FeatureLevel;
+import edu.umich.srg.marketsim.Keys.TradeClasses;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.TimeStamp;
+import edu.umich.srg.marketsim.agent.Agent;
+import edu.umich.srg.marketsim.agent.Agent.TradeRole;
+import edu.umich.srg.marketsim.market.Market.AgentInfo;
+import edu.umich.srg.marketsim.market.Market.MarketData;
 import edu.umich.srg.marketsim.market.Market.MarketView;
+import edu.umich.srg.marketsim.market.Market.OrderBatch;
 import edu.umich.srg.marketsim.testing.MarketAsserts;
 import edu.umich.srg.marketsim.testing.MockAgent;
 import edu.umich.srg.marketsim.testing.MockSim;
@@ -73,4 +94,256 @@ public class CDAMarketTest {
     assertEquals(0, buy.getQuantity());
     assertEquals(0, sell.getQuantity());
   }
+
+  @Test
+  public void batchTest() {
+    OrderRecord first = view.submitOrder(SELL, Price.of(100), 1);
+    OrderRecord second = view.submitOrder(SELL, Price.of(110), 1);
+
+    OrderBatch batch = view.createBatch();
+    batch.withdrawOrder(first);
+    batch.withdrawOrder(second);
+    OrderRecord buy = batch.submitOrder(BUY, Price.of(90), 2);
+    OrderRecord sell = batch.submitOrder(SELL, Price.of(120), 1);
+    MarketAsserts.assertQuote(view.getQuote(), null, Price.of(100));
+
+    batch.execute();
+    MarketAsserts.assertQuote(view.getQuote(), Price.of(90), Price.of(120));
+    assertEquals(0, first.getQuantity());
+    assertEquals(0, second.getQuantity());
+    assertEquals(ImmutableSet.of(buy, sell), view.getActiveOrders());
+    assertEquals(5, view.getSubmissions());
+  }
+
+  @Test
+  public void batchTransactionTest() {
+    OrderRecord buy = view.submitOrder(BUY, Price.of(100), 1);
+
+    OrderBatch batch = view.createBatch();
+    OrderRecord sell = batch.submitOrder(SELL, Price.of(50), 1);
+    OrderRecord resting = batch.submitOrder(SELL, Price.of(150), 1);
+    batch.execute();
+
+    MarketAsserts.assertQuote(view.getQuote(), null, Price.of(150));
+    assertEquals(Price.of(100), agent.lastTransactionPrice);
+    assertEquals(0, buy.getQuantity());
+    assertEquals(0, sell.getQuantity());
+    assertEquals(ImmutableSet.of(resting), view.getActiveOrders());
+  }
+
+  @Test
+  public void subscriptionTest() {
+    int[] notified = new int[3];
+    MockAgent subscriber = new MockAgent() {
+      @Override
+      public void notifyOrderSubmittedToMarket(MarketView market, OrderNotification notification) {
+        notified[0]++;
+      }
+
+      @Override
+      public void notifyOrderWithdrawnFromMarket(MarketView market,
+          OrderNotification notification) {
+        notified[1]++;
+      }
+
+      @Override
+      public void notifyTransaction(MarketView market, OrderNotification notification) {
+        notified[2]++;
+      }
+    };
+    MockAgent other = new MockAgent() {
+      @Override
+      public void notifyOrderSubmittedToMarket(MarketView market, OrderNotification notification) {
+        throw new AssertionError("Not subscribed to submissions");
+      }
+    };
+    market.getView(subscriber, TimeStamp.ZERO, EnumSet.of(MarketData.TRANSACTIONS));
+    market.getView(other, TimeStamp.ZERO, EnumSet.noneOf(MarketData.class));
+
+    OrderRecord order = view.submitOrder(SELL, Price.of(100), 1);
+    view.withdrawOrder(order, order.quantity);
+    view.submitOrder(SELL, Price.of(100), 1);
+    view.submitOrder(BUY, Price.of(100), 1);
+
+    assertEquals(0, notified[0]);
+    assertEquals(0, notified[1]);
+    assertEquals(1, notified[2]);
+  }
+
+  @Test
+  public void sharedNotificationTest() {
+    List<OrderNotification> received = new ArrayList<>();
+    for (int i = 0; i < 2; ++i) {
+      market.getView(new MockAgent() {
+        @Override
+        public void notifyTransaction(MarketView market, OrderNotification notification) {
+          received.add(notification);
+        }
+      }, TimeStamp.ZERO, EnumSet.of(MarketData.TRANSACTIONS));
+    }
+
+    view.submitOrder(SELL, Price.of(100), 1);
+    view.submitOrder(BUY, Price.of(100), 1);
+
+    assertEquals(2, received.size());
+    assertSame(received.get(0), received.get(1));
+    assertEquals(SELL, received.get(0).getOrderType());
+  }
+
+  @Test
+  public void quoteSubscriptionTest() {
+    int[] updates = new int[1];
+    MockAgent other = new MockAgent() {
+      @Override
+      public void notifyQuoteUpdated(MarketView market) {
+        updates[0]++;
+      }
+    };
+    MarketView unsubscribed =
+        market.getView(other, TimeStamp.ZERO, EnumSet.noneOf(MarketData.class));
+
+    view.submitOrder(BUY, Price.of(100), 1);
+    view.submitOrder(SELL, Price.of(120), 1);
+
+    assertEquals(0, updates[0]);
+    MarketAsserts.assertQuote(unsubscribed.getQuote(), Price.of(100), Price.of(120));
+  }
+
+  @Test
+  public void latentDeliveryTest() {
+    List<Runnable> events = new ArrayList<>();
+    MockSim latentSim = new MockSim() {
+      @Override
+      public void scheduleIn(TimeStamp delay, Runnable activity) {
+        events.add(activity);
+      }
+
+      @Override
+      public <T> void scheduleEachIn(TimeStamp delay, List<T> targets,
+          Consumer<? super T> activity) {
+        events.add(() -> targets.forEach(activity));
+      }
+    };
+    CdaMarket latentMarket = CdaMarket.create(latentSim);
+    MarketView immediate = latentMarket.getView(new MockAgent(), TimeStamp.ZERO);
+    List<MarketView> latent = new ArrayList<>();
+    for (int i = 0; i < 3; ++i) {
+      latent.add(latentMarket.getView(new MockAgent(), TimeStamp.of(5)));
+    }
+    latent.add(latentMarket.getView(new MockAgent(), TimeStamp.of(7)));
+
+    immediate.submitOrder(BUY, Price.of(100), 1);
+    // One delivery per latency, not per view
+    assertEquals(2, events.size());
+    for (MarketView view : latent) {
+      MarketAsserts.assertQuote(view.getQuote(), null, null);
+    }
+
+    events.forEach(Runnable::run);
+    for (MarketView view : latent) {
+      MarketAsserts.assertQuote(view.getQuote(), Price.of(100), null);
+    }
+  }
+
+  @Test
+  public void featureLevelTest() {
+    CdaMarket summary = CdaMarket.create(featureSim(FeatureLevel.SUMMARY));
+    trade(summary.getView(new MockAgent(), TimeStamp.ZERO));
+    JsonObject features = summary.getFeatures();
+    assertEquals(1, features.get("transactions").getAsInt());
+    assertEquals(100, features.get("price_mean").getAsDouble(), 0);
+    assertFalse(features.has("prices"));
+
+    CdaMarket none = CdaMarket.create(featureSim(FeatureLevel.NONE));
+    trade(none.getView(new MockAgent(), TimeStamp.ZERO));
+    assertEquals(0, none.getFeatures().entrySet().size());
+  }
+
+  @Test
+  public void agentInfoSubsetTest() {
+    MockAgent other = new MockAgent();
+    MarketView otherView = market.getView(other, TimeStamp.ZERO);
+    view.submitOrder(BUY, Price.of(100), 1);
+    otherView.submitOrder(SELL, Price.of(100), 1);
+
+    List<Entry<Agent, AgentInfo>> info = new ArrayList<>();
+    market.getAgentInfo(ImmutableSet.of(other)).forEach(info::add);
+    assertEquals(1, info.size());
+    assertSame(other, info.get(0).getKey());
+    assertEquals(-1, info.get(0).getValue().getHoldings());
+    assertEquals(100, info.get(0).getValue().getProfit(), 0);
+  }
+
+  /** Other agents' orders at the same price as ours still count toward their quote. */
+  @Test
+  public void othersQuoteTest() {
+    MarketView other = market.getView(new MockAgent(), TimeStamp.ZERO);
+    view.submitOrder(BUY, Price.of(110), 1);
+    view.submitOrder(BUY, Price.of(100), 2);
+    other.submitOrder(BUY, Price.of(100), 1);
+    other.submitOrder(BUY, Price.of(90), 1);
+    view.submitOrder(SELL, Price.of(120), 1);
+
+    Quote quote = view.getOthersQuote();
+    MarketAsserts.assertQuote(quote, Price.of(100), null);
+    assertEquals(2, quote.getBidDepth());
+    assertEquals(0, quote.getAskDepth());
+    MarketAsserts.assertQuote(other.getOthersQuote(), Price.of(110), Price.of(120));
+  }
+
+  @Test
+  public void tradeClassTest() {
+    MarketView zi = market.getView(roleAgent(TradeRole.ZI), TimeStamp.ZERO);
+    MarketView spoofer = market.getView(roleAgent(TradeRole.SPOOFER), TimeStamp.ZERO);
+    zi.submitOrder(BUY, Price.of(100), 1);
+    view.submitOrder(SELL, Price.of(100), 1);
+    spoofer.submitOrder(SELL, Price.of(110), 1);
+    zi.submitOrder(BUY, Price.of(110), 1);
+
+    JsonObject features = market.getFeatures();
+    assertEquals(0, features.getAsJsonArray("zi_prices").size());
+    assertEquals(1, features.getAsJsonArray("zi_hbl_prices").size());
+    assertEquals(1, features.getAsJsonArray("spoofing_prices").size());
+  }
+
+  @Test
+  public void tradeClassOverrideTest() {
+    market = CdaMarket.createFromSpec(sim, Spec.builder()
+        .put(TradeClasses.class, ImmutableList.of("ZI:SPOOFER:ZI", "OTHER:ZI:HBL")).build()
+        .withDefault(Keys.DEFAULT_KEYS));
+    MarketView zi = market.getView(roleAgent(TradeRole.ZI), TimeStamp.ZERO);
+    MarketView spoofer = market.getView(roleAgent(TradeRole.SPOOFER), TimeStamp.ZERO);
+    zi.submitOrder(BUY, Price.of(100), 1);
+    view.submitOrder(SELL, Price.of(100), 1);
+    spoofer.submitOrder(SELL, Price.of(110), 1);
+    zi.submitOrder(BUY, Price.of(110), 1);
+
+    JsonObject features = market.getFeatures();
+    assertEquals(1, features.getAsJsonArray("zi_prices").size());
+    assertEquals(0, features.getAsJsonArray("zi_hbl_prices").size());
+    assertEquals(0, features.getAsJsonArray("spoofing_prices").size());
+  }
+
+  private static MockAgent roleAgent(TradeRole role) {
+    return new MockAgent() {
+      @Override
+      public TradeRole getTradeRole() {
+        return role;
+      }
+    };
+  }
+
+  private static MockSim featureSim(FeatureLevel level) {
+    return new MockSim() {
+      @Override
+      public FeatureLevel getFeatureLevel() {
+        return level;
+      }
+    };
+  }
+
+  private static void trade(MarketView view) {
+    view.submitOrder(BUY, Price.of(100), 1);
+    view.submitOrder(SELL, Price.of(50), 1);
+  }
 }
@@ -5,9 +5,19 @@ import static edu.umich.srg.fourheap.Order.OrderType.SELL;
 import static edu.umich.srg.marketsim.testing.MarketAsserts.ABSENT;
 import static edu.umich.srg.marketsim.testing.MarketAsserts.assertQuote;
 
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import edu.umich.srg.egtaonline.spec.Spec;
+import edu.umich.srg.marketsim.Keys.Pricing;
+import edu.umich.srg.marketsim.Keys.Sweep;
+import edu.umich.srg.marketsim.Keys.SweepClearIntervals;
+import edu.umich.srg.marketsim.Keys.SweepMode;
+import edu.umich.srg.marketsim.Keys.SweepPricings;
 import edu.umich.srg.marketsim.MarketSimulator;
 import edu.umich.srg.marketsim.Price;
 import edu.umich.srg.marketsim.TimeStamp;
@@ -19,6 +29,7 @@ import edu.umich.srg.marketsim.testing.MockSim;
 
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CallMarketTest {
 
@@ -136,4 +147,69 @@ public class CallMarketTest {
     assertQuote(view.getQuote(), 100, 125);
   }
 
+  /** Test that shadow markets see the same orders, but their trades don't reach agents */
+  @Test
+  public void shadowMarketTest() {
+    MarketSimulator sim = MarketSimulator.create(ConstantFundamental.create(1000), rand);
+    CallMarket market = CallMarket.create(sim, 100);
+    market.addShadows(Spec.fromPairs(Sweep.class, SweepMode.COUNTERFACTUAL,
+        SweepClearIntervals.class, ImmutableList.of(100L, 300L), SweepPricings.class,
+        ImmutableList.of(), Pricing.class, 0.5));
+    AtomicInteger transacted = new AtomicInteger(0);
+    Agent agent = new MockAgent() {
+
+      @Override
+      public void notifyOrderTransacted(OrderRecord order, Price price, int quantity) {
+        transacted.incrementAndGet();
+      }
+
+    };
+    MarketView view = market.getView(agent);
+
+    sim.scheduleIn(TimeStamp.of(50), () -> view.submitOrder(BUY, Price.of(200), 1));
+    sim.scheduleIn(TimeStamp.of(150), () -> view.submitOrder(SELL, Price.of(100), 1));
+    sim.executeUntil(TimeStamp.of(400));
+    Assert.assertEquals(2, transacted.get());
+
+    JsonObject shadows =
+        market.getFeatures().getAsJsonObject("shadows");
+    JsonArray same = shadows.getAsJsonObject("clear_interval_100_pricing_0.5")
+        .getAsJsonArray("prices").get(0).getAsJsonArray();
+    Assert.assertEquals(200, same.get(0).getAsLong());
+    Assert.assertEquals(150, same.get(1).getAsLong());
+    JsonArray slower = shadows.getAsJsonObject("clear_interval_300_pricing_0.5")
+        .getAsJsonArray("prices").get(0).getAsJsonArray();
+    Assert.assertEquals(300, slower.get(0).getAsLong());
+    Assert.assertEquals(150, slower.get(1).getAsLong());
+  }
+
+  /**
+   * Test that when an order that partially transacted is withdrawn, its shadow is withdrawn
+   * entirely, even though the shadow hasn't transacted yet.
+   */
+  @Test
+  public void shadowWithdrawAfterPartialFillTest() {
+    MarketSimulator sim = MarketSimulator.create(ConstantFundamental.create(1000), rand);
+    CdaMarket market = CdaMarket.create(sim);
+    market.addShadows(Spec.fromPairs(Sweep.class, SweepMode.COUNTERFACTUAL,
+        SweepClearIntervals.class, ImmutableList.of(100L), SweepPricings.class,
+        ImmutableList.of(), Pricing.class, 0.5));
+    MarketView buyer = market.getView(MockAgent.create());
+    MarketView seller = market.getView(MockAgent.create());
+
+    AtomicReference<OrderRecord> buy = new AtomicReference<>();
+    sim.scheduleIn(TimeStamp.of(10), () -> buy.set(buyer.submitOrder(BUY, Price.of(200), 2)));
+    // Transacts one unit in the real market, but nothing in the shadow until time 100
+    sim.scheduleIn(TimeStamp.of(20), () -> seller.submitOrder(SELL, Price.of(100), 1));
+    sim.scheduleIn(TimeStamp.of(30), () -> buyer.withdrawOrder(buy.get()));
+    sim.executeUntil(TimeStamp.of(200));
+    Assert.assertTrue(buyer.getActiveOrders().isEmpty());
+
+    // The sell stays in the shadow since its real order is gone, but there are no bids to trade
+    JsonObject shadow = market.getFeatures()
+        .getAsJsonObject("shadows").getAsJsonObject("clear_interval_100_pricing_0.5");
+    Assert.assertEquals(0, shadow.getAsJsonArray("prices").size());
+    Assert.assertEquals(0, shadow.getAsJsonArray("midquotes").size());
+  }
+
 }
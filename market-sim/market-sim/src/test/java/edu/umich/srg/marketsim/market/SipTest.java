@@ -0,0 +1,137 @@
+package edu.umich.srg.marketsim.market;
+
+import static edu.umich.srg.fourheap.Order.OrderType.BUY;
+import static edu.umich.srg.fourheap.Order.OrderType.SELL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import edu.umich.srg.marketsim.Price;
+import edu.umich.srg.marketsim.TimeStamp;
+import edu.umich.srg.marketsim.market.Market.MarketView;
+import edu.umich.srg.marketsim.market.Sip.NbboView;
+import edu.umich.srg.marketsim.testing.MarketAsserts;
+import edu.umich.srg.marketsim.testing.MockAgent;
+import edu.umich.srg.marketsim.testing.MockSim;
+
+public class SipTest {
+
+  private static final Random rand = new Random();
+
+  @Test
+  public void emptyTest() {
+    Sip sip = Sip.create(TimeStamp.ZERO);
+    sip.addMarket(CdaMarket.create(new MockSim()));
+    NbboView nbbo = sip.getView();
+    MarketAsserts.assertQuote(nbbo.getQuote(), null, null);
+    assertFalse(nbbo.getBestBidMarket().isPresent());
+    assertFalse(nbbo.getBestAskMarket().isPresent());
+  }
+
+  @Test
+  public void bestMarketTest() {
+    MockSim sim = new MockSim();
+    Sip sip = Sip.create(TimeStamp.ZERO);
+    CdaMarket first = CdaMarket.create(sim);
+    CdaMarket second = CdaMarket.create(sim);
+    sip.addMarket(first);
+    sip.addMarket(second);
+    NbboView nbbo = sip.getView();
+
+    MarketView firstView = first.getView(new MockAgent(), TimeStamp.ZERO);
+    MarketView secondView = second.getView(new MockAgent(), TimeStamp.ZERO);
+    firstView.submitOrder(BUY, Price.of(100), 1);
+    firstView.submitOrder(SELL, Price.of(120), 1);
+    OrderRecord bid = secondView.submitOrder(BUY, Price.of(105), 2);
+    secondView.submitOrder(SELL, Price.of(125), 1);
+
+    MarketAsserts.assertQuote(nbbo.getQuote(), Price.of(105), Price.of(120));
+    assertEquals(2, nbbo.getQuote().getBidDepth());
+    assertEquals(second, nbbo.getBestBidMarket().get());
+    assertEquals(first, nbbo.getBestAskMarket().get());
+
+    secondView.withdrawOrder(bid);
+    MarketAsserts.assertQuote(nbbo.getQuote(), Price.of(100), Price.of(120));
+    assertEquals(first, nbbo.getBestBidMarket().get());
+  }
+
+  /** Quotes that exist before anyone asks for the SIP's view are still part of the NBBO. */
+  @Test
+  public void existingQuoteTest() {
+    MockSim sim = new MockSim();
+    Sip sip = Sip.create(TimeStamp.of(5));
+    CdaMarket first = CdaMarket.create(sim);
+    CdaMarket second = CdaMarket.create(sim);
+    sip.addMarket(first);
+    first.getView(new MockAgent(), TimeStamp.ZERO).submitOrder(BUY, Price.of(100), 1);
+    second.getView(new MockAgent(), TimeStamp.ZERO).submitOrder(SELL, Price.of(120), 2);
+
+    NbboView nbbo = sip.getView();
+    sip.addMarket(second);
+    MarketAsserts.assertQuote(nbbo.getQuote(), Price.of(100), Price.of(120));
+    assertEquals(2, nbbo.getQuote().getAskDepth());
+    assertEquals(first, nbbo.getBestBidMarket().get());
+    assertEquals(second, nbbo.getBestAskMarket().get());
+  }
+
+  @Test
+  public void latencyTest() {
+    List<Runnable> events = new ArrayList<>();
+    MockSim sim = new MockSim() {
+      @Override
+      public <T> void scheduleEachIn(TimeStamp delay, List<T> targets,
+          Consumer<? super T> activity) {
+        events.add(() -> targets.forEach(activity));
+      }
+    };
+    Sip sip = Sip.create(TimeStamp.of(5));
+    CdaMarket market = CdaMarket.create(sim);
+    sip.addMarket(market);
+    NbboView nbbo = sip.getView();
+
+    market.getView(new MockAgent(), TimeStamp.ZERO).submitOrder(BUY, Price.of(100), 1);
+    MarketAsserts.assertQuote(nbbo.getQuote(), null, null);
+    events.forEach(Runnable::run);
+    MarketAsserts.assertQuote(nbbo.getQuote(), Price.of(100), null);
+  }
+
+  /** The NBBO always matches the best quote found by checking every market. */
+  @Test
+  public void randomTest() {
+    MockSim sim = new MockSim();
+    Sip sip = Sip.create(TimeStamp.ZERO);
+    List<MarketView> views = new ArrayList<>();
+    for (int i = 0; i < 20; ++i) {
+      CdaMarket market = CdaMarket.create(sim);
+      sip.addMarket(market);
+      views.add(market.getView(new MockAgent(), TimeStamp.ZERO));
+    }
+    NbboView nbbo = sip.getView();
+
+    for (int i = 0; i < 1000; ++i) {
+      MarketView view = views.get(rand.nextInt(views.size()));
+      if (!view.getActiveOrders().isEmpty() && rand.nextBoolean()) {
+        view.withdrawOrder(view.getActiveOrders().iterator().next());
+      } else {
+        view.submitOrder(rand.nextBoolean() ? BUY : SELL, Price.of(rand.nextInt(100)), 1);
+      }
+
+      Price bestBid = null;
+      Price bestAsk = null;
+      for (MarketView other : views) {
+        Price bid = other.getQuote().getBidPrice().orNull();
+        Price ask = other.getQuote().getAskPrice().orNull();
+        bestBid = bestBid == null || (bid != null && bid.compareTo(bestBid) > 0) ? bid : bestBid;
+        bestAsk = bestAsk == null || (ask != null && ask.compareTo(bestAsk) < 0) ? ask : bestAsk;
+      }
+      MarketAsserts.assertQuote(nbbo.getQuote(), bestBid, bestAsk);
+    }
+  }
+
+}
@@ -16,6 +16,7 @@ import edu.umich.srg.testing.Asserts;
 import edu.umich.srg.testing.TestInts;
 
 import java.util.Random;
+import java.util.stream.DoubleStream;
 
 @RunWith(Theories.class)
 public class ListPrivateValueTest {
@@ -41,6 +42,38 @@ public class ListPrivateValueTest {
     }
   }
 
+  /** The value at a position is the sum of the marginal values of trading up to it. */
+  @Theory
+  public void positionValueTest(@TestInts({1, 10, 100}) int maxPos,
+      @TestInts({0, 1}) int distIndex) {
+    PrivateValue pv = new ListPrivateValue(distributions[distIndex], maxPos, rand);
+    double value = 0;
+    for (int pos = 0; pos <= maxPos + 2; ++pos) {
+      assertEquals(value, pv.valueAtPosition(pos), 1e-6);
+      value += pv.valueForExchange(pos, BUY);
+    }
+    value = 0;
+    for (int pos = 0; pos >= -maxPos - 2; --pos) {
+      assertEquals(value, pv.valueAtPosition(pos), 1e-6);
+      value += pv.valueForExchange(pos, SELL);
+    }
+  }
+
+  /** Values are the distribution's draws, in descending order. */
+  @Theory
+  public void sampledValuesTest(@TestInts({1, 10, 100}) int maxPos,
+      @TestInts({0, 1}) int distIndex) {
+    DoubleDistribution dist = distributions[distIndex];
+    long seed = rand.nextLong();
+    PrivateValue pv = new ListPrivateValue(dist, maxPos, new Random(seed));
+    Random expectedRand = new Random(seed);
+    double[] expected = DoubleStream.generate(() -> dist.sample(expectedRand)).limit(2 * maxPos)
+        .map(x -> -x).sorted().map(x -> -x).toArray();
+    for (int i = 0; i < expected.length; ++i) {
+      assertEquals(expected[i], pv.valueForExchange(i - maxPos, BUY), 0);
+    }
+  }
+
   @Test
   public void emptyTest() {
     PrivateValue pv = new ListPrivateValue(new double[0]);
@@ -3,14 +3,20 @@ package edu.umich.srg.marketsim.strategy;
 import static edu.umich.srg.fourheap.Order.OrderType.BUY;
 import static edu.umich.srg.fourheap.Order.OrderType.SELL;
 import static edu.umich.srg.testing.Asserts.assertSetEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 import org.junit.Test;
 
 import edu.umich.srg.marketsim.Price;
+import edu.umich.srg.marketsim.market.OrderRecord;
+import edu.umich.srg.marketsim.strategy.MarketMakerLadder.LadderDiff;
 
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -87,6 +93,49 @@ public class MarketMakerLadderTest {
     }
   }
 
+  @Test
+  public void diffUnchangedTest() {
+    MarketMakerLadder strat = new MarketMakerLadder(5, 3, false, false);
+    List<OrderRecord> resting = toRecords(
+        strat.createLadder(Price.of(100), Price.of(150)).collect(Collectors.toList()), 2);
+    LadderDiff diff =
+        MarketMakerLadder.diff(resting, strat.createLadder(Price.of(100), Price.of(150)), 2);
+    assertTrue(diff.getWithdrawals().isEmpty());
+    assertTrue(diff.getSubmissions().isEmpty());
+  }
+
+  @Test
+  public void diffShiftTest() {
+    MarketMakerLadder strat = new MarketMakerLadder(5, 3, false, false);
+    List<OrderRecord> resting = toRecords(
+        strat.createLadder(Price.of(100), Price.of(150)).collect(Collectors.toList()), 1);
+    LadderDiff diff =
+        MarketMakerLadder.diff(resting, strat.createLadder(Price.of(105), Price.of(155)), 1);
+
+    Set<OrderDesc> withdrawn = diff.getWithdrawals().stream()
+        .map(o -> OrderDesc.of(o.getOrderType(), o.getPrice())).collect(Collectors.toSet());
+    assertSetEquals(withdrawn, createLadder(1, 150, 90));
+    assertSetEquals(diff.getSubmissions().elementSet(), createLadder(1, 165, 105));
+  }
+
+  @Test
+  public void diffPartialRungTest() {
+    MarketMakerLadder strat = new MarketMakerLadder(5, 1, false, false);
+    OrderRecord partial = new OrderRecord(null, SELL, Price.of(150), 1);
+    OrderRecord buy = new OrderRecord(null, BUY, Price.of(100), 3);
+    LadderDiff diff = MarketMakerLadder.diff(ImmutableList.of(partial, buy),
+        strat.createLadder(Price.of(100), Price.of(150)), 2);
+
+    assertEquals(ImmutableList.of(buy), diff.getWithdrawals());
+    assertEquals(1, diff.getSubmissions().count(OrderDesc.of(SELL, Price.of(150))));
+    assertEquals(2, diff.getSubmissions().count(OrderDesc.of(BUY, Price.of(100))));
+  }
+
+  private static List<OrderRecord> toRecords(List<OrderDesc> orders, int quantity) {
+    return orders.stream().map(o -> new OrderRecord(null, o.getType(), o.getPrice(), quantity))
+        .collect(Collectors.toList());
+  }
+
   /** Creates an order ladder to assert against, first `numSells` or `prices` are sells */
   private static Set<OrderDesc> createLadder(int numSells, long... prices) {
     ImmutableSet.Builder<OrderDesc> ladder = ImmutableSet.builder();
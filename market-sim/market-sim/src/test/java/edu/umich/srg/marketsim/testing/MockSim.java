@@ -2,6 +2,10 @@ package edu.umich.srg.marketsim.testing;
 
 import edu.umich.srg.marketsim.Sim;
 import edu.umich.srg.marketsim.TimeStamp;
+import edu.umich.srg.marketsim.fundamental.ConstantFundamental;
+import edu.umich.srg.marketsim.fundamental.Fundamental;
+import edu.umich.srg.marketsim.market.Sip;
+import edu.umich.srg.marketsim.market.Sip.NbboView;
 
 public class MockSim implements Sim {
 
@@ -18,4 +22,14 @@ public class MockSim implements Sim {
   @Override
   public void addFeature(String name, double value) {}
 
+  @Override
+  public NbboView getNbbo() {
+    return Sip.create(TimeStamp.ZERO).getView();
+  }
+
+  @Override
+  public Fundamental getFundamental() {
+    return ConstantFundamental.create(0);
+  }
+
 }